@@ -26,6 +26,7 @@ import org.jetbrains.kotlin.projectsextensions.KotlinProjectHelper.checkProject
 import org.jetbrains.kotlin.projectsextensions.KotlinProjectHelper.getKotlinSources
 import org.jetbrains.kotlin.model.KotlinEnvironment
 import org.jetbrains.kotlin.model.KotlinLightVirtualFile
+import org.jetbrains.kotlin.filesystem.lightclasses.DeclarationSignatures
 import org.jetbrains.kotlin.project.KotlinProjectConstants
 import org.jetbrains.kotlin.utils.KotlinMockProject
 import org.jetbrains.kotlin.utils.ProjectUtils
@@ -40,6 +41,7 @@ import org.openide.filesystems.FileObject
 object KotlinPsiManager {
     
     private val cachedKtFiles = hashMapOf<FileObject, KtFile>()
+    private val timestamps = hashMapOf<FileObject, Long>()
     
     fun getFilesByProject(project: Project, 
                           test: Boolean = true) = project.getKotlinSources()
@@ -74,22 +76,28 @@ object KotlinPsiManager {
         } else {
             try {
                 val ktFile = parseFile(file) ?: return null
-                cachedKtFiles.put(file, ktFile)
+                cacheFile(file, ktFile)
             } catch (ex: IOException) {
                 KotlinLogger.INSTANCE.logException("parseFile exception", ex)
             }
         }
+        timestamps.put(file, file.lastModified().time)
         
         return cachedKtFiles[file]
     }
 
     fun getParsedFile(file: FileObject): KtFile? {
+        val timestamp = file.lastModified().time
         if (!cachedKtFiles.containsKey(file)) {
             val ktFile = parseFile(file) ?: return null
-            cachedKtFiles.put(file, ktFile)
-        } else {
+            cacheFile(file, ktFile)
+        } else if (timestamps[file] != timestamp) {
+            // the file is not read again while it is unchanged on disk, 
+            // so analyses of other files see the same PSI instance
             updatePsiFile(file)
         }
+        timestamps.put(file, timestamp)
+        
         return cachedKtFiles[file]
     }
 
@@ -100,7 +108,7 @@ object KotlinPsiManager {
             val currentParsedFile = cachedKtFiles[file] ?: return
             if (currentParsedFile.text != sourceCodeWithoutCR) {
                 val ktFile = parseText(sourceCodeWithoutCR, file) ?: return
-                cachedKtFiles.put(file, ktFile)
+                cacheFile(file, ktFile)
             }
         } catch (ex: IOException) {
             KotlinLogger.INSTANCE.logWarning("Couldn't update psi file")
@@ -113,13 +121,19 @@ object KotlinPsiManager {
             val currentParsedFile = cachedKtFiles[file] ?: return
             if (currentParsedFile.text != sourceCodeWithoutCR) {
                 val ktFile = parseText(sourceCodeWithoutCR, file) ?: return
-                cachedKtFiles.put(file, ktFile)
+                cacheFile(file, ktFile)
             }
         } catch (ex: IOException) {
             KotlinLogger.INSTANCE.logWarning("Couldn't update psi file")
         }    
     }
 
+    // analyses of other files of the project see the new content only if its declaration signature changed
+    private fun cacheFile(file: FileObject, ktFile: KtFile) {
+        cachedKtFiles.put(file, ktFile)
+        ProjectUtils.getKotlinProjectForFileObject(file)?.let { DeclarationSignatures.update(it, mapOf(file to ktFile)) }
+    }
+
     fun getParsedKtFileForSyntaxHighlighting(text: String): KtFile? {
         val sourceCode = StringUtilRt.convertLineSeparators(text)
         var kotlinProject = OpenProjects.getDefault().openProjects.firstOrNull { it.checkProject() }
@@ -22,7 +22,13 @@ import com.intellij.psi.util.PsiTreeUtil
 import javax.swing.text.Document
 import javax.swing.text.StyledDocument
 import org.jetbrains.kotlin.builder.KotlinPsiManager
+import org.jetbrains.kotlin.analyzer.AnalysisResult
+import org.jetbrains.kotlin.container.get
 import org.jetbrains.kotlin.resolve.AnalysisResultWithProvider
+import org.jetbrains.kotlin.resolve.DelegatingBindingTrace
+import org.jetbrains.kotlin.resolve.calls.smartcasts.DataFlowInfo
+import org.jetbrains.kotlin.types.TypeUtils
+import org.jetbrains.kotlin.types.expressions.ExpressionTypingServices
 import org.jetbrains.kotlin.resolve.KotlinAnalyzer
 import org.jetbrains.kotlin.resolve.KotlinResolutionFacade
 import org.jetbrains.kotlin.utils.LineEndUtil
@@ -36,6 +42,8 @@ import org.jetbrains.kotlin.descriptors.Visibilities
 import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParser
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.psi.KtClassBody
+import org.jetbrains.kotlin.psi.KtDeclarationWithBody
+import org.jetbrains.kotlin.psi.KtPsiFactory
 import org.jetbrains.kotlin.psi.KtElement
 import org.jetbrains.kotlin.psi.KtSimpleNameExpression
 import org.jetbrains.kotlin.resolve.BindingContext
@@ -50,6 +58,8 @@ import org.jetbrains.kotlin.load.java.descriptors.JavaClassConstructorDescriptor
 import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
 import org.netbeans.modules.csl.api.CompletionProposal
 
+private const val COMPLETION_MARKER = "KotlinNetBeans"
+
 fun applicableNameFor(prefix: String, name: Name): Boolean {
     if (!name.isSpecial) {
         val identifier = name.identifier
@@ -144,7 +154,7 @@ fun getSimpleNameExpression(identOffset: Int): KtSimpleNameExpression? {
 }
 
 fun getSimpleNameExpression(file: FileObject, identOffset: Int, editorText: String): KtSimpleNameExpression? {
-    val sourceCodeWithMarker = StringBuilder(editorText).insert(identOffset, "KotlinNetBeans").toString()
+    val sourceCodeWithMarker = StringBuilder(editorText).insert(identOffset, COMPLETION_MARKER).toString()
     val ktFile = KotlinPsiManager.parseText(StringUtilRt.convertLineSeparators(sourceCodeWithMarker),
                 file) ?: return null
     val offsetWithoutCR = LineEndUtil.convertCrToDocumentOffset(sourceCodeWithMarker, identOffset)
@@ -162,6 +172,45 @@ fun getIdentifierStartOffset(text: String, offset: Int): Int {
     return identStartOffset
 }
 
+/**
+ * Resolves a copy of the block body enclosing [identOffset] with the completion marker inserted. 
+ * The copy is resolved in the scope of the original body with the module state of [result], 
+ * so nothing else of the file or the module is analyzed again.
+ */
+private fun getReferenceVariantsInBodyCopy(file: FileObject, identifierPart: String,
+                                           identOffset: Int, editorText: String,
+                                           result: AnalysisResultWithProvider): Collection<DeclarationDescriptor>? {
+    val ktFile = KotlinParser.file ?: return null
+    if (ktFile.text != editorText) return null
+    
+    val body = ktFile.findElementAt(identOffset)?.parentsWithSelf
+            ?.filterIsInstance<KtDeclarationWithBody>()
+            ?.mapNotNull { declaration -> declaration.bodyExpression.takeIf { declaration.hasBlockBody() } }
+            ?.firstOrNull { it.textRange.startOffset < identOffset && identOffset < it.textRange.endOffset } ?: return null
+    
+    val bindingContext = result.analysisResult.bindingContext
+    val scope = getResolutionScope(body, bindingContext) ?: return null
+    
+    val bodyText = "${editorText.substring(body.textRange.startOffset + 1, identOffset)}$COMPLETION_MARKER" +
+            editorText.substring(identOffset, body.textRange.endOffset - 1)
+    val bodyCopy = KtPsiFactory(ktFile.project).createBlock(bodyText)
+    
+    val trace = DelegatingBindingTrace(bindingContext, "Completion in a copy of the body")
+    result.componentProvider.get<ExpressionTypingServices>().getTypeInfo(scope, bodyCopy, 
+            TypeUtils.NO_EXPECTED_TYPE, DataFlowInfo.EMPTY, trace, true)
+    
+    val copyFile = bodyCopy.containingFile
+    val markerOffset = copyFile.text.indexOf(COMPLETION_MARKER)
+    val simpleNameExpression = PsiTreeUtil.getParentOfType(copyFile.findElementAt(markerOffset), 
+            KtSimpleNameExpression::class.java) ?: return null
+    
+    val copyResult = AnalysisResultWithProvider(
+            AnalysisResult.success(trace.bindingContext, result.analysisResult.moduleDescriptor), 
+            result.componentProvider)
+    
+    return getReferenceVariants(simpleNameExpression, { applicableNameFor(identifierPart, it) }, file, copyResult)
+}
+
 private fun generateBasicCompletionProposals(file: FileObject, identifierPart: String,
                                              identOffset: Int, editorText: String,
                                              result: AnalysisResultWithProvider): Collection<DeclarationDescriptor> {
@@ -169,6 +218,10 @@ private fun generateBasicCompletionProposals(file: FileObject, identifierPart: S
     if (simpleNameExpression != null) return getReferenceVariants(simpleNameExpression,
             {applicableNameFor(identifierPart, it)}, file, result)
     
+    val variantsInBody = getReferenceVariantsInBodyCopy(file, identifierPart, identOffset, editorText, result)
+    if (variantsInBody != null) return variantsInBody
+    
+    // outside of block bodies the whole file is parsed and analyzed again
     simpleNameExpression = getSimpleNameExpression(file, identOffset, editorText) ?: return emptyList()
     return getReferenceVariants(simpleNameExpression, {applicableNameFor(identifierPart, it)}, file)
 }
@@ -27,7 +27,7 @@ import org.netbeans.modules.csl.api.ElementKind
 import org.netbeans.modules.csl.api.HtmlFormatter
 import org.netbeans.modules.csl.spi.DefaultCompletionProposal
 import org.jetbrains.kotlin.utils.KotlinImageProvider
-import org.jetbrains.kotlin.search.PublicFunctionsVisitor
+import org.jetbrains.kotlin.search.KotlinCallableSearcher
 import javax.swing.text.Document
 
 fun generateNonImportedCompletionProposals(identifierPart: String,
@@ -58,15 +58,18 @@ private fun lookupNonImportedTypes(simpleNameExpression: KtSimpleNameExpression,
 
 private fun lookupNonImportedFunctions(identifierPart: String, 
                                        project: Project, 
-                                       idenOffset: Int) = ProjectUtils.getSourceFiles(project)
-        .flatMap { ktFile ->
-            PublicFunctionsVisitor({ it.startsWith(identifierPart) }).let {
-                ktFile.acceptChildren(it)
-                it.publicFunctions
-            }
-        }
-        .map { NonImportedCompletionProposal(identifierPart, it, ElementKind.METHOD, idenOffset) }
-
+                                       idenOffset: Int): List<NonImportedCompletionProposal> {
+    // an empty prefix would propose every top level callable of the libraries
+    if (identifierPart.isEmpty()) return emptyList()
+    
+    val fqNames = linkedSetOf<String>()
+    KotlinCallableSearcher.searchCallables(project, identifierPart) {
+        if (it.name.startsWith(identifierPart)) fqNames.add(it.fqName)
+        true
+    }
+    
+    return fqNames.map { NonImportedCompletionProposal(identifierPart, it, ElementKind.METHOD, idenOffset) }
+}
 
 class NonImportedCompletionProposal(private val identifierPart: String,
                                     val text: String,
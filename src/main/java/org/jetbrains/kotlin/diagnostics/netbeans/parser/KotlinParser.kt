@@ -19,8 +19,10 @@ package org.jetbrains.kotlin.diagnostics.netbeans.parser
 import javax.swing.event.ChangeListener
 import org.jetbrains.kotlin.log.KotlinLogger
 import org.jetbrains.kotlin.projectsextensions.KotlinProjectHelper.isScanning
+import org.jetbrains.kotlin.resolve.AnalysisResultCache
 import org.jetbrains.kotlin.resolve.AnalysisResultWithProvider
 import org.jetbrains.kotlin.resolve.KotlinAnalyzer
+import org.jetbrains.kotlin.resolve.ProjectModificationStamps
 import org.jetbrains.kotlin.utils.ProjectUtils
 import org.jetbrains.kotlin.psi.KtFile
 import org.netbeans.api.java.source.SourceUtils
@@ -39,47 +41,81 @@ class KotlinParser : Parser() {
         
         var analysisResult: AnalysisResultWithProvider? = null
         
+        private val caches = hashMapOf<Project, AnalysisResultCache>()
+        
+        @JvmStatic @Synchronized fun getCache(proj: Project): AnalysisResultCache = 
+                caches.getOrPut(proj) { AnalysisResultCache(proj) }
+        
+        @JvmStatic @Synchronized fun invalidateCache(proj: Project) {
+            caches.remove(proj)?.clear()
+            if (project == proj) {
+                file = null
+                analysisResult = null
+            }
+        }
+        
         @JvmStatic fun getAnalysisResult(ktFile: KtFile,
-                                         proj: Project) = if (ktFile upToDate file) analysisResult else analyze(ktFile, proj)
+                                         proj: Project): AnalysisResultWithProvider? = getAnalysis(ktFile, proj).result
         
-        private fun analyze(ktFile: KtFile, 
-                            proj: Project): AnalysisResultWithProvider? = KotlinAnalyzer.analyzeFile(proj, ktFile)
-                .also { 
-                    project = proj 
-                    file = ktFile
-                    analysisResult = it
-                }
+        private fun getAnalysis(ktFile: KtFile, proj: Project): AnalysisResultCache.Entry {
+            val entry = getCache(proj).get(ktFile) ?: analyze(ktFile, proj)
+            
+            project = proj
+            file = entry.ktFile
+            analysisResult = entry.result
+            
+            return entry
+        }
         
-        private infix fun KtFile.upToDate(ktFile: KtFile?) = 
-                virtualFile.path == ktFile?.virtualFile?.path && text == ktFile.text
+        private fun analyze(ktFile: KtFile, proj: Project): AnalysisResultCache.Entry {
+            // the stamp is taken before the analysis, so changes made during it invalidate the result
+            val projectStamp = ProjectModificationStamps.get(proj)
+            
+            return AnalysisResultCache.Entry(ktFile, KotlinAnalyzer.analyzeFile(proj, ktFile), projectStamp)
+                    .also { getCache(proj).put(it) }
+        }
         
     }
 
     private lateinit var snapshot: Snapshot
+    private var parsedFile: KtFile? = null
+    private var parserResult: KotlinParserResult? = null
     private var cancel = false
 
     override fun parse(snapshot: Snapshot, task: Task, event: SourceModificationEvent) {
         this.snapshot = snapshot
         cancel = false
         
+        val ktFile = ProjectUtils.getKtFile(snapshot.text.toString(), snapshot.source.fileObject)
+        parsedFile = ktFile
+        
         if (SourceUtils.isScanInProgress()) return
         
         val project = ProjectUtils.getKotlinProjectForFileObject(snapshot.source.fileObject)
         if (project.isScanning()) return
         if (cancel) return
 
-        val ktFile = ProjectUtils.getKtFile(snapshot.text.toString(), snapshot.source.fileObject)
-
         getAnalysisResult(ktFile, project)
     }
 
     override fun getResult(task: Task): Result? {
-        val project = project ?: return null
-        val ktFile = if (snapshot.source.fileObject.path == file?.virtualFile?.path) file else null
-        ktFile ?: return null
-        val result = getAnalysisResult(ktFile, project) ?: return null
-
-        return KotlinParserResult(snapshot, result, ktFile, snapshot.source.fileObject, project)
+        val fileObject = snapshot.source.fileObject
+        val ktFile = parsedFile ?: return null
+        val project = ProjectUtils.getKotlinProjectForFileObject(fileObject) ?: return null
+        
+        // files are not analyzed while projects are scanned, syntax is enough for indexing
+        val entry = if (SourceUtils.isScanInProgress() || project.isScanning()) {
+            getCache(project).get(ktFile)
+        } else getAnalysis(ktFile, project)
+        
+        val resultFile = entry?.ktFile ?: ktFile
+        
+        // tasks of one parse share the result, so data it computes lazily is computed once
+        val cachedResult = parserResult
+        if (cachedResult != null && cachedResult.snapshot === snapshot 
+                && cachedResult.ktFile === resultFile && cachedResult.analysisResult === entry?.result) return cachedResult
+        
+        return KotlinParserResult(snapshot, entry?.result, resultFile, fileObject, project).also { parserResult = it }
     }
 
     override fun addChangeListener(changeListener: ChangeListener) {}
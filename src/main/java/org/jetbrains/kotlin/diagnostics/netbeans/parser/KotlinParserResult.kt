@@ -16,9 +16,13 @@
  *******************************************************************************/
 package org.jetbrains.kotlin.diagnostics.netbeans.parser
 
+import org.jetbrains.kotlin.descriptors.SourceElement
 import org.jetbrains.kotlin.diagnostics.Errors
+import org.jetbrains.kotlin.highlighter.occurrences.IdentifierOccurrences
+import org.jetbrains.kotlin.navigation.references.resolveToSourceDeclaration
 import org.jetbrains.kotlin.resolve.AnalyzingUtils
 import org.jetbrains.kotlin.resolve.AnalysisResultWithProvider
+import org.jetbrains.kotlin.psi.KtElement
 import org.jetbrains.kotlin.psi.KtFile
 import org.netbeans.api.project.Project
 import org.netbeans.modules.csl.api.Error
@@ -32,20 +36,39 @@ class KotlinParserResult(snapshot: Snapshot?,
                          val file: FileObject, 
                          val project: Project) : ParserResult(snapshot) {
 
+    /**
+     * Identifiers of the file, collected once per parse.
+     */
+    val identifierOccurrences by lazy { IdentifierOccurrences(ktFile.text) }
+
+    private val resolvedDeclarations = hashMapOf<KtElement, List<SourceElement>>()
+
     override fun invalidate() {}
 
-    override fun getDiagnostics() = arrayListOf<Error>().apply {
+    /**
+     * Resolves [element] with the binding context of this result. Resolved declarations 
+     * are kept as long as the result, so searches of occurrences don't resolve them again.
+     */
+    @Synchronized fun resolveToSourceDeclaration(element: KtElement): List<SourceElement> {
+        val bindingContext = analysisResult?.analysisResult?.bindingContext ?: return element.resolveToSourceDeclaration()
+
+        return resolvedDeclarations.getOrPut(element) { element.resolveToSourceDeclaration(bindingContext, project) }
+    }
+
+    /**
+     * Errors of the file, computed once per parse.
+     */
+    val errors by lazy { SortedErrors(computeErrors()) }
+
+    override fun getDiagnostics() = errors.asList()
+
+    private fun computeErrors() = arrayListOf<Error>().apply {
         if (analysisResult != null) {
-            addAll(
-                    analysisResult.analysisResult.bindingContext.diagnostics.all()
-                            .filter { it.factory != Errors.DEPRECATION }
-                            .map { KotlinError(it, file) }
-            )
+            analysisResult.analysisResult.bindingContext.diagnostics.all()
+                    .filter { it.factory != Errors.DEPRECATION && it.psiFile == ktFile && it.textRanges.isNotEmpty() }
+                    .mapTo(this) { KotlinError(it, file) }
         }
-        addAll(
-                AnalyzingUtils.getSyntaxErrorRanges(ktFile)
-                        .map { KotlinSyntaxError(it, file) }
-        )
+        AnalyzingUtils.getSyntaxErrorRanges(ktFile).mapTo(this) { KotlinSyntaxError(it, file) }
     }
     
 }
\ No newline at end of file
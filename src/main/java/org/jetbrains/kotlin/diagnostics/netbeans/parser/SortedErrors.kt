@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.diagnostics.netbeans.parser
+
+import org.netbeans.modules.csl.api.Error
+
+/**
+ * Errors of a parser result sorted by their start offsets. Offsets are kept in arrays, 
+ * so errors at an offset or in a range are found by binary search.
+ */
+class SortedErrors(errors: Collection<Error>) {
+
+    private val errors = errors.sortedBy { it.startPosition }.toTypedArray()
+    private val starts = IntArray(this.errors.size) { this.errors[it].startPosition }
+    
+    // the largest end offset of the errors up to an index, scanning back stops below it
+    private val maxEnds = IntArray(this.errors.size).also { maxEnds ->
+        var maxEnd = Int.MIN_VALUE
+        this.errors.forEachIndexed { index, error -> 
+            maxEnd = maxOf(maxEnd, error.endPosition)
+            maxEnds[index] = maxEnd
+        }
+    }
+
+    val size: Int
+        get() = errors.size
+
+    fun asList(): List<Error> = errors.asList()
+
+    /**
+     * Errors whose ranges contain [offset], including both bounds, so an error ending at 
+     * an offset is found there too. ChangeReturnTypeIntention is only created where this 
+     * finds a Kotlin diagnostic, matching its own inclusive check of the diagnostic range.
+     */
+    fun errorsAt(offset: Int) = errorsInRange(offset, offset)
+
+    /**
+     * Errors whose ranges intersect the range from [start] to [end], including the bounds.
+     */
+    fun errorsInRange(start: Int, end: Int): List<Error> {
+        val found = arrayListOf<Error>()
+        var index = lastStartingBefore(end)
+        while (index >= 0 && maxEnds[index] >= start) {
+            if (errors[index].endPosition >= start) found.add(errors[index])
+            index--
+        }
+        found.reverse()
+        
+        return found
+    }
+
+    private fun lastStartingBefore(offset: Int): Int {
+        var low = 0
+        var high = starts.size - 1
+        while (low <= high) {
+            val middle = (low + high) ushr 1
+            if (starts[middle] <= offset) low = middle + 1 else high = middle - 1
+        }
+        
+        return high
+    }
+
+}
@@ -25,44 +25,51 @@ import org.jetbrains.org.objectweb.asm.tree.FieldNode
 import org.jetbrains.org.objectweb.asm.signature.SignatureReader
 import org.jetbrains.org.objectweb.asm.util.TraceSignatureVisitor
 
+/**
+ * Generates Java stubs of light classes. Stubs are written directly into one buffer,
+ * code, debug information and frames of the classes are never read.
+ */
 object JavaStubGenerator {
 
+    private const val PARSING_OPTIONS = ClassReader.SKIP_CODE or ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES
+
     fun gen(byteCodeList: List<ByteArray>): List<Pair<ClassNode, String>> {
-        val classNodes = byteCodeList.mapNotNull { it.getClassNode() }.distinctBy { it.name }
-        val innerClasses = hashMapOf<ClassNode, List<ClassNode>>()
-        val classes = classNodes.filter { !it.name.contains("$") }
-
-        classNodes.forEach { classNode ->
-            val innerClassesList = classNode.innerClasses
-                    .mapNotNull { inner ->
-                        classNodes.find { it.name == inner.name && inner.name.length > classNode.name.length }
-                    }
-            innerClasses.put(classNode, innerClassesList)
+        val classNodes = linkedMapOf<String, ClassNode>()
+        byteCodeList.forEach { byteCode ->
+            val classNode = byteCode.getClassNode() ?: return@forEach
+            if (classNode.name !in classNodes) classNodes.put(classNode.name, classNode)
         }
 
-        return classes.map { generate(it, innerClasses) }
+        val stub = StringBuilder()
+        return classNodes.values.filter { !it.isInner }.map { classNode ->
+            stub.setLength(0)
+            stub.appendClass(classNode, classNodes)
+
+            Pair(classNode, stub.toString())
+        }
     }
 
-    private fun generate(classNode: ClassNode,
-                         innerClassesMap: Map<ClassNode, List<ClassNode>>): Pair<ClassNode, String> =
-            with (StringBuilder()) {
-                if (!classNode.name.contains("$")) append(classNode.packageString)
-                append(classNode.classDeclaration())
-                append(classNode.fields())
-                append(classNode.methods())
-                for (node in innerClassesMap[classNode]!!) {
-                    append(generate(node, innerClassesMap).second).append("\n")
-                }
+    private fun StringBuilder.appendClass(classNode: ClassNode, classNodes: Map<String, ClassNode>) {
+        if (!classNode.isInner) appendPackage(classNode)
+        appendClassDeclaration(classNode)
+        appendFields(classNode)
+        appendMethods(classNode)
 
-                append("}")
+        for (innerClass in classNode.innerClasses) {
+            if (innerClass.name.length <= classNode.name.length) continue
+            val innerClassNode = classNodes[innerClass.name] ?: continue
 
-                return classNode to this.toString()
-            }
+            appendClass(innerClassNode, classNodes)
+            append('\n')
+        }
+
+        append('}')
+    }
 
     private fun ByteArray.getClassNode(): ClassNode? {
         val classNode = ClassNode()
         try {
-            ClassReader(this).accept(classNode, 0)
+            ClassReader(this).accept(classNode, PARSING_OPTIONS)
         } catch (ex: Exception) {
             return null
         }
@@ -70,132 +77,138 @@ object JavaStubGenerator {
         return classNode
     }
 
-    private val ClassNode.packageString: String
-        get() = "package ${name.substringBeforeLast("/").replace("/", ".")};\n"
+    private val ClassNode.isInner: Boolean
+        get() = name.indexOf('$') >= 0
 
     private val ClassNode.className: String
-        get() = if (!name.contains("$")) name.substringAfterLast("/") else name.substringAfterLast("$")
+        get() = if (!isInner) name.substring(name.lastIndexOf('/') + 1) else name.substring(name.lastIndexOf('$') + 1)
 
-    private fun ClassNode.classDeclaration(): String {
-        val declaration = StringBuilder()
+    private fun StringBuilder.appendPackage(classNode: ClassNode) {
+        val name = classNode.name
+        val end = name.lastIndexOf('/')
 
-        val classType = getClassType(access)
+        append("package ")
+        appendJavaName(name, 0, if (end >= 0) end else name.length)
+        append(";\n")
+    }
 
-        declaration.append(getAccess(access)).append(" ")
-        declaration.append(getFinal(access)).append(" ")
-        declaration.append(getStatic(access)).append(" ")
-        if (classType != "interface") declaration.append(getAbstract(access)).append(" ")
+    /**
+     * Appends a part of an internal or a nested class name with '/' and '$' replaced by '.'.
+     */
+    private fun StringBuilder.appendJavaName(name: String, start: Int = 0, end: Int = name.length) {
+        for (i in start until end) {
+            val char = name[i]
+            append(if (char == '/' || char == '$') '.' else char)
+        }
+    }
 
+    private fun StringBuilder.appendModifiers(access: Int, withAbstract: Boolean) {
+        append(getAccess(access)).append(' ')
+        append(getFinal(access)).append(' ')
+        append(getStatic(access)).append(' ')
+        if (withAbstract) append(getAbstract(access)).append(' ')
+    }
 
-        val superTypes = if (signature != null) {
-            val signatureReader = SignatureReader(signature)
-            val traceSigVisitor = TraceSignatureVisitor(access)
-            signatureReader.accept(traceSigVisitor)
+    private fun StringBuilder.appendClassDeclaration(classNode: ClassNode) = with (classNode) {
+        val classType = getClassType(access)
 
-            traceSigVisitor.declaration.replace("$", ".")
+        appendModifiers(access, classType != "interface")
+
+        append(classType).append(' ')
+        append(className).append(' ')
+
+        if (signature != null) {
+            appendJavaName(traceSignature(signature, access).declaration)
         } else {
-            val superTypes = StringBuilder()
             if (classType == "class") {
-                superTypes.append("extends ").append(superName.replace("/", ".").replace("$", "."))
-                superTypes.append(" ")
+                append("extends ")
+                appendJavaName(superName)
+                append(' ')
             }
 
             if (interfaces != null && interfaces.isNotEmpty()) {
                 when (classType) {
-                    "interface" -> superTypes.append(" extends ")
-                    "class" -> superTypes.append(" implements ")
+                    "interface" -> append(" extends ")
+                    "class" -> append(" implements ")
                 }
             }
 
-            superTypes.append(
-                    interfaces.joinToString(", ", "", "", -1, "...",
-                            { it.replace("/", ".").replace("$", ".") }
-                    )
-            )
-
-            superTypes.toString()
+            interfaces?.forEachIndexed { i, superInterface ->
+                if (i > 0) append(", ")
+                appendJavaName(superInterface)
+            }
         }
 
-        declaration.append(classType).append(" ")
-        declaration.append(className).append(" ")
-        declaration.append(superTypes)
-
-        declaration.append("{\n")
-
-        return declaration.toString()
+        append("{\n")
     }
 
-    private fun ClassNode.fields(): String {
-        val fieldsStub = StringBuilder()
-
-        if (getClassType(access) == "enum") {
-            fieldsStub.append(
-                    fields.joinToString(", ", "", "", -1, "...", { it.name })
-            ).append(";")
-        } else fields.forEach {
-            fieldsStub.append(it.getString())
-        }
-        return fieldsStub.toString()
+    private fun StringBuilder.appendFields(classNode: ClassNode) {
+        if (getClassType(classNode.access) == "enum") {
+            classNode.fields.forEachIndexed { i, field ->
+                if (i > 0) append(", ")
+                append(field.name)
+            }
+            append(';')
+        } else classNode.fields.forEach { appendField(it) }
     }
 
-    private fun FieldNode.getString(): String {
-        val sig = if (signature != null) signature else desc
+    private fun StringBuilder.appendField(field: FieldNode) = with (field) {
+        val declaration = traceSignature(signature ?: desc, access).declaration
 
-        val signatureReader = SignatureReader(sig)
-        val traceSigVisitor = TraceSignatureVisitor(access)
-        signatureReader.accept(traceSigVisitor)
-
-        val type = traceSigVisitor.declaration.substringAfterLast(" ")
-
-        with (StringBuilder()) {
-            append(getAccess(access)).append(" ")
-            append(getFinal(access)).append(" ")
-            append(getStatic(access)).append(" ")
-            append(type.replace("$", ".")).append(" ")
-            append(name).append(";\n")
-
-            return toString()
-        }
+        appendModifiers(access, false)
+        appendJavaName(declaration, declaration.lastIndexOf(' ') + 1)
+        append(' ')
+        append(name).append(";\n")
     }
 
-    private fun ClassNode.methods(): String {
-        val methodsStub = StringBuilder()
-
-        for (it in methods) {
-            methodsStub.append(it.getString(className))
-        }
-
-        return methodsStub.toString()
+    private fun StringBuilder.appendMethods(classNode: ClassNode) {
+        val className = classNode.className
+        classNode.methods.forEach { appendMethod(it, className) }
     }
 
-    private fun MethodNode.getString(className: String): String {
-        val method = StringBuilder()
-
-        val sig = if (signature != null) signature else desc
-
-        method.append(getAccess(access)).append(" ")
-        method.append(getFinal(access)).append(" ")
-        method.append(getStatic(access)).append(" ")
-        method.append(getAbstract(access)).append(" ")
+    private fun StringBuilder.appendMethod(method: MethodNode, className: String) = with (method) {
+        appendModifiers(access, true)
 
-        val methodName = if (name == "<init>") className else name
+        val isConstructor = name == "<init>"
+        val traceSigVisitor = traceSignature(signature ?: desc, access)
 
-        val traceSigVisitor = TraceSignatureVisitor(access)
-        SignatureReader(sig).accept(traceSigVisitor)
+        if (!isConstructor) appendJavaName(traceSigVisitor.returnType)
+        append(' ').append(if (isConstructor) className else name)
+        appendMethodArguments(traceSigVisitor.declaration)
+        append("{}\n")
+    }
 
-        val returnType = if (name == "<init>") "" else traceSigVisitor.returnType
+    /**
+     * Appends the arguments of a method declaration like `(int, java.lang.String)` 
+     * as `(int a0, java.lang.String a1)`.
+     */
+    private fun StringBuilder.appendMethodArguments(declaration: String) {
+        append('(')
+
+        var index = 0
+        var start = 0
+        while (true) {
+            val end = declaration.indexOf(',', start).let { if (it >= 0) it else declaration.length }
+            if (index > 0) append(',')
+
+            val argumentLength = length
+            for (i in start until end) {
+                val char = declaration[i]
+                if (char == '(' || char == ')') continue
+                append(if (char == '$') '.' else char)
+            }
+            if (length > argumentLength) append(" a").append(index)
 
-        method.append(returnType.replace("$", ".")).append(" ").append(methodName)
-                .append(getMethodArguments(traceSigVisitor.declaration.replace("$", "."))).append("{}\n")
+            if (end == declaration.length) break
+            start = end + 1
+            index++
+        }
 
-        return method.toString()
+        append(')')
     }
 
-    private fun getMethodArguments(declaration: String): String {
-        val argumentsTypes = declaration.replace("(", "").replace(")", "").split(",")
-
-        return argumentsTypes.withIndex()
-                .joinToString(",", "(", ")", -1, "...", { if (it.value != "") "${it.value} a${it.index}" else "" })
+    private fun traceSignature(signature: String, access: Int) = TraceSignatureVisitor(access).apply {
+        SignatureReader(signature).accept(this)
     }
 
     private fun getClassType(access: Int) = when {
@@ -219,4 +232,4 @@ object JavaStubGenerator {
 
     private fun Int.contains(opcode: Int) = (this and opcode) != 0
 
-}
\ No newline at end of file
+}
@@ -60,30 +60,61 @@ class KotlinLightClassManager(private val project: NBProject) {
         }
     }
 
-    private val sourceFiles = hashMapOf<File, Set<FileObject>>()
-
-    fun computeLightClassesSources() {
-        val newSourceFilesMap = hashMapOf<File, MutableSet<FileObject>>()
-        for (sourceFile in KotlinPsiManager.getFilesByProject(project)) {
-            val lightClassesPaths = getLightClassesPaths(sourceFile)
-            for (path in lightClassesPaths) {
-                val lightClassFile = LightClassFile(project, path)
-                var newSourceFiles = newSourceFilesMap[lightClassFile.asFile()]
-                if (newSourceFiles == null) {
-                    newSourceFiles = hashSetOf<FileObject>()
-                    newSourceFilesMap.put(lightClassFile.asFile(), newSourceFiles)
-                }
-
-                newSourceFiles.add(sourceFile)
-            }
+    private class SourceFileEntry(val stamp: Int, val paths: List<String>)
+
+    private val sourceFiles = hashMapOf<File, MutableSet<FileObject>>()
+    private val lightClassesPaths = hashMapOf<FileObject, SourceFileEntry>()
+    private var computed = false
+
+    @Synchronized fun computeLightClassesSources() {
+        val projectFiles = KotlinPsiManager.getFilesByProject(project)
+        lightClassesPaths.keys.filter { it !in projectFiles }.forEach { removeSourceFile(it) }
+        projectFiles.forEach { updateLightClassesSources(it) }
+        computed = true
+    }
+
+    /**
+     * Updates light classes of [sourceFile] only, other source files keep their 
+     * light classes until they are updated themselves.
+     */
+    @Synchronized fun updateLightClassesSources(sourceFile: FileObject): List<String> {
+        if (!computed) computeLightClassesSources()
+
+        val ktFile = ProjectUtils.getKtFile(sourceFile)
+        if (ktFile == null) {
+            removeSourceFile(sourceFile)
+            return emptyList()
+        }
+
+        val stamp = ktFile.text.hashCode()
+        val entry = lightClassesPaths[sourceFile]
+        if (entry != null && entry.stamp == stamp) return entry.paths
+
+        removeSourceFile(sourceFile)
+        val paths = getLightClassesPaths(ktFile)
+        lightClassesPaths.put(sourceFile, SourceFileEntry(stamp, paths))
+        paths.forEach { 
+            sourceFiles.getOrPut(LightClassFile(project, it).asFile()) { hashSetOf() }.add(sourceFile) 
+        }
+
+        return paths
+    }
+
+    private fun removeSourceFile(sourceFile: FileObject) {
+        val entry = lightClassesPaths.remove(sourceFile) ?: return
+        entry.paths.forEach { 
+            val lightClassFile = LightClassFile(project, it).asFile()
+            val files = sourceFiles[lightClassFile] ?: return@forEach
+            files.remove(sourceFile)
+            if (files.isEmpty()) sourceFiles.remove(lightClassFile)
         }
-        sourceFiles.clear()
-        sourceFiles.putAll(newSourceFilesMap)
     }
 
-    fun getLightClassesPaths(sourceFile: FileObject?): List<String> {
+    fun getLightClassesPaths(sourceFile: FileObject?): List<String> = 
+            getLightClassesPaths(ProjectUtils.getKtFile(sourceFile))
+
+    private fun getLightClassesPaths(ktFile: KtFile): List<String> {
         val lightClasses = arrayListOf<String>()
-        val ktFile = ProjectUtils.getKtFile(sourceFile)
 
         findLightClasses(ktFile).forEach {
             val internalName = getInternalName(it)
@@ -123,8 +154,8 @@ class KotlinLightClassManager(private val project: NBProject) {
 
     private fun computePathByInternalName(internalName: String) = "${internalName}.class"
 
-    fun getSourceFiles(file: File): List<KtFile> {
-        if (sourceFiles.isEmpty()) computeLightClassesSources()
+    @Synchronized fun getSourceFiles(file: File): List<KtFile> {
+        if (!computed) computeLightClassesSources()
 
         return getSourceKtFiles(file)
     }
@@ -132,6 +163,6 @@ class KotlinLightClassManager(private val project: NBProject) {
     private fun getSourceKtFiles(file: File): List<KtFile> {
         val sourceIOFiles = sourceFiles[file] ?: return emptyList()
 
-        return sourceIOFiles.mapNotNull { ProjectUtils.getKtFile(it) }
+        return sourceIOFiles.filter { it.isValid }.mapNotNull { ProjectUtils.getKtFile(it) }
     }
 }
\ No newline at end of file
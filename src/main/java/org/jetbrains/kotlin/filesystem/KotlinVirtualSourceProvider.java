@@ -38,6 +38,10 @@ public class KotlinVirtualSourceProvider implements VirtualSourceProvider {
         TRANSLATED_FULLY.add(project);
     }
     
+    public static void translationCancelled(Project project) {
+        TRANSLATED_FULLY.remove(project);
+    }
+    
     @Override
     public Set<String> getSupportedExtensions() {
         return Sets.newHashSet("kt");
@@ -16,13 +16,12 @@
  *******************************************************************************/
 package org.jetbrains.kotlin.filesystem.lightclasses
 
-import java.io.File
-import java.util.regex.Pattern
 import org.jetbrains.kotlin.filesystem.KotlinLightClassManager
 import org.jetbrains.kotlin.log.KotlinLogger
 import org.jetbrains.kotlin.model.KotlinEnvironment
 import org.jetbrains.kotlin.utils.ProjectUtils
 import org.jetbrains.kotlin.analyzer.AnalysisResult
+import org.jetbrains.kotlin.backend.common.output.OutputFile
 import org.jetbrains.kotlin.codegen.KotlinCodegenFacade
 import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.kotlin.config.CompilerConfiguration
@@ -36,7 +35,7 @@ import org.openide.filesystems.FileObject
 object KotlinLightClassGeneration {
 
     private fun buildLightClasses(analysisResult: AnalysisResult, project: Project,
-                                  ktFiles: List<KtFile>, requestedClassName: String): GenerationState? {
+                                  ktFiles: List<KtFile>): GenerationState? {
         val generateDeclaredClassFilter = object : GenerationState.GenerateClassFilter() {
             override fun shouldAnnotateClass(processingClassOrObject: KtClassOrObject) = true
 
@@ -66,31 +65,63 @@ object KotlinLightClassGeneration {
         return state
     }
 
+    private val cache = SignatureCache<List<ByteArray>>()
+
+    fun invalidate(project: Project) {
+        cache.invalidate(project)
+        DeclarationSignatures.invalidate(project)
+    }
+
     fun getByteCode(file: FileObject, project: Project?,
                     analysisResult: AnalysisResult): List<ByteArray> {
         if (project == null) return emptyList()
 
-        val code = arrayListOf<ByteArray>()
+        return getByteCode(listOf(file), project) { analysisResult }[file] ?: emptyList()
+    }
 
+    /**
+     * Generates light classes of [files] in one codegen run. Files whose declarations 
+     * didn't change since the last run reuse its byte code, the analysis is requested 
+     * only when some file has to be generated.
+     */
+    fun getByteCode(files: Collection<FileObject>, project: Project,
+                    analysisResult: () -> AnalysisResult?): Map<FileObject, List<ByteArray>> {
         val manager = KotlinLightClassManager.getInstance(project)
-        manager.computeLightClassesSources()
-
-        manager.getLightClassesPaths(file).forEach {
-            val lightClass = File("${project.projectDirectory.path}${ProjectUtils.FILE_SEPARATOR}$it")
-            val ktFiles = manager.getSourceFiles(lightClass)
-            val className = it.substringAfterLast(Pattern.quote(ProjectUtils.FILE_SEPARATOR))
-            if (ktFiles.isNotEmpty()) {
-                try {
-                    val state = buildLightClasses(analysisResult, project, ktFiles, className) ?: return emptyList()
-
-                    state.factory.asList().forEach { outFile -> code.add(outFile.asByteArray()) }
-                } catch (ex: Exception) {
-                    KotlinLogger.INSTANCE.logWarning("Couldn't create light class for ${file.path}")
-                    return emptyList()
-                }
-            }
+        val ktFiles = files.mapNotNull { file -> ProjectUtils.getKtFile(file)?.let { Pair(file, it) } }.toMap()
+        val signatures = DeclarationSignatures.update(project, ktFiles)
+
+        val code = hashMapOf<FileObject, List<ByteArray>>()
+        signatures.forEach { (file, stamp) -> cache.get(project, file, stamp)?.let { code.put(file, it) } }
+
+        val filesToGenerate = ktFiles.keys.filter { it !in code }
+        if (filesToGenerate.isEmpty()) return code
+
+        val lightClassesPaths = filesToGenerate.associate { Pair(it, manager.updateLightClassesSources(it)) }
+        val sourceFiles = lightClassesPaths.values.flatten().distinct().flatMap {
+            manager.getSourceFiles(LightClassFile(project, it).asFile())
+        }.distinct()
+        if (sourceFiles.isEmpty()) return code
+
+        val outputFiles = try {
+            val result = analysisResult() ?: return code
+            val state = buildLightClasses(result, project, sourceFiles) ?: return code
+            state.factory.asList()
+        } catch (ex: Exception) {
+            KotlinLogger.INSTANCE.logWarning("Couldn't create light classes for ${filesToGenerate.map { it.path }}")
+            return code
+        }
+
+        lightClassesPaths.forEach { (file, paths) ->
+            val fileCode = outputFiles
+                    .filter { outputFile -> paths.any { outputFile.belongsTo(it) } }
+                    .map { it.asByteArray() }
+            cache.put(project, file, signatures[file]!!, fileCode)
+            code.put(file, fileCode)
         }
 
         return code
     }
+
+    private fun OutputFile.belongsTo(lightClassPath: String) =
+            relativePath == lightClassPath || relativePath.startsWith("${lightClassPath.removeSuffix(".class")}$")
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.filesystem.lightclasses
+
+import com.intellij.psi.PsiComment
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiWhiteSpace
+import java.util.concurrent.atomic.AtomicLong
+import org.jetbrains.kotlin.lexer.KtTokens
+import org.jetbrains.kotlin.psi.KtAnonymousInitializer
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import org.jetbrains.kotlin.psi.KtProperty
+import org.jetbrains.kotlin.psi.KtPropertyAccessor
+import org.jetbrains.kotlin.psi.KtSecondaryConstructor
+import org.jetbrains.kotlin.psi.KtTreeVisitorVoid
+import org.jetbrains.kotlin.resolve.ProjectModificationStamps
+import org.netbeans.api.project.Project
+import org.openide.filesystems.FileObject
+
+/**
+ * Hash of the file text without comments, whitespaces and the bodies that can't 
+ * change light classes of the file. Bodies are kept when the type of a declaration 
+ * is inferred from them and initializers are kept for constants.
+ */
+fun KtFile.declarationSignatureHash(): Int {
+    val signature = StringBuilder()
+
+    accept(object : KtTreeVisitorVoid() {
+        override fun visitElement(element: PsiElement) {
+            if (element is PsiWhiteSpace || element is PsiComment) return
+            if (element.firstChild == null) {
+                signature.append(element.text).append(' ')
+                return
+            }
+
+            super.visitElement(element)
+        }
+
+        override fun visitNamedFunction(function: KtNamedFunction) {
+            val skipBody = function.hasBlockBody() || function.hasDeclaredReturnType()
+            visitChildren(function, function.bodyExpression.takeIf { skipBody })
+        }
+
+        override fun visitProperty(property: KtProperty) {
+            val skipInitializer = property.typeReference != null && !property.hasModifier(KtTokens.CONST_KEYWORD)
+            visitChildren(property, property.initializer.takeIf { skipInitializer })
+        }
+
+        override fun visitPropertyAccessor(accessor: KtPropertyAccessor) {
+            val property = accessor.property
+            val skipBody = accessor.hasBlockBody() || property.typeReference != null
+            visitChildren(accessor, accessor.bodyExpression.takeIf { skipBody })
+        }
+
+        override fun visitSecondaryConstructor(constructor: KtSecondaryConstructor) {
+            visitChildren(constructor, constructor.bodyExpression)
+        }
+
+        override fun visitAnonymousInitializer(initializer: KtAnonymousInitializer) {}
+
+        private fun visitChildren(element: PsiElement, skipped: PsiElement?) {
+            var child = element.firstChild
+            while (child != null) {
+                if (child !== skipped) child.accept(this)
+                child = child.nextSibling
+            }
+        }
+    })
+
+    return signature.toString().hashCode()
+}
+
+/**
+ * Declaration signature of a file together with the stamp of all signatures of its 
+ * project. Light classes and Java stubs of the file stay valid while the stamp is 
+ * the same, as types inferred in the file may depend on declarations of other files.
+ */
+data class SignatureStamp(val signature: Int, val projectStamp: Long)
+
+/**
+ * Kotlin declaration signatures of project files. Signatures are updated whenever a file 
+ * is parsed again in the IDE, indexed after a change on disk, or before light classes and 
+ * Java stubs are generated. The project stamp only advances when a signature changes, and 
+ * a change also advances [ProjectModificationStamps], as analyses of other files may depend 
+ * on it. Changes of Java sources and the classpath are not seen here.
+ */
+object DeclarationSignatures {
+
+    private val stamps = AtomicLong()
+
+    private class ProjectSignatures {
+        val signatures = hashMapOf<FileObject, Int>()
+        var stamp = stamps.incrementAndGet()
+    }
+
+    private val projects = hashMapOf<Project, ProjectSignatures>()
+
+    fun update(project: Project, ktFiles: Map<FileObject, KtFile>): Map<FileObject, SignatureStamp> {
+        val signatures = ktFiles.mapValues { it.value.declarationSignatureHash() }
+
+        return synchronized(this) {
+            val projectSignatures = projects.getOrPut(project) { ProjectSignatures() }
+            if (signatures.any { (file, signature) -> projectSignatures.signatures[file] != signature }) {
+                projectSignatures.stamp = stamps.incrementAndGet()
+                projectSignatures.signatures.putAll(signatures)
+                ProjectModificationStamps.bump(project)
+            }
+
+            signatures.mapValues { SignatureStamp(it.value, projectSignatures.stamp) }
+        }
+    }
+
+    @Synchronized fun invalidate(project: Project) {
+        projects.remove(project)
+    }
+
+}
+
+/**
+ * Per file values of a project which are valid while the [SignatureStamp] of the file is the same.
+ */
+class SignatureCache<T> {
+
+    private val entries = hashMapOf<Project, MutableMap<FileObject, Pair<SignatureStamp, T>>>()
+
+    @Synchronized fun get(project: Project, file: FileObject, stamp: SignatureStamp): T? {
+        val projectEntries = entries[project] ?: return null
+        val (cachedStamp, value) = projectEntries[file] ?: return null
+        if (cachedStamp != stamp) {
+            projectEntries.remove(file)
+            return null
+        }
+
+        return value
+    }
+
+    @Synchronized fun put(project: Project, file: FileObject, stamp: SignatureStamp, value: T) {
+        entries.getOrPut(project) { hashMapOf() }.put(file, Pair(stamp, value))
+    }
+
+    @Synchronized fun invalidate(project: Project) {
+        entries.remove(project)
+    }
+
+}
@@ -17,20 +17,30 @@
 package org.jetbrains.kotlin.filesystem
 
 import java.io.File
+import java.util.concurrent.Callable
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
 import org.jetbrains.kotlin.builder.KotlinPsiManager
 import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParser
 import org.jetbrains.kotlin.model.KotlinEnvironment
 import org.jetbrains.kotlin.resolve.AnalysisResultWithProvider
 import org.jetbrains.kotlin.resolve.NetBeansAnalyzerFacadeForJVM
+import org.jetbrains.kotlin.filesystem.lightclasses.DeclarationSignatures
 import org.jetbrains.kotlin.filesystem.lightclasses.KotlinLightClassGeneration
+import org.jetbrains.kotlin.filesystem.lightclasses.SignatureCache
 import org.jetbrains.kotlin.log.KotlinLogger
 import org.jetbrains.kotlin.projectsextensions.KotlinProjectHelper
 import org.jetbrains.kotlin.utils.ProjectUtils
 import org.jetbrains.kotlin.utils.hasMain
+import org.netbeans.api.progress.ProgressHandleFactory
 import org.netbeans.api.project.Project
 import org.netbeans.modules.java.preprocessorbridge.spi.VirtualSourceProvider
 import org.openide.filesystems.FileObject
 import org.openide.filesystems.FileUtil
+import org.openide.util.Cancellable
+import org.openide.util.RequestProcessor
 
 fun translate(files: Iterable<File>, result: VirtualSourceProvider.Result) {
     KotlinLogger.INSTANCE.logInfo("KotlinVirtualSourceProvider translate $files")
@@ -45,31 +55,155 @@ fun translate(files: Iterable<File>, result: VirtualSourceProvider.Result) {
     
     if (filesToTranslate.size == KotlinPsiManager.getFilesByProject(project, false).size) {
         if (KotlinVirtualSourceProvider.isFullyTranslated(project)) return else KotlinVirtualSourceProvider.translated(project)
-        val startTime = System.nanoTime()
-        val analysisResult = NetBeansAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
-                project, KotlinEnvironment.getEnvironment(project).project,
-                ProjectUtils.getSourceFilesWithDependencies(project))
-        KotlinLogger.INSTANCE.logInfo("Kotlin analysis took ${(System.nanoTime() - startTime)}")
-        filesToTranslate.translate(result, analysisResult, project)
+        val progress = TranslationProgress(filesToTranslate.size)
+        try {
+            // the project is analyzed only if stubs of some file can't be reused
+            val analysisResult = lazy { analyzeProject(project, progress) }
+            filesToTranslate.translate(result, analysisResult, project, progress)
+        } finally {
+            progress.finish()
+            // the project is translated again the next time it is requested
+            if (progress.isCancelled) KotlinVirtualSourceProvider.translationCancelled(project)
+        }
         return
     }
 
     filesToTranslate.translate(result)
 }
 
+/**
+ * Java stubs of translated files as pairs of package names and stub texts.
+ */
+private val javaStubs = SignatureCache<List<Pair<String, String>>>()
+
+fun invalidateJavaStubs(project: Project) = javaStubs.invalidate(project)
+
+/**
+ * Files are analyzed and light classes generated in chunks of this many files, 
+ * so cancellation and progress are checked between analyses and codegen runs.
+ */
+private const val TRANSLATION_CHUNK_SIZE = 64
+
+private val stubGenerator = RequestProcessor("Kotlin Java stub generation", Runtime.getRuntime().availableProcessors())
+
+/**
+ * Progress of a project-wide translation, which can be cancelled by the user 
+ * or by interruption of the indexing thread.
+ */
+private class TranslationProgress(private val filesCount: Int) : Cancellable {
+
+    @Volatile private var cancelled = false
+    private var translatedFiles = 0
+    private val handle = ProgressHandleFactory.createHandle("Generating Java stubs of Kotlin files", this).apply {
+        start(filesCount)
+    }
+
+    val isCancelled: Boolean
+        get() = cancelled || Thread.currentThread().isInterrupted
+
+    override fun cancel(): Boolean {
+        cancelled = true
+        return true
+    }
+
+    fun analyzed(count: Int, total: Int) = handle.progress("Analyzing Kotlin files ($count/$total)")
+
+    fun translated(count: Int) {
+        translatedFiles = minOf(filesCount, translatedFiles + count)
+        handle.progress(translatedFiles)
+    }
+
+    fun finish() = handle.finish()
+
+}
+
+/**
+ * Analyzes all sources of the [project] in chunks and returns the result for all of them, 
+ * or null if the translation was cancelled meanwhile. Bodies analyzed with the chunks are 
+ * kept by the analysis session, so the last analysis only collects the result.
+ */
+private fun analyzeProject(project: Project, progress: TranslationProgress): AnalysisResultWithProvider? {
+    val startTime = System.nanoTime()
+    val environmentProject = KotlinEnvironment.getEnvironment(project).project
+    val sourceFiles = ProjectUtils.getSourceFilesWithDependencies(project).toList()
+
+    for (chunkStart in 0 until sourceFiles.size step TRANSLATION_CHUNK_SIZE) {
+        if (progress.isCancelled) return null
+
+        val chunkEnd = minOf(sourceFiles.size, chunkStart + TRANSLATION_CHUNK_SIZE)
+        NetBeansAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+                project, environmentProject, sourceFiles.subList(chunkStart, chunkEnd))
+        progress.analyzed(chunkEnd, sourceFiles.size)
+    }
+    if (progress.isCancelled) return null
+
+    return NetBeansAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(project, environmentProject, sourceFiles).also {
+        KotlinLogger.INSTANCE.logInfo("Kotlin analysis took ${(System.nanoTime() - startTime)}")
+    }
+}
+
 private fun List<FileObject>.translate(result: VirtualSourceProvider.Result,
-                                       analysisResult: AnalysisResultWithProvider? = null,
-                                       proj: Project? = null) = map { Pair(it, it.byteCode(analysisResult, proj)) }
-        .filter { it.second.isNotEmpty() }
-        .forEach {
-            val stubs = JavaStubGenerator.gen(it.second)
-            stubs.forEach { (first, code) ->
-                val packageName = first.name.substringBeforeLast("/")
-
-                result.add(FileUtil.toFile(it.first), packageName, it.first.name, code)
-            }
+                                       analysisResult: Lazy<AnalysisResultWithProvider?>? = null,
+                                       proj: Project? = null,
+                                       progress: TranslationProgress? = null) {
+    val project = proj ?: firstOrNull()?.let { ProjectUtils.getKotlinProjectForFileObject(it) } ?: return
+    val ktFiles = mapNotNull { file -> ProjectUtils.getKtFile(file)?.let { Pair(file, it) } }.toMap()
+    val signatures = DeclarationSignatures.update(project, ktFiles)
+
+    // stubs of files whose declarations are the same are handed back without code generation
+    val stubs = hashMapOf<FileObject, List<Pair<String, String>>>()
+    signatures.forEach { (file, stamp) -> javaStubs.get(project, file, stamp)?.let { stubs.put(file, it) } }
+    progress?.translated(stubs.size)
+
+    val changedFiles = ktFiles.keys.filter { it !in stubs }
+    val generatedStubs = arrayListOf<Pair<FileObject, Future<List<Pair<String, String>>>>>()
+    for (chunkStart in 0 until changedFiles.size step TRANSLATION_CHUNK_SIZE) {
+        if (progress != null && progress.isCancelled) break
+
+        val chunk = changedFiles.subList(chunkStart, minOf(changedFiles.size, chunkStart + TRANSLATION_CHUNK_SIZE))
+        chunk.byteCode(analysisResult, project)
+                .filter { it.second.isNotEmpty() }
+                .forEach { (file, byteCode) ->
+                    val stubsTask = Callable { generateStubs(byteCode) }
+                    // a few files are translated on the calling thread
+                    generatedStubs.add(Pair(file, if (progress != null) stubGenerator.submit(stubsTask) 
+                            else FutureTask(stubsTask).apply { run() }))
+                }
+        progress?.translated(chunk.size)
+    }
+
+    generatedStubs.forEach { (file, future) ->
+        if (progress != null && progress.isCancelled) {
+            future.cancel(false)
+            return@forEach
         }
 
+        val fileStubs = try {
+            future.get()
+        } catch (ex: ExecutionException) {
+            KotlinLogger.INSTANCE.logException("Couldn't generate Java stubs for ${file.path}", ex.cause ?: ex)
+            return@forEach
+        } catch (ex: CancellationException) {
+            return@forEach
+        } catch (ex: InterruptedException) {
+            Thread.currentThread().interrupt()
+            return@forEach
+        }
+
+        javaStubs.put(project, file, signatures[file]!!, fileStubs)
+        stubs.put(file, fileStubs)
+    }
+    KotlinLogger.INSTANCE.logInfo("Java stubs of ${ktFiles.size - changedFiles.size} files reused")
+
+    forEach { file ->
+        stubs[file]?.forEach { (packageName, code) -> result.add(FileUtil.toFile(file), packageName, file.name, code) }
+    }
+}
+
+private fun generateStubs(byteCode: List<ByteArray>) = JavaStubGenerator.gen(byteCode).map { (classNode, code) ->
+    Pair(classNode.name.substringBeforeLast("/"), code)
+}
+
 private fun File?.skipTranslating(): Boolean {
     if (this == null) return true
 
@@ -80,12 +214,20 @@ private fun File?.skipTranslating(): Boolean {
     return !KotlinProjectHelper.hasJavaFiles(project)
 }
 
-private fun FileObject.byteCode(result: AnalysisResultWithProvider? = null,
-                                proj: Project? = null): List<ByteArray> {
-    val project = proj ?: ProjectUtils.getKotlinProjectForFileObject(this) ?: return emptyList()
-    val ktFile = ProjectUtils.getKtFile(this) ?: return emptyList()
-    val analysisResult = result ?: KotlinParser.getAnalysisResult(ktFile, project) ?: return emptyList()
+private fun List<FileObject>.byteCode(result: Lazy<AnalysisResultWithProvider?>? = null,
+                                      proj: Project? = null): List<Pair<FileObject, List<ByteArray>>> {
+    val project = proj ?: firstOrNull()?.let { ProjectUtils.getKotlinProjectForFileObject(it) } ?: return emptyList()
+    val byteCode = KotlinLightClassGeneration.getByteCode(this, project) {
+        if (result != null) result.value?.analysisResult else analyze(project)?.analysisResult
+    }
 
-    return KotlinLightClassGeneration.getByteCode(this, project, analysisResult.analysisResult)
+    return map { Pair(it, byteCode[it] ?: emptyList()) }
 }
 
+private fun List<FileObject>.analyze(project: Project): AnalysisResultWithProvider? {
+    val ktFiles = mapNotNull { ProjectUtils.getKtFile(it) }
+    val ktFile = ktFiles.singleOrNull() ?: return NetBeansAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+            project, KotlinEnvironment.getEnvironment(project).project, ktFiles)
+
+    return KotlinParser.getAnalysisResult(ktFile, project)
+}
\ No newline at end of file
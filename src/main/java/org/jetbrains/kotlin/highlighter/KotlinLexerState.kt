@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.highlighter
+
+import com.intellij.psi.tree.IElementType
+import org.jetbrains.kotlin.lexer.KtTokens
+
+/**
+ * String template or doc comment the Kotlin lexer is inside of at a token boundary. When 
+ * lexing restarts at the boundary the [prefix]es of all frames are lexed first to put the 
+ * lexer back into the same state.
+ */
+sealed class TemplateFrame(val prefix: String) {
+    object StringFrame : TemplateFrame("\"")
+    object RawStringFrame : TemplateFrame("\"\"\"")
+    object ShortEntryFrame : TemplateFrame("$")
+    data class LongEntryFrame(val braces: Int) : TemplateFrame("\${" + "{".repeat(braces))
+    
+    /**
+     * Doc comment with the start of the comment and the text of its current line before the boundary,
+     * which is enough to restore the state of the KDoc lexer outside of code blocks.
+     */
+    data class DocCommentFrame(val text: String) : TemplateFrame(text)
+}
+
+fun List<TemplateFrame>.after(type: IElementType, length: Int): List<TemplateFrame> {
+    val top = lastOrNull()
+    return when {
+        top == TemplateFrame.ShortEntryFrame -> dropLast(1)
+        type == KtTokens.OPEN_QUOTE -> this + if (length == 3) TemplateFrame.RawStringFrame else TemplateFrame.StringFrame
+        type == KtTokens.CLOSING_QUOTE || type == KtTokens.DANGLING_NEWLINE -> {
+            if (top == TemplateFrame.StringFrame || top == TemplateFrame.RawStringFrame) dropLast(1) else this
+        }
+        type == KtTokens.SHORT_TEMPLATE_ENTRY_START -> this + TemplateFrame.ShortEntryFrame
+        type == KtTokens.LONG_TEMPLATE_ENTRY_START -> this + TemplateFrame.LongEntryFrame(0)
+        type == KtTokens.LONG_TEMPLATE_ENTRY_END -> if (top is TemplateFrame.LongEntryFrame) dropLast(1) else this
+        top is TemplateFrame.LongEntryFrame && type == KtTokens.LBRACE -> dropLast(1) + TemplateFrame.LongEntryFrame(top.braces + 1)
+        top is TemplateFrame.LongEntryFrame && type == KtTokens.RBRACE -> dropLast(1) + TemplateFrame.LongEntryFrame(top.braces - 1)
+        else -> this
+    }
+}
+
+/**
+ * Kind of the last significant token, used to tell soft keywords from identifiers.
+ */
+enum class PreviousToken {
+    NONE, ACCESS, AT, RBRACE, KEYWORD, MODIFIER, TYPE_ARGUMENT_START, OTHER
+}
+
+/**
+ * State of [KotlinTokenScanner] after a token. NetBeans restarts lexing after a modification
+ * with the state of the preceding token, so it holds everything needed to continue from there.
+ */
+data class KotlinLexerState(val frames: List<TemplateFrame> = emptyList(),
+                            val previous: PreviousToken = PreviousToken.NONE,
+                            val newLine: Boolean = true,
+                            val propertyPending: Boolean = false) {
+    
+    companion object {
+        val INITIAL = KotlinLexerState()
+    }
+    
+}
@@ -16,83 +16,327 @@
  *******************************************************************************/
 package org.jetbrains.kotlin.highlighter
 
-import com.intellij.psi.PsiElement
-import org.jetbrains.kotlin.builder.KotlinPsiManager
+import com.intellij.psi.tree.IElementType
 import org.jetbrains.kotlin.highlighter.netbeans.KotlinToken
 import org.jetbrains.kotlin.highlighter.netbeans.KotlinTokenId
-import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.kdoc.lexer.KDocLexer
+import org.jetbrains.kotlin.kdoc.lexer.KDocToken
+import org.jetbrains.kotlin.lexer.KotlinLexer
+import org.jetbrains.kotlin.lexer.KtKeywordToken
+import org.jetbrains.kotlin.lexer.KtTokens
 import org.netbeans.spi.lexer.LexerInput
 
-class KotlinTokenScanner(private val input: LexerInput?, text: String? = null) {
-
+/**
+ * Splits Kotlin code into highlighting tokens with the Kotlin lexer. Text is read from
+ * [LexerInput] line by line only as far as needed, so after a modification NetBeans
+ * relexes just the damaged region starting from a token boundary with its [state].
+ */
+class KotlinTokenScanner private constructor(private val input: LexerInput?,
+                                             private val text: StringBuilder,
+                                             private var isComplete: Boolean,
+                                             initialState: KotlinLexerState?) {
+    
+    constructor(input: LexerInput, state: KotlinLexerState?) : this(input, StringBuilder(), false, state)
+    
+    constructor(text: String) : this(null, StringBuilder(text), true, null)
+    
+    private companion object {
+        const val MIN_CHUNK_SIZE = 1
+        const val MAX_MODIFIERS_CHAIN = 8
+        
+        val softKeywords = (KtTokens.SOFT_KEYWORDS.types + KtTokens.MODIFIER_KEYWORDS.types)
+                .filterIsInstance<KtKeywordToken>()
+                .map { it.value }
+                .toSet()
+        
+        val modifiers = KtTokens.MODIFIER_KEYWORDS.types
+                .filterIsInstance<KtKeywordToken>()
+                .map { it.value }
+                .toSet()
+        
+        val declarationKeywords = setOf(KtTokens.CLASS_KEYWORD, KtTokens.INTERFACE_KEYWORD, KtTokens.FUN_KEYWORD,
+                KtTokens.VAL_KEYWORD, KtTokens.VAR_KEYWORD, KtTokens.OBJECT_KEYWORD, KtTokens.TYPE_ALIAS_KEYWORD)
+        
+        val insignificant = setOf(KtTokens.WHITE_SPACE, KtTokens.EOL_COMMENT, KtTokens.BLOCK_COMMENT, KtTokens.DOC_COMMENT)
+    }
+    
+    private class RawToken(val type: IElementType, val start: Int, val end: Int, val frames: List<TemplateFrame>)
+    
+    private val lexer = KotlinLexer()
+    private val kdocLexer = KDocLexer()
     private val kotlinTokensFactory = KotlinTokensFactory()
-    private val ktFile: KtFile?
-    val tokens = arrayListOf<KotlinToken<KotlinTokenId>>()
-    
-    init {
-        ktFile = if (text == null) {
-            KotlinPsiManager.getParsedKtFileForSyntaxHighlighting(getTextToParse())
-        } else {
-            KotlinPsiManager.getParsedKtFileForSyntaxHighlighting(text)
+    
+    // tokens are lexed ahead of the emitted ones for soft keywords lookahead
+    private val pending = arrayListOf<RawToken>()
+    private var head = 0
+    
+    private var lexedEnd = 0
+    private var lexedFrames = initialState?.frames ?: emptyList()
+    private var consumed = 0
+    private var chunkSize = MIN_CHUNK_SIZE
+    
+    // end of the text looked at to emit the current token
+    private var lookaheadEnd = 0
+    
+    var state = initialState ?: KotlinLexerState.INITIAL
+        private set
+    
+    val tokens: List<KotlinToken<KotlinTokenId>> by lazy {
+        val result = arrayListOf<KotlinToken<KotlinTokenId>>()
+        while (true) {
+            result.add(getNextToken() ?: break)
         }
-        createListOfKotlinTokens()
+        result.add(KotlinToken(KotlinTokenId(TokenType.EOF.name, TokenType.EOF.name, TokenType.EOF.getId()),
+                "", TokenType.EOF))
+        
+        result
     }
     
-    constructor(text: String) : this(null, text)
+    fun getNextToken(): KotlinToken<KotlinTokenId>? {
+        lookaheadEnd = 0
+        val token = peek(head) ?: return null
+        // the lexer has looked into the next token to find the end of this one
+        peek(head + 1)
+        
+        val tokenText = text.substring(token.start, token.end)
+        val isSoftKeyword = token.type == KtTokens.IDENTIFIER && isSoftKeyword(tokenText, head)
+        val tokenType = if (isSoftKeyword) TokenType.KEYWORD else kotlinTokensFactory.getToken(token.type)
+        
+        head++
+        if (head > 256 && head * 2 > pending.size) {
+            pending.subList(0, head).clear()
+            head = 0
+        }
+        
+        // the text looked at is read through the input, so NetBeans relexes the token when it changes
+        input?.let { input -> 
+            repeat(lookaheadEnd - token.start) { input.read() }
+            input.backup(lookaheadEnd - token.end)
+        }
+        consumed = token.end
+        state = nextState(token, tokenText, isSoftKeyword)
+        
+        return KotlinToken(KotlinTokenId(tokenType.name, tokenType.name, tokenType.getId()), tokenText, tokenType)
+    }
     
-    private fun getTextToParse(): String {
-        if (input == null) return ""
-        val builder = StringBuilder()
-        var character: Int
+    private fun peek(index: Int): RawToken? {
+        while (index >= pending.size) {
+            if (!lexMore()) return null
+        }
         
-        do {
-            character = input.read()
-            builder.append(character.toChar())
-        } while (character != LexerInput.EOF)
+        val token = pending[index]
+        // the end of a token is known after the character following it is seen
+        lookaheadEnd = maxOf(lookaheadEnd, minOf(token.end + 1, text.length))
         
-        input.backup(input.readLengthEOF())
-        return builder.toString()
+        return token
+    }
+    
+    private fun nextSignificant(index: Int): Int? {
+        var next = index + 1
+        while (true) {
+            val token = peek(next) ?: return null
+            if (!isInsignificant(token.type)) return next
+            next++
+        }
     }
     
-    private fun createListOfKotlinTokens() {
-        tokens.clear()
-        if (ktFile == null) return
-        
-        var lastElement: PsiElement?
-        var offset = 0
-        
-        while(true) {
-            lastElement = ktFile.findElementAt(offset)
-            if (lastElement != null) {
-                offset = lastElement.textRange.endOffset
-                val tokenType = kotlinTokensFactory.getToken(lastElement)
-                tokens.add(KotlinToken(
-                        KotlinTokenId(tokenType.name, tokenType.name, tokenType.getId()),
-                        lastElement.text, tokenType))
-            } else {
-                tokens.add(KotlinToken(
-                        KotlinTokenId(TokenType.EOF.name, TokenType.EOF.name, TokenType.EOF.getId()),
-                        "", TokenType.EOF))
+    private fun lexMore(): Boolean {
+        while (true) {
+            if (lexAvailable()) {
+                chunkSize = MIN_CHUNK_SIZE
+                return true
+            }
+            if (isComplete) return false
+            
+            readMore()
+        }
+    }
+    
+    /**
+     * Lexes the text read so far from the last final token. A token reaching the end of
+     * the text read so far isn't final unless the input is complete, more text may change it.
+     */
+    private fun lexAvailable(): Boolean {
+        val prefix = lexedFrames.joinToString("") { it.prefix }
+        lexer.start(PrefixedText(prefix, text, lexedEnd), 0, prefix.length + text.length - lexedEnd, 0)
+        
+        var added = false
+        while (true) {
+            val type = lexer.tokenType ?: break
+            if (lexer.tokenEnd <= prefix.length) {
+                lexer.advance()
+                continue
+            }
+            
+            val start = lexedEnd + maxOf(lexer.tokenStart - prefix.length, 0)
+            val end = lexedEnd + lexer.tokenEnd - prefix.length
+            if (end >= text.length && !isComplete) break
+            
+            if (type == KtTokens.DOC_COMMENT) addDocTokens(start, end) else {
+                val frames = lexedFrames.after(type, end - start)
+                pending.add(RawToken(type, start, end, frames))
+                lexedFrames = frames
+            }
+            added = true
+            lexedEnd = end
+            lexer.advance()
+        }
+        
+        return added
+    }
+    
+    /**
+     * Splits the doc comment from [start] to [end] into KDoc tokens. Lexing restarted at a token 
+     * inside the comment continues with a [TemplateFrame.DocCommentFrame] of the token.
+     */
+    private fun addDocTokens(start: Int, end: Int) {
+        val docFrame = lexedFrames.lastOrNull() as? TemplateFrame.DocCommentFrame
+        val outerFrames = if (docFrame != null) lexedFrames.dropLast(1) else lexedFrames
+        val prefix = docFrame?.prefix ?: ""
+        val docText = prefix + text.substring(start, end)
+        
+        kdocLexer.start(docText)
+        while (true) {
+            val type = kdocLexer.tokenType ?: break
+            val tokenEnd = kdocLexer.tokenEnd
+            if (tokenEnd > prefix.length) {
+                val frames = if (tokenEnd == docText.length) outerFrames 
+                        else outerFrames + TemplateFrame.DocCommentFrame(docPrefix(docText, tokenEnd))
+                pending.add(RawToken(type, start + maxOf(kdocLexer.tokenStart - prefix.length, 0), 
+                        start + tokenEnd - prefix.length, frames))
+            }
+            kdocLexer.advance()
+        }
+        lexedFrames = outerFrames
+    }
+    
+    private fun docPrefix(docText: String, offset: Int): String {
+        val lineStart = docText.lastIndexOf('\n', offset - 1)
+        return if (lineStart < 0) docText.substring(0, offset) else "/**" + docText.substring(lineStart, offset)
+    }
+    
+    private fun readMore() {
+        if (input == null) {
+            isComplete = true
+            return
+        }
+        
+        // the input is at the end of the last emitted token, text read after it is read again
+        repeat(text.length - consumed) { input.read() }
+        
+        var read = 0
+        while (true) {
+            val character = input.read()
+            if (character == LexerInput.EOF) {
+                isComplete = true
                 break
             }
+            
+            text.append(character.toChar())
+            read++
+            if (character == '\n'.toInt() && read >= chunkSize) break
         }
+        chunkSize *= 2
+        
+        input.backup(input.readLengthEOF())
     }
     
-    fun getNextToken(): KotlinToken<KotlinTokenId>? {
-        if (input == null) return null
-        return if (tokens.isNotEmpty()) {
-            val ktToken = tokens.first()
-            tokens.removeAt(0)
-            var tokenLength = ktToken.length()
-            while (tokenLength > 0) {
-                input.read()
-                tokenLength--
+    private fun isSoftKeyword(name: String, index: Int): Boolean {
+        if (name !in softKeywords) return false
+        
+        val previous = state.previous
+        if (previous == PreviousToken.ACCESS) return false
+        
+        val nextIndex = nextSignificant(index)
+        val nextType = nextIndex?.let { peek(it) }?.type
+        if (previous == PreviousToken.AT) return nextType == KtTokens.COLON
+        
+        return when (name) {
+            "import" -> state.newLine && nextType == KtTokens.IDENTIFIER
+            "get", "set" -> state.propertyPending && 
+                    (previous == PreviousToken.MODIFIER || (state.newLine && (nextType == KtTokens.LPAR || nextType == KtTokens.EQ)))
+            "constructor" -> nextType == KtTokens.LPAR
+            "typealias" -> nextType == KtTokens.IDENTIFIER
+            "init" -> nextType == KtTokens.LBRACE
+            "catch" -> previous == PreviousToken.RBRACE && nextType == KtTokens.LPAR
+            "finally" -> previous == PreviousToken.RBRACE && nextType == KtTokens.LBRACE
+            "by" -> previous == PreviousToken.OTHER && nextType != null && nextType !in setOf(
+                    KtTokens.EQ, KtTokens.COLON, KtTokens.DOT, KtTokens.COMMA, KtTokens.RPAR, KtTokens.SEMICOLON)
+            "where" -> previous == PreviousToken.OTHER && nextType == KtTokens.IDENTIFIER
+            "out", "reified" -> previous == PreviousToken.TYPE_ARGUMENT_START && nextType == KtTokens.IDENTIFIER ||
+                    isDeclarationStart(nextIndex, 0)
+            "vararg", "noinline", "crossinline" -> nextType == KtTokens.IDENTIFIER || isDeclarationStart(nextIndex, 0)
+            in modifiers -> isDeclarationStart(nextIndex, 0)
+            else -> false
+        }
+    }
+    
+    /**
+     * Modifiers are keywords only if they are followed by a declaration, maybe after other modifiers.
+     */
+    private fun isDeclarationStart(index: Int?, chainLength: Int): Boolean {
+        val token = index?.let { peek(it) } ?: return false
+        return when (token.type) {
+            in declarationKeywords, KtTokens.AT -> true
+            KtTokens.IDENTIFIER -> {
+                val name = text.substring(token.start, token.end)
+                when (name) {
+                    "constructor", "get", "set", "init", "typealias" -> true
+                    in modifiers -> chainLength < MAX_MODIFIERS_CHAIN && isDeclarationStart(nextSignificant(index), chainLength + 1)
+                    else -> false
+                }
             }
-            ktToken
-        } else {
-            input.read()
-            KotlinToken(KotlinTokenId(TokenType.EOF.name, TokenType.EOF.name, TokenType.EOF.getId()),
-                    "", TokenType.EOF)
+            else -> false
+        }
+    }
+    
+    private fun isInsignificant(type: IElementType) = type in insignificant || type is KDocToken
+    
+    private fun nextState(token: RawToken, tokenText: String, isSoftKeyword: Boolean): KotlinLexerState {
+        val type = token.type
+        if (isInsignificant(type)) {
+            return if ('\n' in tokenText) state.copy(frames = token.frames, newLine = true) else state.copy(frames = token.frames)
+        }
+        
+        val previous = when {
+            type == KtTokens.DOT || type == KtTokens.SAFE_ACCESS || type == KtTokens.COLONCOLON -> PreviousToken.ACCESS
+            type == KtTokens.AT -> PreviousToken.AT
+            type == KtTokens.RBRACE -> PreviousToken.RBRACE
+            type == KtTokens.LT || type == KtTokens.COMMA -> PreviousToken.TYPE_ARGUMENT_START
+            isSoftKeyword && tokenText in modifiers -> PreviousToken.MODIFIER
+            isSoftKeyword || type in KtTokens.KEYWORDS -> PreviousToken.KEYWORD
+            else -> PreviousToken.OTHER
         }
+        val propertyPending = when {
+            type == KtTokens.VAL_KEYWORD || type == KtTokens.VAR_KEYWORD -> true
+            type in declarationKeywords -> false
+            else -> state.propertyPending
+        }
+        
+        return KotlinLexerState(token.frames, previous, type == KtTokens.SEMICOLON, propertyPending)
     }
-}
\ No newline at end of file
+    
+}
+
+/**
+ * Text of the lexer: the [prefix] restoring the lexer state followed by [text] from [offset].
+ */
+private class PrefixedText(private val prefix: String,
+                           private val text: CharSequence,
+                           private val offset: Int) : CharSequence {
+    
+    override val length: Int
+        get() = prefix.length + text.length - offset
+    
+    override fun get(index: Int) = if (index < prefix.length) prefix[index] else text[offset + index - prefix.length]
+    
+    override fun subSequence(startIndex: Int, endIndex: Int): CharSequence {
+        val builder = StringBuilder(endIndex - startIndex)
+        for (i in startIndex until endIndex) builder.append(get(i))
+        
+        return builder
+    }
+    
+    override fun toString() = subSequence(0, length).toString()
+    
+}
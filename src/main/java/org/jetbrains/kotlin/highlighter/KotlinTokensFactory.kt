@@ -19,6 +19,8 @@ package org.jetbrains.kotlin.highlighter
 import org.jetbrains.kotlin.lexer.KtTokens
 import com.intellij.psi.impl.source.tree.LeafPsiElement
 import com.intellij.psi.PsiElement
+import com.intellij.psi.tree.IElementType
+import org.jetbrains.kotlin.kdoc.lexer.KDocToken
 import org.jetbrains.kotlin.kdoc.lexer.KDocTokens
 
 class KotlinTokensFactory {
@@ -26,15 +28,19 @@ class KotlinTokensFactory {
     fun getToken(leafElement: PsiElement): TokenType {
         if (leafElement !is LeafPsiElement) return TokenType.UNDEFINED
 
-        val elementType = leafElement.elementType
+        return getToken(leafElement.elementType)
+    }
+
+    fun getToken(elementType: IElementType): TokenType {
         return when (elementType) {
             in KtTokens.KEYWORDS, in KtTokens.SOFT_KEYWORDS, in KtTokens.MODIFIER_KEYWORDS -> TokenType.KEYWORD
             in KtTokens.STRINGS, KtTokens.OPEN_QUOTE, KtTokens.CLOSING_QUOTE -> TokenType.STRING
             KtTokens.IDENTIFIER -> TokenType.IDENTIFIER
             in KtTokens.WHITESPACES -> TokenType.WHITESPACE
             KtTokens.EOL_COMMENT -> TokenType.SINGLE_LINE_COMMENT
-            in KtTokens.COMMENTS, in KDocTokens.KDOC_HIGHLIGHT_TOKENS -> TokenType.MULTI_LINE_COMMENT
-            KDocTokens.TAG_NAME -> TokenType.KDOC_LINK
+            KDocTokens.TAG_NAME -> TokenType.KDOC_TAG_NAME
+            KDocTokens.MARKDOWN_LINK -> TokenType.KDOC_LINK
+            in KtTokens.COMMENTS, is KDocToken -> TokenType.MULTI_LINE_COMMENT
             else -> TokenType.UNDEFINED
         }
     }
@@ -17,29 +17,22 @@
 package org.jetbrains.kotlin.highlighter.netbeans
 
 import org.jetbrains.kotlin.language.KotlinLanguageHierarchy
+import org.jetbrains.kotlin.highlighter.KotlinLexerState
 import org.jetbrains.kotlin.highlighter.KotlinTokenScanner
 import org.netbeans.api.lexer.Token
 import org.netbeans.spi.lexer.Lexer
-import org.netbeans.spi.lexer.LexerInput
 import org.netbeans.spi.lexer.LexerRestartInfo
 
 class KotlinLexerProxy(private val info: LexerRestartInfo<KotlinTokenId>) : Lexer<KotlinTokenId> {
     
-    private val kotlinTokenScanner: KotlinTokenScanner by lazy { KotlinTokenScanner(input) }
-    private val input: LexerInput = info.input()
+    private val kotlinTokenScanner = KotlinTokenScanner(info.input(), info.state() as? KotlinLexerState)
     
     override fun nextToken(): Token<KotlinTokenId>? {
-        val token = kotlinTokenScanner.getNextToken()
+        val token = kotlinTokenScanner.getNextToken() ?: return null
         
-        if (input.readLength() < 1) return null
-        
-        return if (token == null) {
-            info.tokenFactory().createToken(KotlinLanguageHierarchy.getToken(7))
-        }  else {
-            info.tokenFactory().createToken(KotlinLanguageHierarchy.getToken(token.id().ordinal()))
-        }
+        return info.tokenFactory().createToken(KotlinLanguageHierarchy.getToken(token.id().ordinal()))
     }
     
-    override fun state() = null
+    override fun state() = kotlinTokenScanner.state.takeIf { it != KotlinLexerState.INITIAL }
     override fun release() {}
 }
\ No newline at end of file
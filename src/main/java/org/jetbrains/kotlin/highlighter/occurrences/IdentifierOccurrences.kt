@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.highlighter.occurrences
+
+import org.jetbrains.kotlin.lexer.KotlinLexer
+import org.jetbrains.kotlin.lexer.KtTokens
+
+/**
+ * Start offsets of identifiers of a file by their names without backquotes,
+ * collected from the token stream of the lexer.
+ */
+class IdentifierOccurrences(text: CharSequence) {
+
+    private val offsets = hashMapOf<String, IntArray>()
+
+    init {
+        val occurrences = hashMapOf<String, MutableList<Int>>()
+        val lexer = KotlinLexer()
+        lexer.start(text)
+
+        while (lexer.tokenType != null) {
+            if (lexer.tokenType == KtTokens.IDENTIFIER) {
+                val name = text.subSequence(lexer.tokenStart, lexer.tokenEnd).toString().removeSurrounding("`")
+                occurrences.getOrPut(name) { arrayListOf() }.add(lexer.tokenStart)
+            }
+            lexer.advance()
+        }
+
+        occurrences.forEach { (name, nameOffsets) -> offsets.put(name, nameOffsets.toIntArray()) }
+    }
+
+    operator fun get(name: String): IntArray = offsets[name] ?: NO_OFFSETS
+
+    private companion object {
+        val NO_OFFSETS = IntArray(0)
+    }
+
+}
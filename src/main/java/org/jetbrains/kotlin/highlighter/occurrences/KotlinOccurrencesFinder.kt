@@ -18,10 +18,8 @@ package org.jetbrains.kotlin.highlighter.occurrences
 
 import com.intellij.psi.util.PsiTreeUtil
 import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
-import org.jetbrains.kotlin.navigation.references.resolveToSourceDeclaration
 import org.jetbrains.kotlin.projectsextensions.KotlinProjectHelper.isScanning
 import org.jetbrains.kotlin.psi.KtElement
-import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.language.Priorities
 import org.netbeans.modules.csl.api.ColoringAttributes
 import org.netbeans.modules.csl.api.OccurrencesFinder
@@ -40,13 +38,11 @@ class KotlinOccurrencesFinder : OccurrencesFinder<KotlinParserResult>() {
         highlighting.clear()
         if (result == null) return
         
-        if (result.project.isScanning()) return
+        if (result.project.isScanning() || result.analysisResult == null) return
         
-        val ktFile = result.ktFile
-        
-        val psiElement = ktFile.findElementAt(caretPosition)
+        val psiElement = result.ktFile.findElementAt(caretPosition)
         val ktElement = PsiTreeUtil.getNonStrictParentOfType(psiElement, KtElement::class.java) ?: return
-        findOccurrences(ktElement, ktFile)
+        findOccurrences(ktElement, result)
     }
 
     override fun getSchedulerClass(): Class<out Scheduler> = Scheduler.EDITOR_SENSITIVE_TASK_SCHEDULER
@@ -63,12 +59,14 @@ class KotlinOccurrencesFinder : OccurrencesFinder<KotlinParserResult>() {
         caretPosition = position
     }
     
-    private fun findOccurrences(ktElement : KtElement, ktFile: KtFile) {
-        val sourceElements = ktElement.resolveToSourceDeclaration()
-        if (sourceElements.isEmpty()) return
+    private fun findOccurrences(ktElement : KtElement, result: KotlinParserResult) {
+        val sourceElements = result.resolveToSourceDeclaration(ktElement)
+        if (sourceElements.isEmpty() || cancel) return
         
         val searchingElements = getSearchingElements(sourceElements)
-        val ranges = search(searchingElements, ktFile)
+        val ranges = search(searchingElements, result)
+        if (cancel) return
+        
         ranges.forEach { highlighting.put(it, ColoringAttributes.MARK_OCCURRENCES) }
     }
 }
\ No newline at end of file
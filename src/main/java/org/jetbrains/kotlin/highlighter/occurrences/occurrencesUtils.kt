@@ -21,13 +21,16 @@ package org.jetbrains.kotlin.highlighter.occurrences
 import com.intellij.psi.PsiElement
 import kotlin.Pair
 import org.jetbrains.kotlin.descriptors.SourceElement
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
 import org.jetbrains.kotlin.navigation.references.*
 import org.jetbrains.kotlin.psi.psiUtil.getNonStrictParentOfType
 import org.jetbrains.kotlin.psi.KtElement
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.psi.KtNamedDeclaration
 import org.jetbrains.kotlin.psi.KtReferenceExpression
+import org.jetbrains.kotlin.resolve.BindingContext
 import org.jetbrains.kotlin.resolve.source.KotlinSourceElement
+import org.netbeans.api.project.Project
 import org.netbeans.modules.csl.api.OffsetRange
 
 private fun getLengthOfIdentifier(ktElement: KtElement?) = when (ktElement) {
@@ -45,6 +48,15 @@ fun search(searchElement: KtElement, ktFile: KtFile) = searchTextOccurrences(ktF
         .mapNotNull { getLengthOfIdentifier(it) }
         .map { OffsetRange(it.first, it.second) }
 
+/**
+ * Searches occurrences resolving references with [context], so files analyzed 
+ * together don't need an analysis of their own.
+ */
+fun search(searchElement: KtElement, ktFile: KtFile, context: BindingContext, project: Project) = 
+        searchTextOccurrences(ktFile, searchElement) { it.resolveToSourceDeclaration(context, project) }
+                .mapNotNull { getLengthOfIdentifier(it) }
+                .map { OffsetRange(it.first, it.second) }
+
 fun search(searchingElements: List<SourceElement>, ktFile: KtFile): List<OffsetRange> {
     val searchElements = getKotlinElements(searchingElements)
     if (searchElements.isEmpty()) return emptyList()
@@ -55,17 +67,38 @@ fun search(searchingElements: List<SourceElement>, ktFile: KtFile): List<OffsetR
     return occurrences.mapNotNull { getLengthOfIdentifier(it)?.let { OffsetRange(it.first, it.second) } }
 }
 
+/**
+ * Searches occurrences among identifiers of the parsed file, resolving them 
+ * with the binding context of [parserResult].
+ */
+fun search(searchingElements: List<SourceElement>, parserResult: KotlinParserResult): List<OffsetRange> {
+    val searchElement = getKotlinElements(searchingElements).firstOrNull() ?: return emptyList()
+    val name = searchElement.name ?: return emptyList()
+    val ktFile = parserResult.ktFile
+    
+    return parserResult.identifierOccurrences[name]
+            .mapNotNull { ktFile.findElementAt(it)?.getNonStrictParentOfType(KtElement::class.java) }
+            .filter { it.filterBeforeResolve() }
+            .filter { parserResult.resolveToSourceDeclaration(it).filterAfterResolve(searchElement) }
+            .mapNotNull { getLengthOfIdentifier(it)?.let { OffsetRange(it.first, it.second) } }
+}
+
 fun getKotlinElements(sourceElements: List<SourceElement>) = sourceElements
         .filterIsInstance(KotlinSourceElement::class.java)
         .map { it.psi }
 
-fun searchTextOccurrences(ktFile: KtFile, sourceElement: KtElement): List<KtElement> {
+fun searchTextOccurrences(ktFile: KtFile, sourceElement: KtElement) = 
+        searchTextOccurrences(ktFile, sourceElement) { it.resolveToSourceDeclaration() }
+
+private fun searchTextOccurrences(ktFile: KtFile, 
+                                  sourceElement: KtElement, 
+                                  resolve: (KtElement) -> List<SourceElement>): List<KtElement> {
     val elementName = sourceElement.name ?: return emptyList()
     val elements: Collection<KtElement> = getAllOccurrencesInFile(ktFile, elementName)
             .mapNotNull { it.getNonStrictParentOfType(KtElement::class.java) }
     
     return elements.filter { it.filterBeforeResolve() }
-            .filter { it.resolveToSourceDeclaration().filterAfterResolve(sourceElement) }
+            .filter { resolve(it).filterAfterResolve(sourceElement) }
 }
 
 private fun getAllOccurrencesInFile(ktFile: KtFile, text: String): List<PsiElement> {
@@ -21,6 +21,8 @@ import org.netbeans.modules.csl.api.ColoringAttributes
 class KotlinHighlightingAttributes private constructor() {
     lateinit var styleKey: Set<ColoringAttributes>
     
+    val smartCastStyleKey: Set<ColoringAttributes> by lazy { styleKey + SMART_CAST.styleKey }
+    
     companion object {
         fun withAttributes(changeAttributes: KotlinHighlightingAttributes.() -> Unit): KotlinHighlightingAttributes {
             val attributes = KotlinHighlightingAttributes()
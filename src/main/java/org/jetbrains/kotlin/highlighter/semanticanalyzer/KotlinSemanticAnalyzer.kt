@@ -20,48 +20,59 @@ import org.jetbrains.kotlin.analyzer.AnalysisResult
 import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
 import org.jetbrains.kotlin.diagnostics.Errors
 import org.jetbrains.kotlin.projectsextensions.KotlinProjectHelper.isScanning
+import org.jetbrains.kotlin.psi.KtClassOrObject
+import org.jetbrains.kotlin.psi.KtDeclaration
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.resolve.BindingContext
+import org.jetbrains.kotlin.resolve.ProjectModificationStamps
+import org.jetbrains.kotlin.utils.ProjectUtils
+import org.jetbrains.kotlin.utils.skeletonText
 import org.jetbrains.kotlin.language.Priorities
+import org.netbeans.api.project.Project
 import org.netbeans.modules.csl.api.ColoringAttributes
 import org.netbeans.modules.csl.api.OffsetRange
 import org.netbeans.modules.csl.api.SemanticAnalyzer
 import org.netbeans.modules.parsing.spi.Scheduler
 import org.netbeans.modules.parsing.spi.SchedulerEvent
+import org.openide.filesystems.FileObject
 
 class KotlinSemanticAnalyzer : SemanticAnalyzer<KotlinParserResult>() {
     
-    private var cancel = false
-    private val highlighting = hashMapOf<OffsetRange, Set<ColoringAttributes>>()
+    @Volatile private var cancel = false
+    private var highlighting: Map<OffsetRange, Set<ColoringAttributes>> = emptyMap()
     
-    private fun highlightDeprecatedElements(bindingContext: BindingContext, ktFile: KtFile) = 
+    private fun highlightDeprecatedElements(bindingContext: BindingContext, ktFile: KtFile, ranges: HighlightingRanges) = 
             bindingContext.diagnostics
                     .filter { it.factory == Errors.DEPRECATION }
                     .filter { it.psiFile == ktFile }
-                    .map { OffsetRange(it.textRanges.first().startOffset,
-                            it.textRanges.first().endOffset) }
-                    .forEach { highlighting.put(it, KotlinHighlightingAttributes.DEPRECATED.styleKey) }
+                    .forEach { 
+                        val range = it.textRanges.first()
+                        ranges.add(range.startOffset, range.endOffset, KotlinHighlightingAttributes.DEPRECATED.styleKey) 
+                    }
     
     override fun getPriority() = Priorities.SEMANTIC_ANALYZER_PRIORITY
 
     override fun getHighlights() = highlighting
 
     override fun run(result: KotlinParserResult?, event: SchedulerEvent?) {
-        highlighting.clear()
+        highlighting = emptyMap()
         cancel = false
         
         if (result == null || result.project.isScanning()) return
           
         val analysisResult = result.analysisResult?.analysisResult ?: return
         
-        highlight(analysisResult, result.ktFile)
+        val ranges = SemanticHighlightingCache.computeHighlightingRanges(result, analysisResult) { cancel } ?: return
+        highlightDeprecatedElements(analysisResult.bindingContext, result.ktFile, ranges)
+        
+        highlighting = SemanticHighlights(ranges)
     }
 
     fun highlight(analysisResult: AnalysisResult, ktFile: KtFile) {
-        val highlightingVisitor = KotlinSemanticHighlightingVisitor(ktFile, analysisResult)
-        highlighting.putAll(highlightingVisitor.computeHighlightingRanges())
+        val ranges = KotlinSemanticHighlightingVisitor(ktFile, analysisResult).computeHighlightingRanges()
+        highlightDeprecatedElements(analysisResult.bindingContext, ktFile, ranges)
         
-        highlightDeprecatedElements(analysisResult.bindingContext, ktFile)
+        highlighting = SemanticHighlights(ranges)
     }
     
     override fun cancel() {
@@ -70,4 +81,108 @@ class KotlinSemanticAnalyzer : SemanticAnalyzer<KotlinParserResult>() {
 
     override fun getSchedulerClass(): Class<out Scheduler> = Scheduler.EDITOR_SENSITIVE_TASK_SCHEDULER
 
-}
\ No newline at end of file
+}
+
+/**
+ * Highlighting of the declarations of open files with offsets relative to the declarations. 
+ * Declarations are highlighted again only if their text changed or if the 
+ * [ProjectModificationStamps] of the project advanced. Highlighting of files whose 
+ * documents were closed is dropped.
+ */
+private object SemanticHighlightingCache {
+    
+    /**
+     * Declaration is identified by the names of its containers, the hash of its skeleton text 
+     * and the stamp of the project.
+     */
+    private data class DeclarationKey(val container: String, val skeletonHash: Int, val projectStamp: Long)
+    
+    private class Declaration(val declaration: KtDeclaration, 
+                              val key: DeclarationKey, 
+                              val skeleton: String, 
+                              val members: Set<KtDeclaration>)
+    
+    /**
+     * Highlighting of a declaration with its [skeleton] text to tell apart declarations with the same key hash.
+     */
+    private class DeclarationHighlighting(val skeleton: String, val ranges: HighlightingRanges)
+    
+    private class FileHighlighting(val project: Project, 
+                                   val declarations: MutableMap<DeclarationKey, DeclarationHighlighting>)
+    
+    private val files = hashMapOf<FileObject, FileHighlighting>()
+    
+    @Synchronized private fun getCached(file: FileObject): Map<DeclarationKey, DeclarationHighlighting> = 
+            files[file]?.declarations ?: emptyMap()
+    
+    /**
+     * Puts highlighting of [declarations] of the [file], replacing the old declarations if [replace].
+     */
+    @Synchronized private fun putCached(file: FileObject, 
+                                        project: Project, 
+                                        declarations: Map<DeclarationKey, DeclarationHighlighting>,
+                                        replace: Boolean) {
+        files.keys.removeAll { it != file && !ProjectUtils.isDocumentLoaded(it) }
+        
+        val fileHighlighting = files[file]
+        if (replace || fileHighlighting == null) {
+            files.put(file, FileHighlighting(project, HashMap(declarations)))
+        } else fileHighlighting.declarations.putAll(declarations)
+    }
+    
+    @Synchronized fun invalidate(project: Project) {
+        files.values.removeAll { it.project == project }
+    }
+    
+    /**
+     * Returns highlighting ranges of the file or null if [isCancelled] before all declarations 
+     * were highlighted.
+     */
+    fun computeHighlightingRanges(parserResult: KotlinParserResult, 
+                                  analysisResult: AnalysisResult,
+                                  isCancelled: () -> Boolean): HighlightingRanges? {
+        val ktFile = parserResult.ktFile
+        val file = parserResult.file
+        val project = parserResult.project
+        val projectStamp = ProjectModificationStamps.get(project)
+        
+        val declarations = arrayListOf<Declaration>()
+        fun collect(declaration: KtDeclaration, container: String) {
+            val members = (declaration as? KtClassOrObject)?.declarations ?: emptyList()
+            val skeleton = declaration.skeletonText(members)
+            declarations.add(Declaration(declaration, DeclarationKey(container, skeleton.hashCode(), projectStamp), 
+                    skeleton, members.toSet()))
+            members.forEach { collect(it, "$container.${declaration.name}") }
+        }
+        ktFile.declarations.forEach { collect(it, "") }
+        
+        val visitor = KotlinSemanticHighlightingVisitor(ktFile, analysisResult)
+        val cached = getCached(file)
+        val computed = hashMapOf<DeclarationKey, DeclarationHighlighting>()
+        
+        for (declaration in declarations) {
+            if (isCancelled()) {
+                // declarations highlighted so far are kept for the next run
+                putCached(file, project, computed, false)
+                return null
+            }
+            
+            val key = declaration.key
+            if (computed[key]?.skeleton == declaration.skeleton) continue
+            
+            val start = declaration.declaration.textRange.startOffset
+            computed.put(key, cached[key]?.takeIf { it.skeleton == declaration.skeleton } 
+                    ?: DeclarationHighlighting(declaration.skeleton, 
+                            visitor.computeHighlightingRanges(declaration.declaration, declaration.members).shifted(-start)))
+        }
+        putCached(file, project, computed, true)
+        
+        val ranges = visitor.computeHighlightingRanges(ktFile, ktFile.declarations.toSet())
+        declarations.forEach { ranges.addAll(computed[it.key]!!.ranges, it.declaration.textRange.startOffset) }
+        
+        return ranges
+    }
+    
+}
+
+fun invalidateSemanticHighlighting(project: Project) = SemanticHighlightingCache.invalidate(project)
@@ -26,35 +26,45 @@ import org.jetbrains.kotlin.psi.*
 import org.jetbrains.kotlin.renderer.DescriptorRenderer
 import org.jetbrains.kotlin.resolve.BindingContext
 import org.netbeans.modules.csl.api.ColoringAttributes
-import org.netbeans.modules.csl.api.OffsetRange
 import org.jetbrains.kotlin.resolve.DescriptorUtils
 import org.jetbrains.kotlin.descriptors.ClassKind
 
 class KotlinSemanticHighlightingVisitor(val ktFile: KtFile,
                                         val result: AnalysisResult) : KtVisitorVoid() {
 
-    private lateinit var bindingContext: BindingContext
-    private val positions = hashMapOf<OffsetRange, Set<ColoringAttributes>>()
+    private val bindingContext: BindingContext = result.bindingContext
+    private var positions = HighlightingRanges()
+    private var skipped: Set<PsiElement> = emptySet()
 
-    fun computeHighlightingRanges(): Map<OffsetRange, Set<ColoringAttributes>> {
-        positions.clear()
-        bindingContext = result.bindingContext
-        ktFile.acceptChildren(this)
+    /**
+     * Computes highlighting of [element] without the highlighting of [skipped] declarations nested in it.
+     */
+    fun computeHighlightingRanges(element: KtElement = ktFile, 
+                                  skipped: Set<KtDeclaration> = emptySet()): HighlightingRanges {
+        positions = HighlightingRanges()
+        this.skipped = skipped
+        if (element is KtFile) visitChildren(element) else element.accept(this)
 
         return positions
     }
 
     private fun highlight(styleAttributes: KotlinHighlightingAttributes, range: TextRange) {
-        val offsetRange = OffsetRange(range.startOffset, range.endOffset)
-        positions.put(offsetRange, styleAttributes.styleKey)
+        positions.add(range.startOffset, range.endOffset, styleAttributes.styleKey)
     }
 
     private fun highlight(styleAttributes: Set<ColoringAttributes>, range: TextRange) {
-        val offsetRange = OffsetRange(range.startOffset, range.endOffset)
-        positions.put(offsetRange, styleAttributes)
+        positions.add(range.startOffset, range.endOffset, styleAttributes)
     }
 
-    override fun visitElement(element: PsiElement) = element.acceptChildren(this)
+    override fun visitElement(element: PsiElement) = visitChildren(element)
+
+    private fun visitChildren(element: PsiElement) {
+        var child = element.firstChild
+        while (child != null) {
+            if (child !in skipped) child.accept(this)
+            child = child.nextSibling
+        }
+    }
 
     override fun visitSimpleNameExpression(expression: KtSimpleNameExpression) {
         val parentExpression = expression.parent
@@ -86,7 +96,7 @@ class KotlinSemanticHighlightingVisitor(val ktFile: KtFile,
     override fun visitClassOrObject(classOrObject: KtClassOrObject) {
         val identifier = classOrObject.nameIdentifier
         if (identifier == null) {
-            classOrObject.acceptChildren(this)
+            visitChildren(classOrObject)
             return
         }
         val classDescriptor = bindingContext.get(BindingContext.CLASS, classOrObject)
@@ -171,8 +181,7 @@ class KotlinSemanticHighlightingVisitor(val ktFile: KtFile,
             if (mutable) KotlinHighlightingAttributes.FIELD else KotlinHighlightingAttributes.FINAL_FIELD
         
         }
-        val styleAttributes = attributes.styleKey.toMutableSet()
-        if (typeName != null) styleAttributes.addAll(KotlinHighlightingAttributes.SMART_CAST.styleKey)
+        val styleAttributes = if (typeName != null) attributes.smartCastStyleKey else attributes.styleKey
                
         highlight(styleAttributes, range)
     }
@@ -193,8 +202,7 @@ class KotlinSemanticHighlightingVisitor(val ktFile: KtFile,
 
             else -> KotlinHighlightingAttributes.LOCAL_VARIABLE
         }
-        val styleAttributes = attributes.styleKey.toMutableSet()
-        if (typeName != null) styleAttributes.addAll(KotlinHighlightingAttributes.SMART_CAST.styleKey)
+        val styleAttributes = if (typeName != null) attributes.smartCastStyleKey else attributes.styleKey
                
         highlight(styleAttributes, element.textRange)
     }
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.highlighter.semanticanalyzer
+
+import java.util.AbstractMap
+import java.util.AbstractSet
+import org.netbeans.modules.csl.api.ColoringAttributes
+import org.netbeans.modules.csl.api.OffsetRange
+
+/**
+ * Growable list of highlighted ranges kept in primitive arrays.
+ */
+class HighlightingRanges {
+
+    private var starts = IntArray(16)
+    private var ends = IntArray(16)
+    private var attributes = arrayOfNulls<Set<ColoringAttributes>>(16)
+
+    var size = 0
+        private set
+
+    fun start(index: Int) = starts[index]
+
+    fun end(index: Int) = ends[index]
+
+    fun attributes(index: Int) = attributes[index]!!
+
+    fun add(start: Int, end: Int, attributes: Set<ColoringAttributes>) {
+        if (size == starts.size) {
+            val capacity = size * 2
+            starts = starts.copyOf(capacity)
+            ends = ends.copyOf(capacity)
+            this.attributes = this.attributes.copyOf(capacity)
+        }
+        starts[size] = start
+        ends[size] = end
+        this.attributes[size] = attributes
+        size++
+    }
+
+    fun addAll(ranges: HighlightingRanges, delta: Int = 0) {
+        for (i in 0 until ranges.size) {
+            add(ranges.starts[i] + delta, ranges.ends[i] + delta, ranges.attributes[i]!!)
+        }
+    }
+
+    fun shifted(delta: Int) = HighlightingRanges().also { it.addAll(this, delta) }
+
+}
+
+/**
+ * Highlights sorted by start offsets, shown to CSL as a map from ranges to coloring attributes.
+ * Like in a map, a range added more than once keeps the attributes added last.
+ */
+class SemanticHighlights(ranges: HighlightingRanges) : AbstractMap<OffsetRange, Set<ColoringAttributes>>() {
+
+    private val starts: IntArray
+    private val ends: IntArray
+    private val attributes: Array<Set<ColoringAttributes>?>
+
+    init {
+        // start offsets and indices are packed into longs, so ranges are sorted without boxing
+        val order = LongArray(ranges.size) { (ranges.start(it).toLong() shl 32) or it.toLong() }
+        order.sort()
+
+        val indices = IntArray(order.size)
+        var size = 0
+        var groupStart = 0
+        for (packed in order) {
+            val index = packed.toInt()
+            if (size > groupStart && ranges.start(indices[groupStart]) != ranges.start(index)) groupStart = size
+            
+            // ranges with the same start are next to each other, a later one replaces an equal range
+            val same = (groupStart until size).firstOrNull { ranges.end(indices[it]) == ranges.end(index) }
+            if (same != null) indices[same] = index else indices[size++] = index
+        }
+
+        starts = IntArray(size) { ranges.start(indices[it]) }
+        ends = IntArray(size) { ranges.end(indices[it]) }
+        attributes = Array(size) { ranges.attributes(indices[it]) }
+    }
+
+    override val entries: MutableSet<MutableMap.MutableEntry<OffsetRange, Set<ColoringAttributes>>> = 
+            object : AbstractSet<MutableMap.MutableEntry<OffsetRange, Set<ColoringAttributes>>>() {
+        
+        override val size: Int
+            get() = starts.size
+
+        override fun iterator() = object : MutableIterator<MutableMap.MutableEntry<OffsetRange, Set<ColoringAttributes>>> {
+            private var index = 0
+
+            override fun hasNext() = index < starts.size
+
+            override fun next(): MutableMap.MutableEntry<OffsetRange, Set<ColoringAttributes>> {
+                if (!hasNext()) throw NoSuchElementException()
+                val entry = AbstractMap.SimpleImmutableEntry(OffsetRange(starts[index], ends[index]), attributes[index]!!)
+                index++
+                return entry
+            }
+
+            override fun remove() = throw UnsupportedOperationException()
+        }
+        
+    }
+
+    override fun get(key: OffsetRange): Set<ColoringAttributes>? {
+        var index = firstStartingAt(key.start)
+        while (index < starts.size && starts[index] == key.start) {
+            if (ends[index] == key.end) return attributes[index]
+            index++
+        }
+        
+        return null
+    }
+
+    override fun containsKey(key: OffsetRange) = get(key) != null
+
+    private fun firstStartingAt(offset: Int): Int {
+        var low = 0
+        var high = starts.size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (starts[middle] < offset) low = middle + 1 else high = middle
+        }
+        
+        return low
+    }
+
+}
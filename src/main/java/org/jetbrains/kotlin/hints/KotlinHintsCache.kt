@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.hints
+
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
+import org.jetbrains.kotlin.psi.KtClassOrObject
+import org.jetbrains.kotlin.psi.KtDeclaration
+import org.jetbrains.kotlin.resolve.ProjectModificationStamps
+import org.jetbrains.kotlin.utils.ProjectUtils
+import org.jetbrains.kotlin.utils.skeletonText
+import org.netbeans.api.project.Project
+import org.netbeans.modules.csl.api.Hint
+import org.netbeans.modules.csl.api.OffsetRange
+import org.openide.filesystems.FileObject
+
+/**
+ * Hints of the declarations of open files. Hints of a declaration are computed again only 
+ * if its text changed or if the [ProjectModificationStamps] of the project advanced, as types 
+ * resolved in the declaration may depend on other declarations of the project or on Java types. 
+ * Members of classes are cached separately from the classes, so editing a member doesn't 
+ * recompute hints of the other members. Hints of files whose documents were closed are dropped.
+ */
+object KotlinHintsCache {
+    
+    /**
+     * Declaration is identified by the names of its containers, the hash of its skeleton text 
+     * and the stamp of the project.
+     */
+    private data class DeclarationKey(val container: String, val skeletonHash: Int, val projectStamp: Long)
+    
+    /**
+     * Hints of a declaration with its [skeleton] text to tell apart declarations with the same key hash.
+     */
+    private class DeclarationHints(val skeleton: String, val hints: ElementHints)
+    
+    private class FileHints(val project: Project, val declarations: Map<DeclarationKey, DeclarationHints>)
+    
+    private val files = hashMapOf<FileObject, FileHints>()
+    
+    @Synchronized private fun getCachedHints(file: FileObject) = files[file]?.declarations ?: emptyMap()
+    
+    @Synchronized private fun putHints(file: FileObject, hints: FileHints) {
+        files.keys.removeAll { it != file && !ProjectUtils.isDocumentLoaded(it) }
+        files.put(file, hints)
+    }
+    
+    @Synchronized fun invalidate(project: Project) {
+        files.values.removeAll { it.project == project }
+    }
+    
+    fun computeHints(parserResult: KotlinParserResult, 
+                     computer: KotlinHintsComputer = KotlinHintsComputer(parserResult)): List<Hint> {
+        val ktFile = parserResult.ktFile
+        val file = parserResult.file
+        val project = parserResult.project
+        val projectStamp = ProjectModificationStamps.get(project)
+        
+        val cached = getCachedHints(file)
+        val computed = hashMapOf<DeclarationKey, DeclarationHints>()
+        
+        val hints = arrayListOf<Hint>()
+        val usedClasses = hashSetOf<String>()
+        
+        fun addDeclarationHints(declaration: KtDeclaration, container: String) {
+            val members = (declaration as? KtClassOrObject)?.declarations ?: emptyList()
+            val skeleton = declaration.skeletonText(members)
+            val key = DeclarationKey(container, skeleton.hashCode(), projectStamp)
+            val start = declaration.textRange.startOffset
+            
+            val declarationHints = (computed[key] ?: cached[key])?.takeIf { it.skeleton == skeleton }?.hints 
+                    ?: computer.computeHints(declaration, members.toSet()).shifted(-start)
+            computed.put(key, DeclarationHints(skeleton, declarationHints))
+            
+            declarationHints.hints.mapTo(hints) { it.shifted(start) }
+            usedClasses.addAll(declarationHints.usedClasses)
+            
+            members.forEach { addDeclarationHints(it, "$container.${declaration.name}") }
+        }
+        
+        // package directive and file annotations are cheap to inspect every time
+        computer.computeHints(ktFile, ktFile.declarations.toSet()).let { 
+            hints.addAll(it.hints)
+            usedClasses.addAll(it.usedClasses)
+        }
+        ktFile.declarations.forEach { addDeclarationHints(it, "") }
+        putHints(file, FileHints(project, computed))
+        
+        hints.addAll(computer.getUnusedImports(usedClasses))
+        
+        return hints
+    }
+    
+    private fun ElementHints.shifted(delta: Int) = ElementHints(hints.map { it.shifted(delta) }, usedClasses)
+    
+    private fun Hint.shifted(delta: Int) = if (delta == 0) this else Hint(rule, description, file,
+            OffsetRange(range.start + delta, range.end + delta), fixes, priority)
+    
+}
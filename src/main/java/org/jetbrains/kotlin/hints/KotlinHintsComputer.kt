@@ -16,38 +16,80 @@
  *******************************************************************************/
 package org.jetbrains.kotlin.hints
 
+import java.util.concurrent.ConcurrentHashMap
 import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
 import org.jetbrains.kotlin.hints.intentions.*
 import org.jetbrains.kotlin.psi.*
 import org.netbeans.modules.csl.api.Hint
 
-class KotlinHintsComputer(val parserResult: KotlinParserResult) : KtVisitor<Unit, Any?>() {
+/**
+ * Hints found in an element and fq names of classes it references.
+ */
+class ElementHints(val hints: List<Hint>, val usedClasses: Set<String>)
 
-    val hints = arrayListOf<Hint>()
+/**
+ * Computes hints in one traversal: every element is passed only to the inspections
+ * of its class, referenced classes are collected for [UnusedImportsComputer] and simple 
+ * names are checked for smart casts on the way.
+ */
+open class KotlinHintsComputer(val parserResult: KotlinParserResult) : KtVisitor<Unit, Any?>() {
+
+    companion object {
+        private val inspections: List<Inspection<*>> = listOf(
+                RemoveEmptyPrimaryConstructorInspection,
+                RemoveEmptyClassBodyInspection,
+                ConvertToStringTemplateInspection,
+                ConvertTryFinallyToUseCallInspection,
+                RemoveEmptySecondaryConstructorInspection,
+                ReplaceSizeCheckWithIsNotEmptyInspection
+        )
+        
+        private val inspectionsByClass = ConcurrentHashMap<Class<*>, List<Inspection<*>>>()
+        
+        private fun inspectionsFor(elementClass: Class<*>) = inspectionsByClass.getOrPut(elementClass) {
+            inspections.filter { it.elementClass.isAssignableFrom(elementClass) }
+        }
+    }
+    
+    private val fileObject = parserResult.snapshot.source.fileObject
+    private val unusedImportsComputer = UnusedImportsComputer(parserResult)
+    
+    private var hints = arrayListOf<Hint>()
+    private var usedClasses = hashSetOf<String>()
+    private var skipped: Set<KtDeclaration> = emptySet()
+    
+    /**
+     * Computes hints of [element] without the ones of [skipped] declarations nested in it.
+     */
+    open fun computeHints(element: KtElement, skipped: Set<KtDeclaration> = emptySet()): ElementHints {
+        hints = arrayListOf()
+        usedClasses = hashSetOf()
+        this.skipped = skipped
+        
+        element.accept(this)
+        
+        return ElementHints(hints, usedClasses)
+    }
+    
+    fun getUnusedImports(usedClasses: Set<String>) = unusedImportsComputer.getUnusedImports(usedClasses)
     
     override fun visitKtFile(ktFile: KtFile, data: Any?) {
         ktFile.acceptChildren(this)
     }
     
+    override fun visitImportDirective(importDirective: KtImportDirective, data: Any?) {}
+    
     override fun visitKtElement(element: KtElement, data: Any?) {
-        hints.addAll(element.inspections())
+        if (element in skipped) return
+        
+        inspectionsFor(element.javaClass).forEach { inspection ->
+            inspection.inspect(element, parserResult, fileObject)?.let { hints.add(it) }
+        }
+        
+        if (element is KtReferenceExpression) unusedImportsComputer.usedClass(element)?.let { usedClasses.add(it) }
+        if (element is KtSimpleNameExpression) getSmartCastHover(element, parserResult)?.let { hints.add(it) }
         
         element.acceptChildren(this)
     }
-    
-    override fun visitSimpleNameExpression(expression: KtSimpleNameExpression, data: Any?) {
-        getSmartCastHover(expression, parserResult)?.let { hints.add(it) }
-    }
-    
-    private fun KtElement.inspections() = listOf(
-            RemoveEmptyPrimaryConstructorInspection(parserResult, this),
-            RemoveEmptyClassBodyInspection(parserResult, this),
-            ConvertToStringTemplateInspection(parserResult, this),
-            ConvertTryFinallyToUseCallInspection(parserResult, this),
-            RemoveEmptySecondaryConstructorInspection(parserResult, this),
-            ReplaceSizeCheckWithIsNotEmptyInspection(parserResult, this)
-    )
-            .filter(Inspection::isApplicable)
-            .map { it.hint(parserResult.snapshot.source.fileObject) }
         
 }
\ No newline at end of file
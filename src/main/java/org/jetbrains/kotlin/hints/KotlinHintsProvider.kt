@@ -34,36 +34,6 @@ class KotlinHintsProvider : HintsProvider {
 
     companion object {
 
-        private fun listOfIntentions(parserResult: KotlinParserResult,
-                                     psi: PsiElement) = parserResult.let {
-            Pair(it.snapshot.source.getDocument(false), it.analysisResult?.analysisResult)
-        }.let {
-            listOf(
-                    RemoveExplicitTypeIntention(it.first, it.second, psi),
-                    SpecifyTypeIntention(it.first, it.second, psi),
-                    ConvertToBlockBodyIntention(it.first, it.second, psi),
-                    ConvertToExpressionBodyIntention(it.first, it.second, psi),
-                    ChangeReturnTypeIntention(it.first, it.second, psi),
-                    ConvertTryFinallyToUseCallIntention(it.first, it.second, psi),
-                    ConvertForEachToForLoopIntention(it.first, it.second, psi),
-                    ConvertEnumToSealedClassIntention(it.first, it.second, psi),
-                    AddValToConstructorParameterIntention(it.first, it.second, psi),
-                    ConvertPropertyInitializerToGetterIntention(it.first, it.second, psi),
-                    ConvertToConcatenatedStringIntention(it.first, it.second, psi),
-                    ConvertToStringTemplateIntention(it.first, it.second, psi),
-                    ConvertTwoComparisonsToRangeCheckIntention(it.first, it.second, psi),
-                    MergeIfsIntention(it.first, it.second, psi),
-                    RemoveBracesIntention(it.first, it.second, psi),
-                    SplitIfIntention(it.first, it.second, psi),
-                    ToInfixIntention(it.first, it.second, psi),
-                    RemoveEmptyClassBodyIntention(it.first, it.second, psi),
-                    RemoveEmptyParenthesesFromLambdaCallIntention(it.first, it.second, psi),
-                    RemoveEmptyPrimaryConstructorIntention(it.first, it.second, psi),
-                    RemoveEmptySecondaryConstructorIntention(it.first, it.second, psi),
-                    ReplaceSizeCheckWithIsNotEmptyIntention(it.first, it.second, psi)
-            ).filter { it.isApplicable(psi.textRange.startOffset) }
-        }
-
         private fun KotlinError.listOfQuickFixes(parserResult: KotlinParserResult) = listOf(
                 RemoveUselessElvisFix(this, parserResult),
                 ImplementMembersFix(this, parserResult),
@@ -93,7 +63,7 @@ class KotlinHintsProvider : HintsProvider {
         val lineStartOffset = NbDocument.findLineOffset(doc, lineNumber)
         val lineEndOffset = NbDocument.findLineOffset(doc, lineNumber + 1)
 
-        val intentions = parserResult.ktFile.elementsInRange(TextRange(lineStartOffset, lineEndOffset))
+        val psiElements = parserResult.ktFile.elementsInRange(TextRange(lineStartOffset, lineEndOffset))
                 .toMutableList()
                 .apply {
                     val elem = parserResult.ktFile.findElementAt(offset)
@@ -101,21 +71,18 @@ class KotlinHintsProvider : HintsProvider {
                         add(elem)
                     }
                 }
-                .map { psi ->
-                    listOfIntentions(parserResult, psi)
-                            .map {
-                                Hint(KotlinRule(HintSeverity.CURRENT_LINE_WARNING),
-                                        it.description,
-                                        parserResult.snapshot.source.fileObject,
-                                        OffsetRange(offset, offset),
-                                        listOf(it),
-                                        20
-                                )
-                            }
-                }
 
         hints.addAll(
-                intentions.flatMap { it }
+                KotlinIntentions.findIntentions(parserResult, psiElements)
+                        .map {
+                            Hint(KotlinRule(HintSeverity.CURRENT_LINE_WARNING),
+                                    it.description,
+                                    parserResult.snapshot.source.fileObject,
+                                    OffsetRange(offset, offset),
+                                    listOf(it),
+                                    20
+                            )
+                        }
                         .distinctBy { it.description }
         )
 
@@ -123,16 +90,11 @@ class KotlinHintsProvider : HintsProvider {
 
     override fun computeHints(hintsManager: HintsManager, ruleContext: RuleContext, hints: MutableList<Hint>) {
         val parserResult = ruleContext.parserResult as KotlinParserResult
-        val ktFile = parserResult.ktFile
-        val hintsComputer = KotlinHintsComputer(parserResult)
-        val unusedComputer = UnusedImportsComputer(parserResult)
+        if (parserResult.analysisResult == null) return
         
-        ktFile.accept(hintsComputer)
-
         with(hints) {
             addAll(ruleContext.quickFixes)
-            addAll(hintsComputer.hints)
-            addAll(unusedComputer.getUnusedImports())
+            addAll(KotlinHintsCache.computeHints(parserResult))
         }
     }
 
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.hints
+
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
+import java.util.concurrent.ConcurrentHashMap
+import javax.swing.text.Document
+import org.jetbrains.kotlin.analyzer.AnalysisResult
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinError
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
+import org.jetbrains.kotlin.hints.intentions.*
+import org.jetbrains.kotlin.psi.*
+
+/**
+ * Intention for elements of [elementClass]. Intentions which [needBindingContext] are not 
+ * created while the file isn't analyzed. [strict] intentions look for the element among 
+ * parents of the element they are created with only. [isAvailable] is a cheap check done 
+ * before the intention is created.
+ */
+class IntentionFactory(val elementClass: Class<out PsiElement>,
+                       val needBindingContext: Boolean = false,
+                       val strict: Boolean = false,
+                       val isAvailable: (KotlinParserResult, PsiElement) -> Boolean = { _, _ -> true },
+                       val create: (Document, AnalysisResult?, PsiElement) -> ApplicableIntention)
+
+/**
+ * Intentions registered by the element classes they apply to. Every element of the caret 
+ * line is matched with the factories in one walk over its parents, and every intention is 
+ * checked at the start offset of the element, so intentions are offered from anywhere on 
+ * the line. Results are kept per element for the last parser result, so moving the caret 
+ * over the same code doesn't check intentions again.
+ */
+object KotlinIntentions {
+    
+    private val factories = listOf(
+            IntentionFactory(KtCallableDeclaration::class.java, create = ::RemoveExplicitTypeIntention),
+            IntentionFactory(KtCallableDeclaration::class.java, needBindingContext = true, create = ::SpecifyTypeIntention),
+            IntentionFactory(KtDeclarationWithBody::class.java, strict = true, create = ::ConvertToBlockBodyIntention),
+            IntentionFactory(KtDeclarationWithBody::class.java, strict = true, create = ::ConvertToExpressionBodyIntention),
+            IntentionFactory(PsiElement::class.java, needBindingContext = true, 
+                    isAvailable = { parserResult, psi -> parserResult.errors.errorsAt(psi.textOffset).any { it is KotlinError } },
+                    create = ::ChangeReturnTypeIntention),
+            IntentionFactory(KtTryExpression::class.java, needBindingContext = true, create = ::ConvertTryFinallyToUseCallIntention),
+            IntentionFactory(KtSimpleNameExpression::class.java, needBindingContext = true, create = ::ConvertForEachToForLoopIntention),
+            IntentionFactory(KtClass::class.java, create = ::ConvertEnumToSealedClassIntention),
+            IntentionFactory(KtParameter::class.java, create = ::AddValToConstructorParameterIntention),
+            IntentionFactory(KtProperty::class.java, create = ::ConvertPropertyInitializerToGetterIntention),
+            IntentionFactory(KtStringTemplateExpression::class.java, create = ::ConvertToConcatenatedStringIntention),
+            IntentionFactory(KtBinaryExpression::class.java, create = ::ConvertToStringTemplateIntention),
+            IntentionFactory(KtBinaryExpression::class.java, create = ::ConvertTwoComparisonsToRangeCheckIntention),
+            IntentionFactory(KtIfExpression::class.java, create = ::MergeIfsIntention),
+            IntentionFactory(KtElement::class.java, create = ::RemoveBracesIntention),
+            IntentionFactory(KtExpression::class.java, create = ::SplitIfIntention),
+            IntentionFactory(KtCallExpression::class.java, needBindingContext = true, create = ::ToInfixIntention),
+            IntentionFactory(KtClassBody::class.java, create = ::RemoveEmptyClassBodyIntention),
+            IntentionFactory(KtValueArgumentList::class.java, create = ::RemoveEmptyParenthesesFromLambdaCallIntention),
+            IntentionFactory(KtPrimaryConstructor::class.java, create = ::RemoveEmptyPrimaryConstructorIntention),
+            IntentionFactory(KtBlockExpression::class.java, create = ::RemoveEmptySecondaryConstructorIntention),
+            IntentionFactory(KtBinaryExpression::class.java, needBindingContext = true, create = ::ReplaceSizeCheckWithIsNotEmptyIntention)
+    )
+    
+    private val factoriesByClass = ConcurrentHashMap<Class<*>, List<IntentionFactory>>()
+    
+    private fun factoriesFor(elementClass: Class<*>) = factoriesByClass.getOrPut(elementClass) {
+        factories.filter { it.elementClass.isAssignableFrom(elementClass) }
+    }
+    
+    private data class CheckedIntention(val factory: IntentionFactory, val psi: PsiElement)
+    
+    private var checkedParserResult: KotlinParserResult? = null
+    private val checkedIntentions = hashMapOf<CheckedIntention, ApplicableIntention?>()
+    
+    /**
+     * Applicable intentions for elements [psiElements] of the caret line.
+     */
+    @Synchronized fun findIntentions(parserResult: KotlinParserResult, 
+                                     psiElements: List<PsiElement>): List<ApplicableIntention> {
+        if (checkedParserResult !== parserResult) {
+            checkedParserResult = parserResult
+            checkedIntentions.clear()
+        }
+        
+        val doc = parserResult.snapshot.source.getDocument(false) ?: return emptyList()
+        val analysisResult = parserResult.analysisResult?.analysisResult
+        
+        return psiElements
+                .flatMap { psi -> findFactories(psi).map { Pair(it, psi) } }
+                .filter { (factory, _) -> analysisResult != null || !factory.needBindingContext }
+                .filter { (factory, psi) -> factory.isAvailable(parserResult, psi) }
+                .mapNotNull { (factory, psi) ->
+                    val key = CheckedIntention(factory, psi)
+                    if (key in checkedIntentions) return@mapNotNull checkedIntentions[key]
+                    
+                    factory.create(doc, analysisResult, psi)
+                            .takeIf { it.isApplicable(psi.textRange.startOffset) }
+                            .also { checkedIntentions.put(key, it) }
+                }
+    }
+    
+    /**
+     * Factories of the intentions whose element class is [psi] or one of its parents.
+     */
+    private fun findFactories(psi: PsiElement): List<IntentionFactory> {
+        val found = linkedSetOf<IntentionFactory>()
+        
+        var parent: PsiElement? = psi
+        while (parent != null && parent !is PsiFile) {
+            val element = parent
+            factoriesFor(element.javaClass).filterTo(found) { !it.strict || element !== psi }
+            parent = element.parent
+        }
+        
+        // intentions are proposed in the order of their factories
+        return found.sortedBy { factories.indexOf(it) }
+    }
+    
+}
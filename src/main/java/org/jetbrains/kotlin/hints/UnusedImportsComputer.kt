@@ -21,27 +21,33 @@ import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
 import org.jetbrains.kotlin.language.Priorities
 import org.jetbrains.kotlin.psi.*
 import org.jetbrains.kotlin.resolve.BindingContext
+import org.jetbrains.kotlin.resolve.descriptorUtil.fqNameSafe
 import org.jetbrains.kotlin.descriptors.*
 import org.netbeans.modules.csl.api.Hint
 import org.netbeans.modules.csl.api.HintFix
 import org.netbeans.modules.csl.api.HintSeverity
 import org.netbeans.modules.csl.api.OffsetRange
 
-class UnusedImportsComputer(private val parserResult: KotlinParserResult) : KtVisitor<Unit, Any?>() {
+/**
+ * Reports imports of classes which are not referenced. Referenced classes are collected 
+ * by [KotlinHintsComputer] while it traverses declarations of the file.
+ */
+class UnusedImportsComputer(private val parserResult: KotlinParserResult) {
 
     private val ktFile = parserResult.ktFile
     private val context = parserResult.analysisResult!!.analysisResult.bindingContext
-    private val usedClasses = hashSetOf<ClassDescriptor>()
 
-    fun getUnusedImports(): List<Hint> {
-        ktFile.accept(this)
+    /**
+     * Finds unused imports given fq names of the classes used in the file.
+     */
+    fun getUnusedImports(usedClasses: Set<String>): List<Hint> {
         val unusedImports = hashSetOf<KtImportDirective>()
 
         ktFile.importDirectives
                 .forEach {
                     val ref = PsiTreeUtil.findChildrenOfType(it, KtReferenceExpression::class.java).lastOrNull()
                     val target = context[BindingContext.REFERENCE_TARGET, ref]
-                    if (target is ClassDescriptor && target !in usedClasses) unusedImports.add(it)
+                    if (target is ClassDescriptor && target.fqNameSafe.asString() !in usedClasses) unusedImports.add(it)
                 }
 
         return unusedImports.map {
@@ -54,24 +60,15 @@ class UnusedImportsComputer(private val parserResult: KotlinParserResult) : KtVi
         }
     }
 
-    override fun visitKtFile(ktFile: KtFile, data: Any?) {
-        ktFile.acceptChildren(this)
-    }
-
-    override fun visitKtElement(element: KtElement, data: Any?) {
-        element.acceptChildren(this)
-    }
-
-    override fun visitImportDirective(importDirective: KtImportDirective, data: Any?) {}
-
-    override fun visitReferenceExpression(expression: KtReferenceExpression, data: Any?) {
+    /**
+     * Fq name of the class used by [expression], if any.
+     */
+    fun usedClass(expression: KtReferenceExpression): String? {
         val reference = context[BindingContext.REFERENCE_TARGET, expression]?.let {
             if (it is ClassDescriptor && !it.isCompanionObject) it else it.containingDeclaration
         }
 
-        if (reference is ClassDescriptor) usedClasses.add(reference)
-
-        expression.acceptChildren(this)
+        return (reference as? ClassDescriptor)?.fqNameSafe?.asString()
     }
 
 }
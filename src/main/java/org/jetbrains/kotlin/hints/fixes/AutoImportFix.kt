@@ -23,7 +23,7 @@ import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinError
 import org.jetbrains.kotlin.diagnostics.Errors
 import org.jetbrains.kotlin.utils.ProjectUtils
 import org.jetbrains.kotlin.resolve.lang.java.findFQName
-import org.jetbrains.kotlin.search.PublicFunctionsVisitor
+import org.jetbrains.kotlin.search.KotlinCallableSearcher
 import org.netbeans.api.project.Project
 import org.netbeans.modules.csl.api.HintSeverity
 
@@ -66,13 +66,8 @@ private fun getOffsetToInsert(importDirectives: List<KtImportDirective>, fqName:
     return null
 }
 
-private fun Project.getPublicFunctions(name: String) = ProjectUtils.getSourceFiles(this)
-        .flatMap { ktFile ->
-            PublicFunctionsVisitor({ it == name }).let {
-                ktFile.acceptChildren(it)
-                it.publicFunctions
-            }
-        }
+private fun Project.getPublicFunctions(name: String) = 
+        KotlinCallableSearcher.findCallables(this, name).map { it.fqName }.distinct()
 
 class AutoImportFix(kotlinError: KotlinError,
                     parserResult: KotlinParserResult) : KotlinQuickFix(kotlinError, parserResult) {
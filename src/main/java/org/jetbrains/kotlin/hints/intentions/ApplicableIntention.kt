@@ -22,6 +22,7 @@ import org.jetbrains.kotlin.analyzer.AnalysisResult
 import org.jetbrains.kotlin.language.Priorities
 import org.jetbrains.kotlin.psi.KtElement
 import org.jetbrains.kotlin.hints.KotlinRule
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
 import org.netbeans.modules.csl.api.*
 import org.openide.filesystems.FileObject
 
@@ -37,13 +38,20 @@ abstract class ApplicableIntention(val doc: Document,
     
 }
 
-abstract class Inspection(open val element: KtElement) {
+/**
+ * Stateless inspection of elements of [elementClass]. The hints computer passes it only 
+ * elements of this class.
+ */
+abstract class Inspection<T : KtElement>(val elementClass: Class<T>) {
     
     abstract val description: String
     
-    abstract fun isApplicable(): Boolean
+    abstract fun isApplicable(element: T, parserResult: KotlinParserResult): Boolean
     
-    fun hint(fileObject: FileObject) = Hint(
+    fun inspect(element: KtElement, parserResult: KotlinParserResult, fileObject: FileObject): Hint? =
+            if (isApplicable(elementClass.cast(element), parserResult)) hint(element, fileObject) else null
+    
+    private fun hint(element: KtElement, fileObject: FileObject) = Hint(
             KotlinRule(HintSeverity.WARNING),
             description,
             fileObject,
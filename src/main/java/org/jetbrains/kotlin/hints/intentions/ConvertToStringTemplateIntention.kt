@@ -63,16 +63,11 @@ class ConvertToStringTemplateIntention(doc: Document,
 
 }
 
-class ConvertToStringTemplateInspection(val parserResult: KotlinParserResult,
-                                        override val element: KtElement) : Inspection(element) {
+object ConvertToStringTemplateInspection : Inspection<KtBinaryExpression>(KtBinaryExpression::class.java) {
 
     override val description = "Concatenation can be replaced by template"
 
-    override fun isApplicable(): Boolean {
-        if (element !is KtBinaryExpression) return false
-
-        return element.isApplicable()
-    }
+    override fun isApplicable(element: KtBinaryExpression, parserResult: KotlinParserResult) = element.isApplicable()
 }
 
 // copied from IDEA plugin
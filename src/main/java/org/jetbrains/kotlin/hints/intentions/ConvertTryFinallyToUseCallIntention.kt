@@ -89,16 +89,12 @@ class ConvertTryFinallyToUseCallIntention(doc: Document,
     }
 }
 
-class ConvertTryFinallyToUseCallInspection(val parserResult: KotlinParserResult,
-                                           override val element: KtElement) : Inspection(element) {
-    
+object ConvertTryFinallyToUseCallInspection : Inspection<KtTryExpression>(KtTryExpression::class.java) {
+
     override val description = "Usage of try-finally instead of .use()"
 
-    override fun isApplicable(): Boolean {
-        if (element !is KtTryExpression) return false
-        
-        return element.isApplicable(parserResult.analysisResult?.analysisResult)
-    }
+    override fun isApplicable(element: KtTryExpression, parserResult: KotlinParserResult) =
+            element.isApplicable(parserResult.analysisResult?.analysisResult)
 }
 
 private fun KtTryExpression.isApplicable(analysisResult: AnalysisResult?): Boolean {
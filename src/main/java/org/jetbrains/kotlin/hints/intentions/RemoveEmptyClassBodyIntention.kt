@@ -49,16 +49,11 @@ class RemoveEmptyClassBodyIntention(doc: Document,
     }
 }
 
-class RemoveEmptyClassBodyInspection(val parserResult: KotlinParserResult,
-                                     override val element: KtElement) : Inspection(element) {
+object RemoveEmptyClassBodyInspection : Inspection<KtClassBody>(KtClassBody::class.java) {
 
     override val description = "Empty class body"
 
-    override fun isApplicable(): Boolean {
-        if (element !is KtClassBody) return false
-
-        return element.isApplicable()
-    }
+    override fun isApplicable(element: KtClassBody, parserResult: KotlinParserResult) = element.isApplicable()
 }
 
 private fun KtClassBody.isApplicable(): Boolean {
@@ -49,17 +49,11 @@ class RemoveEmptyPrimaryConstructorIntention(doc: Document,
     }
 }
 
-class RemoveEmptyPrimaryConstructorInspection(val parserResult: KotlinParserResult,
-                                              override val element: KtElement) : Inspection(element) {
-    
+object RemoveEmptyPrimaryConstructorInspection : Inspection<KtPrimaryConstructor>(KtPrimaryConstructor::class.java) {
+
     override val description = "Empty primary constructor"
-    
-    override fun isApplicable(): Boolean {
-        if (element !is KtPrimaryConstructor) return false
-        
-        return element.isApplicable()
-    }
-    
+
+    override fun isApplicable(element: KtPrimaryConstructor, parserResult: KotlinParserResult) = element.isApplicable()
 }
 
 private fun KtPrimaryConstructor.isApplicable() = when {
@@ -48,17 +48,11 @@ class RemoveEmptySecondaryConstructorIntention(doc: Document,
     }
 }
 
-class RemoveEmptySecondaryConstructorInspection(val parserResult: KotlinParserResult,
-                                                override val element: KtElement) : Inspection(element) {
-    
+object RemoveEmptySecondaryConstructorInspection : Inspection<KtBlockExpression>(KtBlockExpression::class.java) {
+
     override val description = "Empty secondary constructor"
-    
-    override fun isApplicable(): Boolean {
-        if (element !is KtBlockExpression) return false
-        
-        return element.isApplicable()
-    }
-    
+
+    override fun isApplicable(element: KtBlockExpression, parserResult: KotlinParserResult) = element.isApplicable()
 }
 
 private fun KtBlockExpression.isApplicable(): Boolean {
@@ -29,15 +29,12 @@ import org.jetbrains.kotlin.resolve.calls.callUtil.getResolvedCall
 import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
 import org.jetbrains.kotlin.hints.atomicChange
 
-class ReplaceSizeCheckWithIsNotEmptyInspection(val parserResult: KotlinParserResult,
-                                               override val element: KtElement) : Inspection(element) {
+object ReplaceSizeCheckWithIsNotEmptyInspection : Inspection<KtBinaryExpression>(KtBinaryExpression::class.java) {
+
     override val description = "Use 'isNotEmpty' instead of size check"
 
-    override fun isApplicable(): Boolean {
-        if (element !is KtBinaryExpression) return false
-        
-        return element.isApplicable(parserResult.analysisResult?.analysisResult)
-    }
+    override fun isApplicable(element: KtBinaryExpression, parserResult: KotlinParserResult) =
+            element.isApplicable(parserResult.analysisResult?.analysisResult)
 }
 
 class ReplaceSizeCheckWithIsNotEmptyIntention(doc: Document,
@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.indexer
+
+import com.intellij.psi.PsiElement
+import java.io.IOException
+import java.net.URL
+import java.util.concurrent.CopyOnWriteArrayList
+import org.jetbrains.kotlin.fileClasses.NoResolveFileClassesProvider
+import org.jetbrains.kotlin.lexer.KtTokens
+import org.jetbrains.kotlin.load.kotlin.PackagePartClassUtils
+import org.jetbrains.kotlin.log.KotlinLogger
+import org.jetbrains.kotlin.model.KotlinLightVirtualFile
+import org.jetbrains.kotlin.psi.KtCallableDeclaration
+import org.jetbrains.kotlin.psi.KtClassOrObject
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import org.jetbrains.kotlin.psi.KtProperty
+import org.jetbrains.kotlin.psi.KtTypeAlias
+import org.jetbrains.kotlin.psi.KtTreeVisitorVoid
+import org.netbeans.api.java.classpath.ClassPath
+import org.netbeans.api.project.Project
+import org.netbeans.modules.parsing.spi.indexing.Indexable
+import org.netbeans.modules.parsing.spi.indexing.support.IndexDocument
+import org.netbeans.modules.parsing.spi.indexing.support.QuerySupport
+import org.openide.filesystems.FileObject
+
+enum class IndexedDeclarationKind(val field: String) {
+    CLASS("class"),
+    FUNCTION("function"),
+    PROPERTY("property"),
+    TYPEALIAS("typealias"),
+    FILE_FACADE("facade")
+}
+
+/**
+ * Declaration stored in the Kotlin index. [receiver] is the text of the receiver
+ * type reference for extension functions and properties.
+ */
+data class IndexedDeclaration(val kind: IndexedDeclarationKind,
+                              val name: String,
+                              val fqName: String,
+                              val receiver: String?,
+                              val offset: Int,
+                              val file: FileObject?) {
+
+    fun encode() = "$name$SEPARATOR$fqName$SEPARATOR${receiver ?: ""}$SEPARATOR$offset"
+
+    companion object {
+        private const val SEPARATOR = ';'
+
+        fun decode(kind: IndexedDeclarationKind, value: String, file: FileObject?): IndexedDeclaration? {
+            val parts = value.split(SEPARATOR)
+            if (parts.size != 4) return null
+
+            val offset = parts[3].toIntOrNull() ?: return null
+            return IndexedDeclaration(kind, parts[0], parts[1], parts[2].takeIf { it.isNotEmpty() }, offset, file)
+        }
+
+        fun namePrefix(name: String, exact: Boolean) = if (exact) "$name$SEPARATOR" else name
+    }
+}
+
+object KotlinIndex {
+
+    const val NAME = "kotlin"
+    const val VERSION = 4
+
+    private const val PACKAGE = "package"
+    private const val IDENTIFIER = "identifier"
+    
+    private val listeners = CopyOnWriteArrayList<(String, List<IndexedDeclaration>?) -> Unit>()
+    
+    /**
+     * Adds a listener which gets the key of every indexed file with its declarations,
+     * or with null if the file was removed from the index. Keys are the same as in
+     * [findAllDeclarationsByFile].
+     */
+    fun addListener(listener: (String, List<IndexedDeclaration>?) -> Unit) {
+        listeners.add(listener)
+    }
+    
+    private fun URL.toFileKey() = toExternalForm()
+    
+    fun fileIndexed(indexable: Indexable, declarations: List<IndexedDeclaration>) {
+        val key = indexable.url.toFileKey()
+        listeners.forEach { it(key, declarations) }
+    }
+    
+    fun fileRemoved(indexable: Indexable) {
+        val key = indexable.url.toFileKey()
+        listeners.forEach { it(key, null) }
+    }
+
+    /**
+     * Adds declarations and identifiers of [ktFile] to [document] and returns the declarations.
+     */
+    fun indexDeclarations(ktFile: KtFile, document: IndexDocument): List<IndexedDeclaration> {
+        document.addPair(PACKAGE, ktFile.packageFqName.asString(), true, true)
+        
+        val file = (ktFile.virtualFile as? KotlinLightVirtualFile)?.fo
+        val declarations = collectDeclarations(ktFile)
+        declarations.forEach {
+            document.addPair(it.kind.field, it.encode(), true, true)
+        }
+
+        collectIdentifiers(ktFile).forEach {
+            document.addPair(IDENTIFIER, it, true, false)
+        }
+        
+        return declarations.map { it.copy(file = file) }
+    }
+
+    /**
+     * Names of all identifiers in [ktFile] without backquotes.
+     */
+    fun collectIdentifiers(ktFile: KtFile): Set<String> {
+        val identifiers = hashSetOf<String>()
+
+        ktFile.accept(object : KtTreeVisitorVoid() {
+            override fun visitElement(element: PsiElement) {
+                if (element.node.elementType == KtTokens.IDENTIFIER) {
+                    identifiers.add(element.text.removeSurrounding("`"))
+                } else super.visitElement(element)
+            }
+        })
+
+        return identifiers
+    }
+
+    fun collectDeclarations(ktFile: KtFile): List<IndexedDeclaration> {
+        val declarations = arrayListOf<IndexedDeclaration>()
+
+        ktFile.accept(object : KtTreeVisitorVoid() {
+            override fun visitClassOrObject(classOrObject: KtClassOrObject) {
+                if (classOrObject.isLocal()) return
+
+                val name = classOrObject.name
+                val fqName = classOrObject.fqName
+                if (name != null && fqName != null) {
+                    declarations.add(IndexedDeclaration(IndexedDeclarationKind.CLASS, name, fqName.asString(),
+                            null, classOrObject.textOffset, null))
+                }
+                super.visitClassOrObject(classOrObject)
+            }
+
+            override fun visitNamedFunction(function: KtNamedFunction) {
+                function.toIndexedDeclaration(IndexedDeclarationKind.FUNCTION)?.let { declarations.add(it) }
+            }
+
+            override fun visitProperty(property: KtProperty) {
+                property.toIndexedDeclaration(IndexedDeclarationKind.PROPERTY)?.let { declarations.add(it) }
+            }
+
+            override fun visitTypeAlias(typeAlias: KtTypeAlias) {
+                val name = typeAlias.name ?: return
+                val fqName = typeAlias.fqName ?: return
+                declarations.add(IndexedDeclaration(IndexedDeclarationKind.TYPEALIAS, name, fqName.asString(),
+                        null, typeAlias.textOffset, null))
+            }
+        })
+
+        if (PackagePartClassUtils.fileHasTopLevelCallables(ktFile)) {
+            val facadeFqName = NoResolveFileClassesProvider.getFileClassInfo(ktFile).facadeClassFqName
+            declarations.add(IndexedDeclaration(IndexedDeclarationKind.FILE_FACADE, facadeFqName.shortName().asString(),
+                    facadeFqName.asString(), null, 0, null))
+        }
+
+        return declarations
+    }
+
+    private fun KtCallableDeclaration.toIndexedDeclaration(kind: IndexedDeclarationKind): IndexedDeclaration? {
+        // only top level functions and properties which can be imported are indexed
+        if (parent !is KtFile || hasModifier(KtTokens.PRIVATE_KEYWORD)) return null
+
+        val name = this.name ?: return null
+        val fqName = this.fqName ?: return null
+        return IndexedDeclaration(kind, name, fqName.asString(), receiverTypeReference?.text, textOffset, null)
+    }
+
+    private fun getQuerySupport(project: Project): QuerySupport? = try {
+        val roots = QuerySupport.findRoots(project, setOf(ClassPath.SOURCE), emptySet(), emptySet())
+        QuerySupport.forRoots(NAME, VERSION, *roots.toTypedArray())
+    } catch (ex: IOException) {
+        KotlinLogger.INSTANCE.logException("Couldn't open Kotlin index", ex)
+        null
+    }
+
+    /**
+     * Finds declarations of [kind] whose name starts with [name] or is equal to it if [exact].
+     */
+    fun findDeclarations(project: Project,
+                         kind: IndexedDeclarationKind,
+                         name: String,
+                         exact: Boolean = false): List<IndexedDeclaration> {
+        val querySupport = getQuerySupport(project) ?: return emptyList()
+        val prefix = IndexedDeclaration.namePrefix(name, exact)
+
+        return try {
+            querySupport.query(kind.field, prefix, QuerySupport.Kind.PREFIX, kind.field).flatMap { result ->
+                result.getValues(kind.field)
+                        .filter { it.startsWith(prefix) }
+                        .mapNotNull { IndexedDeclaration.decode(kind, it, result.file) }
+            }
+        } catch (ex: IOException) {
+            KotlinLogger.INSTANCE.logException("Kotlin index query failed", ex)
+            emptyList()
+        }
+    }
+
+    /**
+     * Finds all declarations of [kinds] grouped by the key of their file.
+     */
+    fun findAllDeclarationsByFile(project: Project, 
+                                  kinds: Set<IndexedDeclarationKind>): Map<String, List<IndexedDeclaration>> {
+        val querySupport = getQuerySupport(project) ?: return emptyMap()
+        val declarations = hashMapOf<String, MutableList<IndexedDeclaration>>()
+
+        try {
+            kinds.forEach { kind ->
+                querySupport.query(kind.field, "", QuerySupport.Kind.PREFIX, kind.field).forEach { result ->
+                    val fileDeclarations = declarations.getOrPut(result.url.toFileKey()) { arrayListOf() }
+                    result.getValues(kind.field).mapNotNullTo(fileDeclarations) { 
+                        IndexedDeclaration.decode(kind, it, result.file) 
+                    }
+                }
+            }
+        } catch (ex: IOException) {
+            KotlinLogger.INSTANCE.logException("Kotlin index query failed", ex)
+        }
+
+        return declarations
+    }
+
+    /**
+     * Finds files containing identifier [name] or returns null if the index can't be queried.
+     */
+    fun findFilesWithIdentifier(project: Project, name: String): List<FileObject>? {
+        val querySupport = getQuerySupport(project) ?: return null
+
+        return try {
+            querySupport.query(IDENTIFIER, name, QuerySupport.Kind.EXACT).mapNotNull { it.file }
+        } catch (ex: IOException) {
+            KotlinLogger.INSTANCE.logException("Kotlin index query failed", ex)
+            null
+        }
+    }
+
+    fun findFilesWithPackage(project: Project, packageName: String): List<FileObject> {
+        val querySupport = getQuerySupport(project) ?: return emptyList()
+
+        return try {
+            querySupport.query(PACKAGE, packageName, QuerySupport.Kind.EXACT, PACKAGE).mapNotNull { it.file }
+        } catch (ex: IOException) {
+            KotlinLogger.INSTANCE.logException("Kotlin index query failed", ex)
+            emptyList()
+        }
+    }
+
+}
@@ -18,10 +18,16 @@
  */
 package org.jetbrains.kotlin.indexer;
 
+import java.io.IOException;
+import java.util.List;
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult;
+import org.jetbrains.kotlin.log.KotlinLogger;
 import org.netbeans.modules.parsing.spi.Parser;
 import org.netbeans.modules.parsing.spi.indexing.Context;
 import org.netbeans.modules.parsing.spi.indexing.EmbeddingIndexer;
 import org.netbeans.modules.parsing.spi.indexing.Indexable;
+import org.netbeans.modules.parsing.spi.indexing.support.IndexDocument;
+import org.netbeans.modules.parsing.spi.indexing.support.IndexingSupport;
 
 /**
  *
@@ -31,6 +37,20 @@ public class KotlinIndexer extends EmbeddingIndexer {
 
     @Override
     protected void index(Indexable indexable, Parser.Result parserResult, Context context) {
+        if (!(parserResult instanceof KotlinParserResult)) {
+            return;
+        }
+        
+        try {
+            IndexingSupport support = IndexingSupport.getInstance(context);
+            IndexDocument document = support.createDocument(indexable);
+            List<IndexedDeclaration> declarations = 
+                    KotlinIndex.INSTANCE.indexDeclarations(((KotlinParserResult) parserResult).getKtFile(), document);
+            support.addDocument(document);
+            KotlinIndex.INSTANCE.fileIndexed(indexable, declarations);
+        } catch (IOException ex) {
+            KotlinLogger.INSTANCE.logException("Couldn't index " + indexable.getRelativePath(), ex);
+        }
     }
     
 }
@@ -16,10 +16,15 @@
  *******************************************************************************/
 package org.jetbrains.kotlin.indexer
 
+import java.io.IOException
+import org.jetbrains.kotlin.log.KotlinLogger
+import org.jetbrains.kotlin.resolve.ProjectModificationStamps
+import org.jetbrains.kotlin.utils.ProjectUtils
 import org.netbeans.modules.parsing.api.Snapshot
 import org.netbeans.modules.parsing.spi.indexing.Context
 import org.netbeans.modules.parsing.spi.indexing.EmbeddingIndexerFactory
 import org.netbeans.modules.parsing.spi.indexing.Indexable
+import org.netbeans.modules.parsing.spi.indexing.support.IndexingSupport
 
 /*
 
@@ -32,11 +37,27 @@ class KotlinIndexerFactory : EmbeddingIndexerFactory() {
     override fun createIndexer(indexable: Indexable, snapshot: Snapshot) = KotlinIndexer()
 
     override fun filesDeleted(deleted: Iterable<Indexable>, context: Context) {
+        try {
+            val support = IndexingSupport.getInstance(context)
+            deleted.forEach { 
+                support.removeDocuments(it)
+                KotlinIndex.fileRemoved(it)
+            }
+            context.root?.let { ProjectUtils.getKotlinProjectForFileObject(it) }?.let { ProjectModificationStamps.bumpExternal(it) }
+        } catch (ex: IOException) {
+            KotlinLogger.INSTANCE.logException("Couldn't remove deleted files from index", ex)
+        }
     }
 
     override fun filesDirty(dirty: Iterable<Indexable>, context: Context) {
+        try {
+            val support = IndexingSupport.getInstance(context)
+            dirty.forEach { support.markDirtyDocuments(it) }
+        } catch (ex: IOException) {
+            KotlinLogger.INSTANCE.logException("Couldn't mark dirty files in index", ex)
+        }
     }
 
-    override fun getIndexerName() = "Kotlin Indexer"
-    override fun getIndexVersion() = 1
+    override fun getIndexerName() = KotlinIndex.NAME
+    override fun getIndexVersion() = KotlinIndex.VERSION
 }
\ No newline at end of file
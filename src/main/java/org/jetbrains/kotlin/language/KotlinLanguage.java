@@ -16,6 +16,8 @@
  *******************************************************************************/
 package org.jetbrains.kotlin.language;
 
+import java.util.Collections;
+import java.util.Set;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.kotlin.completion.KotlinCodeCompletionHandler;
 import org.jetbrains.kotlin.structurescanner.KotlinStructureScanner;
@@ -27,6 +29,7 @@ import org.jetbrains.kotlin.highlighter.semanticanalyzer.KotlinSemanticAnalyzer;
 import org.jetbrains.kotlin.hints.KotlinHintsProvider;
 import org.jetbrains.kotlin.indexer.KotlinIndexerFactory;
 import org.jetbrains.kotlin.refactorings.rename.KotlinInstantRenamer;
+import org.netbeans.api.java.classpath.ClassPath;
 import org.netbeans.api.lexer.Language;
 import org.netbeans.modules.csl.api.CodeCompletionHandler;
 import org.netbeans.modules.csl.api.HintsProvider;
@@ -115,6 +118,11 @@ public class KotlinLanguage extends DefaultLanguageConfig {
         return new KotlinIndexerFactory();
     }
     
+    @Override
+    public Set<String> getSourcePathIds() {
+        return Collections.singleton(ClassPath.SOURCE);
+    }
+    
     @Override
     public KeystrokeHandler getKeystrokeHandler() {
         return new KotlinKeystrokeHandler();
@@ -120,6 +120,18 @@ fun KtElement.resolveToSourceDeclaration(): List<SourceElement> {
     }
 }
 
+fun KtElement.resolveToSourceDeclaration(context: BindingContext, project: Project): List<SourceElement> {
+    return when (this) {
+        is KtDeclaration -> listOf(KotlinSourceElement(this))
+        
+        else -> {
+            val referenceExpression = getReferenceExpression() ?: return emptyList()
+            
+            createReferences(referenceExpression).resolveToSourceElements(context, project)
+        } 
+    }
+}
+
 fun List<KotlinReference>.resolveToSourceElements(): List<SourceElement> {
     if (isEmpty()) return emptyList()
     
@@ -16,12 +16,25 @@
  ****************************************************************************** */
 package org.jetbrains.kotlin.projectsextensions
 
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParser
+import org.jetbrains.kotlin.filesystem.lightclasses.KotlinLightClassGeneration
+import org.jetbrains.kotlin.filesystem.invalidateJavaStubs
 import org.jetbrains.kotlin.model.KotlinEnvironment
 import org.jetbrains.kotlin.project.KotlinProjectConstants
 import org.jetbrains.kotlin.projectsextensions.gradle.classpath.GradleExtendedClassPath
 import org.jetbrains.kotlin.projectsextensions.j2se.classpath.J2SEExtendedClassPathProvider
 import org.jetbrains.kotlin.project.KotlinSources
+import org.jetbrains.kotlin.hints.KotlinHintsCache
+import org.jetbrains.kotlin.highlighter.semanticanalyzer.invalidateSemanticHighlighting
+import org.jetbrains.kotlin.search.KotlinCallableSearcher
+import org.jetbrains.kotlin.search.KotlinTypeSearcher
+import org.jetbrains.kotlin.resolve.KotlinAnalysisSession
+import org.jetbrains.kotlin.resolve.KotlinPackagePartProvider
+import org.jetbrains.kotlin.resolve.ProjectModificationStamps
+import org.jetbrains.kotlin.resolve.NetBeansAnalyzerFacadeForJVM
 import org.jetbrains.kotlin.projectsextensions.maven.classpath.MavenExtendedClassPath
+import org.jetbrains.kotlin.resolve.lang.java.BinaryClassesCache
+import org.jetbrains.kotlin.resolve.lang.java.JavaClassStructureCache
 import org.jetbrains.kotlin.resolve.lang.java.JavaEnvironment
 import org.netbeans.api.java.classpath.ClassPath
 import org.netbeans.api.project.Project
@@ -68,6 +81,8 @@ object KotlinProjectHelper {
         kotlinSources.remove(this)
         extendedClassPaths.remove(this)
         fullClasspaths.remove(this)
+        KotlinTypeSearcher.invalidate(this)
+        invalidateAnalysisCaches()
     }
 
     fun Project.getKotlinSources(): KotlinSources? {
@@ -126,6 +141,22 @@ object KotlinProjectHelper {
         updateFullClassPath()
         JavaEnvironment.updateClasspathInfo(this)
         KotlinEnvironment.updateKotlinEnvironment(this)
+        invalidateAnalysisCaches()
+    }
+    
+    private fun Project.invalidateAnalysisCaches() {
+        ProjectModificationStamps.bumpExternal(this)
+        KotlinPackagePartProvider.invalidate(this)
+        KotlinCallableSearcher.invalidate(this)
+        KotlinHintsCache.invalidate(this)
+        invalidateSemanticHighlighting(this)
+        NetBeansAnalyzerFacadeForJVM.invalidateDependencies(this)
+        KotlinAnalysisSession.invalidate(this)
+        KotlinParser.invalidateCache(this)
+        JavaClassStructureCache.invalidate(this)
+        BinaryClassesCache.invalidate(this)
+        KotlinLightClassGeneration.invalidate(this)
+        invalidateJavaStubs(this)
     }
     
     private fun getJavaFilesByProject(project: Project) = project.getKotlinSources()
@@ -23,8 +23,10 @@ import javax.swing.JEditorPane;
 import javax.swing.text.StyledDocument;
 import org.jetbrains.kotlin.builder.KotlinPsiManager;
 import org.jetbrains.kotlin.psi.KtFile;
+import org.jetbrains.kotlin.refactorings.usages.KotlinWhereUsedQueryUI;
 import org.jetbrains.kotlin.utils.ProjectUtils;
 import org.netbeans.modules.refactoring.api.RenameRefactoring;
+import org.netbeans.modules.refactoring.api.WhereUsedQuery;
 import org.netbeans.modules.refactoring.spi.ui.ActionsImplementationProvider;
 import org.netbeans.modules.refactoring.spi.ui.UI;
 import org.openide.cookies.EditorCookie;
@@ -43,6 +45,15 @@ public class KotlinActionsImplementationProvider extends ActionsImplementationPr
     
     @Override
     public boolean canRename(Lookup lookup) {
+        return isKotlinEditor(lookup);
+    }
+    
+    @Override
+    public boolean canFindUsages(Lookup lookup) {
+        return isKotlinEditor(lookup);
+    }
+    
+    private boolean isKotlinEditor(Lookup lookup) {
         EditorCookie ec = lookup.lookup(EditorCookie.class);
         if (ec == null) {
             return false;
@@ -56,18 +67,47 @@ public class KotlinActionsImplementationProvider extends ActionsImplementationPr
 
     }
     
-    @Override
-    public void doRename(Lookup lookup) {
+    private PsiElement getElementAtCaret(Lookup lookup) {
         EditorCookie ec = lookup.lookup(EditorCookie.class);
-        JEditorPane pane = ec.getOpenedPanes()[0];
-        int caretPosition = pane.getCaretPosition();
+        if (ec == null) {
+            return null;
+        }
+        // the editor may have been closed since the action was invoked
+        JEditorPane[] panes = ec.getOpenedPanes();
         StyledDocument doc = ec.getDocument();
+        if (panes == null || panes.length == 0 || doc == null) {
+            return null;
+        }
         FileObject fo = ProjectUtils.getFileObjectForDocument(doc);
-        final KtFile ktFile = KotlinPsiManager.INSTANCE.getParsedFile(fo);
-        final PsiElement psi = ktFile.findElementAt(caretPosition);
+        KtFile ktFile = fo == null ? null : KotlinPsiManager.INSTANCE.getParsedFile(fo);
+        if (ktFile == null) {
+            return null;
+        }
+        
+        return ktFile.findElementAt(panes[0].getCaretPosition());
+    }
+    
+    @Override
+    public void doRename(Lookup lookup) {
+        PsiElement psi = getElementAtCaret(lookup);
+        if (psi == null) {
+            return;
+        }
+        StyledDocument doc = lookup.lookup(EditorCookie.class).getDocument();
         UI.openRefactoringUI(new KotlinRenameRefactoringUI(psi, new RenameRefactoring(Lookups.fixed(psi, doc))),
                 TopComponent.getRegistry().getActivated());  
         
     }
     
+    @Override
+    public void doFindUsages(Lookup lookup) {
+        PsiElement psi = getElementAtCaret(lookup);
+        if (psi == null) {
+            return;
+        }
+        StyledDocument doc = lookup.lookup(EditorCookie.class).getDocument();
+        UI.openRefactoringUI(new KotlinWhereUsedQueryUI(psi, new WhereUsedQuery(Lookups.fixed(psi, doc))),
+                TopComponent.getRegistry().getActivated());
+    }
+    
 }
\ No newline at end of file
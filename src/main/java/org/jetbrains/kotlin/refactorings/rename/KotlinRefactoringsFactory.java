@@ -19,9 +19,11 @@
 package org.jetbrains.kotlin.refactorings.rename;
 
 import javax.swing.text.StyledDocument;
+import org.jetbrains.kotlin.refactorings.usages.KotlinWhereUsedPlugin;
 import org.jetbrains.kotlin.utils.ProjectUtils;
 import org.netbeans.modules.refactoring.api.AbstractRefactoring;
 import org.netbeans.modules.refactoring.api.RenameRefactoring;
+import org.netbeans.modules.refactoring.api.WhereUsedQuery;
 import org.netbeans.modules.refactoring.spi.RefactoringPlugin;
 import org.netbeans.modules.refactoring.spi.RefactoringPluginFactory;
 import org.openide.filesystems.FileObject;
@@ -44,6 +46,9 @@ public class KotlinRefactoringsFactory implements RefactoringPluginFactory {
         if (refactoring instanceof RenameRefactoring) {
             return new KotlinRenameRefactoring((RenameRefactoring) refactoring);
         }
+        if (refactoring instanceof WhereUsedQuery) {
+            return new KotlinWhereUsedPlugin((WhereUsedQuery) refactoring);
+        }
         
         return null;
     }
@@ -23,7 +23,6 @@ import javax.lang.model.element.Element
 import javax.lang.model.element.ExecutableElement
 import javax.lang.model.element.TypeElement
 import javax.lang.model.element.TypeParameterElement
-import org.jetbrains.kotlin.utils.ProjectUtils
 import org.netbeans.api.java.source.CancellableTask
 import org.netbeans.api.java.source.CompilationController
 import org.netbeans.api.java.source.ElementHandle
@@ -34,6 +33,8 @@ class TypeUsagesSearcher(val toFind: ElementHandle<TypeElement>) : TreePathScann
         CancellableTask<CompilationController> {
 
     private lateinit var info: CompilationController
+    private lateinit var sourceText: String
+    private var element: Element? = null
     val usages = hashSetOf<OffsetRange>()
 
     fun clearUsages() = usages.clear()
@@ -44,13 +45,16 @@ class TypeUsagesSearcher(val toFind: ElementHandle<TypeElement>) : TreePathScann
     override fun run(info: CompilationController) {
         info.toPhase(JavaSource.Phase.RESOLVED)
         this.info = info
+        // usages are found in the source text of javac, editor documents of the files are never opened
+        sourceText = info.text
+        element = toFind.resolve(info)
 
         val treePath = TreePath(info.compilationUnit)
         scan(treePath, toFind)
     }
 
     override fun visitMethod(node: MethodTree?, handle: ElementHandle<*>): Tree? {
-        val e = handle.resolve(info) ?: return super.visitMethod(node, handle)
+        val e = element ?: return super.visitMethod(node, handle)
         val el = info.trees.getElement(currentPath) as? ExecutableElement ?: return super.visitMethod(node, handle)
 
         addUsageIfApplicable(e, { el.returnType == e.asType() }, { indexOf(it) })
@@ -59,7 +63,7 @@ class TypeUsagesSearcher(val toFind: ElementHandle<TypeElement>) : TreePathScann
     }
 
     override fun visitVariable(node: VariableTree?, handle: ElementHandle<*>): Tree? {
-        val e = handle.resolve(info) ?: return super.visitVariable(node, handle)
+        val e = element ?: return super.visitVariable(node, handle)
         val el = info.trees.getElement(currentPath) ?: return super.visitVariable(node, handle)
 
         addUsageIfApplicable(e, { el.asType() == e.asType() }, { indexOf(it) })
@@ -68,7 +72,7 @@ class TypeUsagesSearcher(val toFind: ElementHandle<TypeElement>) : TreePathScann
     }
 
     override fun visitNewClass(node: NewClassTree?, handle: ElementHandle<*>): Tree? {
-        val e = handle.resolve(info) ?: return super.visitNewClass(node, handle)
+        val e = element ?: return super.visitNewClass(node, handle)
         val el = info.trees.getElement(currentPath) ?: return super.visitNewClass(node, handle)
 
         addUsageIfApplicable(e, { el.enclosingElement.asType() == e.asType() })
@@ -77,7 +81,7 @@ class TypeUsagesSearcher(val toFind: ElementHandle<TypeElement>) : TreePathScann
     }
 
     override fun visitTypeCast(node: TypeCastTree?, handle: ElementHandle<*>): Tree? {
-        val e = handle.resolve(info) ?: return super.visitTypeCast(node, handle)
+        val e = element ?: return super.visitTypeCast(node, handle)
 
         addUsageIfApplicable(e, { it.substring(1, it.indexOf(")")).endsWith(e.simpleName) })
 
@@ -85,7 +89,7 @@ class TypeUsagesSearcher(val toFind: ElementHandle<TypeElement>) : TreePathScann
     }
 
     override fun visitInstanceOf(node: InstanceOfTree?, handle: ElementHandle<*>): Tree? {
-        val e = handle.resolve(info)
+        val e = element ?: return super.visitInstanceOf(node, handle)
 
         addUsageIfApplicable(e, { it.substringAfterLast(" ").endsWith(e.simpleName) })
 
@@ -93,7 +97,7 @@ class TypeUsagesSearcher(val toFind: ElementHandle<TypeElement>) : TreePathScann
     }
 
     override fun visitImport(node: ImportTree?, handle: ElementHandle<*>): Tree? {
-        val e = handle.resolve(info) as? TypeElement ?: return super.visitImport(node, handle)
+        val e = element as? TypeElement ?: return super.visitImport(node, handle)
 
         addUsageIfApplicable(e, { it.endsWith("${e.qualifiedName};") })
 
@@ -101,7 +105,7 @@ class TypeUsagesSearcher(val toFind: ElementHandle<TypeElement>) : TreePathScann
     }
 
     override fun visitClass(node: ClassTree?, handle: ElementHandle<*>): Tree? {
-        val e = handle.resolve(info) ?: return super.visitClass(node, handle)
+        val e = element ?: return super.visitClass(node, handle)
         val el = info.trees.getElement(currentPath) as? TypeElement ?: return super.visitClass(node, handle)
 
         addUsageIfApplicable(e, { el.interfaces.contains(e.asType()) || el.superclass == e.asType() })
@@ -110,7 +114,7 @@ class TypeUsagesSearcher(val toFind: ElementHandle<TypeElement>) : TreePathScann
     }
 
     override fun visitTypeParameter(node: TypeParameterTree?, handle: ElementHandle<*>): Tree? {
-        val e = handle.resolve(info) ?: return super.visitTypeParameter(node, handle)
+        val e = element ?: return super.visitTypeParameter(node, handle)
         val el = info.trees.getElement(currentPath) as? TypeParameterElement ?: return super.visitTypeParameter(node, handle)
         
         addUsageIfApplicable(e, { el.bounds.contains(e.asType()) })
@@ -119,7 +123,7 @@ class TypeUsagesSearcher(val toFind: ElementHandle<TypeElement>) : TreePathScann
     }
     
     override fun visitParameterizedType(node: ParameterizedTypeTree?, handle: ElementHandle<*>): Tree? {
-        val e = handle.resolve(info) ?: return super.visitParameterizedType(node, handle)
+        val e = element ?: return super.visitParameterizedType(node, handle)
         
         addUsageIfApplicable(e, { currentPath.leaf.toString().contains(e.simpleName) })
         
@@ -134,10 +138,9 @@ class TypeUsagesSearcher(val toFind: ElementHandle<TypeElement>) : TreePathScann
         val end = info.trees.sourcePositions.
                 getEndPosition(info.compilationUnit, currentPath.leaf).toInt()
 
-        if (end - start <= 0) return
+        if (start < 0 || end - start <= 0 || end > sourceText.length) return
         
-        val doc = ProjectUtils.getDocumentFromFileObject(info.fileObject) ?: return
-        val text = doc.getText(start, end - start)
+        val text = sourceText.substring(start, end)
 
         if (condition(text)) {
             val startIndex = start + text.index(e.simpleName.toString())
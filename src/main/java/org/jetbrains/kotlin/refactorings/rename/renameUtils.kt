@@ -23,11 +23,15 @@ import com.intellij.psi.search.LocalSearchScope
 import com.intellij.psi.util.PsiTreeUtil
 import java.io.File
 import javax.swing.text.Position
+import org.jetbrains.kotlin.builder.KotlinPsiManager
 import org.jetbrains.kotlin.fileClasses.*
 import org.jetbrains.kotlin.highlighter.occurrences.*
+import org.jetbrains.kotlin.indexer.KotlinIndex
+import org.jetbrains.kotlin.model.KotlinEnvironment
 import org.jetbrains.kotlin.navigation.references.resolveToSourceDeclaration
 import org.jetbrains.kotlin.psi.*
 import org.jetbrains.kotlin.psi.psiUtil.*
+import org.jetbrains.kotlin.resolve.NetBeansAnalyzerFacadeForJVM
 import org.jetbrains.kotlin.utils.ProjectUtils
 import org.jetbrains.kotlin.resolve.lang.java.*
 import org.netbeans.api.java.source.*
@@ -75,11 +79,17 @@ fun getRenameRefactoringMap(fo: FileObject, psi: PsiElement, newName: String): M
 
     ranges.putAll(getJavaRefactoringMap(searchingElement, project, newName))
 
-    ProjectUtils.getSourceFiles(project).forEach {
-        val occurrencesRanges = search(searchingElement, it)
-        val f = File(it.virtualFile.path)
-        val file = FileUtil.toFileObject(f)
-        if (file != null && occurrencesRanges.isNotEmpty()) {
+    val candidates = getCandidateFiles(searchingElement, fo, project)
+    if (candidates.isEmpty()) return ranges
+
+    // candidates are analyzed together, references of all of them are resolved with one binding context
+    val analysisResult = NetBeansAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(project,
+            KotlinEnvironment.getEnvironment(project).project, candidates.values)
+    val bindingContext = analysisResult.analysisResult.bindingContext
+
+    candidates.forEach { (file, ktFile) ->
+        val occurrencesRanges = search(searchingElement, ktFile, bindingContext, project)
+        if (occurrencesRanges.isNotEmpty()) {
             ranges.put(file, occurrencesRanges.associate { Pair(it, newName) })
         }
     }
@@ -87,9 +97,39 @@ fun getRenameRefactoringMap(fo: FileObject, psi: PsiElement, newName: String): M
     return ranges
 }
 
+/**
+ * Source files of the project which may contain occurrences of [searchingElement]. 
+ * The Kotlin index narrows them to files with its name, all source files are searched 
+ * if the index can't be queried.
+ */
+fun getCandidateFiles(searchingElement: KtElement, 
+                      fo: FileObject, 
+                      project: Project): Map<FileObject, KtFile> {
+    val name = searchingElement.name ?: return emptyMap()
+    val sourceFiles: Set<FileObject> = KotlinPsiManager.getFilesByProject(project)
+    val candidates = KotlinIndex.findFilesWithIdentifier(project, name)?.toHashSet() ?: HashSet(sourceFiles)
+
+    // the index may not know about the latest changes of these files yet
+    val declarationFile = File(searchingElement.containingKtFile.virtualFile.path).let { FileUtil.toFileObject(it) }
+    candidates.addAll(listOfNotNull(fo, declarationFile))
+    candidates.retainAll(sourceFiles)
+
+    return candidates.mapNotNull { file -> ProjectUtils.getKtFile(file)?.let { Pair(file, it) } }.toMap()
+}
+
+/**
+ * Usages of [searchingElement] in Java sources of the project. The search stops between 
+ * Java files once [isCancelled] returns true.
+ */
+fun getJavaUsages(searchingElement: KtElement, 
+                  project: Project, 
+                  isCancelled: () -> Boolean = { false }): Map<FileObject, Set<OffsetRange>> = 
+        getJavaRefactoringMap(searchingElement, project, "", isCancelled).mapValues { it.value.keys }
+
 private fun getJavaRefactoringMap(searchingElement: KtElement,
                                   project: Project,
-                                  newName: String): Map<FileObject, Map<OffsetRange, String>> {
+                                  newName: String,
+                                  isCancelled: () -> Boolean = { false }): Map<FileObject, Map<OffsetRange, String>> {
     val refactoringMap = hashMapOf<FileObject, Map<OffsetRange, String>>()
 
     fun addToRefactoringMap(file: FileObject, range: OffsetRange, newName: String) {
@@ -103,11 +143,11 @@ private fun getJavaRefactoringMap(searchingElement: KtElement,
 
     when (searchingElement) {
         is KtClassOrObject -> getJavaRefactoringMapForClassOrObject(searchingElement, project, 
-                newName, ::addToRefactoringMap)
+                newName, isCancelled, ::addToRefactoringMap)
         is KtNamedFunction -> getJavaRefactoringMapForNamedFunction(searchingElement, project, 
-                newName, ::addToRefactoringMap)
+                newName, isCancelled, ::addToRefactoringMap)
         is KtProperty -> getJavaRefactoringMapForProperty(searchingElement, project,
-                newName, ::addToRefactoringMap)
+                newName, isCancelled, ::addToRefactoringMap)
     }
 
     return refactoringMap
@@ -116,6 +156,7 @@ private fun getJavaRefactoringMap(searchingElement: KtElement,
 private fun getJavaRefactoringMapForProperty(searchingElement: KtProperty,
                                              project: Project,
                                              newName: String,
+                                             isCancelled: () -> Boolean,
                                              addToRefactoringMap: (FileObject, OffsetRange, String) -> Unit) {
     val name = searchingElement.name ?: return
     
@@ -128,13 +169,14 @@ private fun getJavaRefactoringMapForProperty(searchingElement: KtProperty,
     val getter = getClassMethod(searchingElement, project, getterName)
     val setter = getClassMethod(searchingElement, project, setterName, 1)
     
-    addMemberUsagesToRefactoringMap(getter, project, newGetterName, addToRefactoringMap)
-    addMemberUsagesToRefactoringMap(setter, project, newSetterName, addToRefactoringMap)
+    addMemberUsagesToRefactoringMap(getter, project, newGetterName, isCancelled, addToRefactoringMap)
+    addMemberUsagesToRefactoringMap(setter, project, newSetterName, isCancelled, addToRefactoringMap)
 }
 
 private fun getJavaRefactoringMapForClassOrObject(searchingElement: KtClassOrObject,
                                                   project: Project,
                                                   newName: String,
+                                                  isCancelled: () -> Boolean,
                                                   addToRefactoringMap: (FileObject, OffsetRange, String) -> Unit) {
     val fqName = searchingElement.fqName ?: return
     val elementHandle = project.findTypeElementHandle(fqName.asString()) ?: return
@@ -147,6 +189,7 @@ private fun getJavaRefactoringMapForClassOrObject(searchingElement: KtClassOrObj
     val usagesSearcher = TypeUsagesSearcher(elementHandle)
     
     references.forEach {
+        if (isCancelled()) return
         JavaSource.forFileObject(it).runUserActionTask(usagesSearcher, true)
         usagesSearcher.usages.forEach { usage ->
             addToRefactoringMap(it, usage, newName)
@@ -158,18 +201,20 @@ private fun getJavaRefactoringMapForClassOrObject(searchingElement: KtClassOrObj
 private fun getJavaRefactoringMapForNamedFunction(searchingElement: KtNamedFunction,
                                                   project: Project,
                                                   newName: String,
+                                                  isCancelled: () -> Boolean,
                                                   addToRefactoringMap: (FileObject, OffsetRange, String) -> Unit) {
     val methodName = searchingElement.name ?: return
     val numberOfValueParameters = searchingElement.valueParameters.size
 
     val method = getClassMethod(searchingElement, project, methodName, numberOfValueParameters)
     
-    addMemberUsagesToRefactoringMap(method, project, newName, addToRefactoringMap)
+    addMemberUsagesToRefactoringMap(method, project, newName, isCancelled, addToRefactoringMap)
 }
 
 private fun addMemberUsagesToRefactoringMap(method: ElementHandle<*>?,
                                             project: Project,
                                             newName: String,
+                                            isCancelled: () -> Boolean,
                                             addToRefactoringMap: (FileObject, OffsetRange, String) -> Unit) {
     if (method == null) return
     
@@ -179,6 +224,7 @@ private fun addMemberUsagesToRefactoringMap(method: ElementHandle<*>?,
 
         JavaRefactoringUtils.getInvocationsOf(method, it)
                 .forEach { handle ->
+                    if (isCancelled()) return@runUserActionTask
                     val file = handle.fileObject
                     JavaSource.forFileObject(file).runUserActionTask({ fileCC ->
                         val treePath = handle.resolve(fileCC)
@@ -187,7 +233,7 @@ private fun addMemberUsagesToRefactoringMap(method: ElementHandle<*>?,
                         val end = fileCC.trees.sourcePositions.
                                 getEndPosition(fileCC.compilationUnit, treePath.leaf)
 
-                        val range = getOffsetOfMethodInvocation(file, start.toInt(), end.toInt())
+                        val range = getOffsetOfMethodInvocation(fileCC.text, start.toInt(), end.toInt())
                         if (range != null) {
                             addToRefactoringMap(file, range, newName)
                         }
@@ -209,17 +255,21 @@ private fun getClassMethod(searchingElement: KtDeclaration,
             .firstOrNull { it.getElementHandleValueParameters(project).size == numberOfValueParameters } ?: return null
 }
 
-private fun getOffsetOfMethodInvocation(fo: FileObject,
+private fun getOffsetOfMethodInvocation(sourceText: String,
                                         start: Int,
                                         end: Int): OffsetRange? {
-    val doc = ProjectUtils.getDocumentFromFileObject(fo) ?: return null
-    val text = doc.getText(start, end - start)
+    if (start < 0 || end <= start || end > sourceText.length) return null
+    val text = sourceText.substring(start, end)
 
     val startIndex = text.lastIndexOf(".") + 1
 
     return OffsetRange(start + startIndex, end)
 }
 
+/**
+ * Position references of closed files are resolved only when the modification is committed,
+ * so creating them doesn't load editor documents.
+ */
 fun createPositionBoundsForFO(fo: FileObject, ranges: Map<OffsetRange, String>): List<Pair<PositionBounds,String>> {
     val ces = GsfUtilities.findCloneableEditorSupport(fo) ?: return emptyList()
 
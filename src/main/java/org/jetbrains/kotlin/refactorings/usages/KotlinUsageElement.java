@@ -0,0 +1,72 @@
+/**
+ * *****************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************
+ */
+package org.jetbrains.kotlin.refactorings.usages;
+
+import org.netbeans.modules.refactoring.spi.SimpleRefactoringElementImplementation;
+import org.openide.filesystems.FileObject;
+import org.openide.text.PositionBounds;
+import org.openide.util.Lookup;
+import org.openide.util.lookup.Lookups;
+
+/**
+ * Usage of a Kotlin declaration found by {@link KotlinWhereUsedPlugin}.
+ */
+public class KotlinUsageElement extends SimpleRefactoringElementImplementation {
+
+    private final FileObject fo;
+    private final String text;
+    private final String displayText;
+    private final PositionBounds bounds;
+    
+    public KotlinUsageElement(FileObject fo, String text, String displayText, PositionBounds bounds) {
+        this.fo = fo;
+        this.text = text;
+        this.displayText = displayText;
+        this.bounds = bounds;
+    }
+    
+    @Override
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String getDisplayText() {
+        return displayText;
+    }
+
+    @Override
+    public void performChange() {}
+
+    @Override
+    public Lookup getLookup() {
+        return Lookups.singleton(fo);
+    }
+
+    @Override
+    public FileObject getParentFile() {
+        return fo;
+    }
+
+    @Override
+    public PositionBounds getPosition() {
+        return bounds;
+    }
+    
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.refactorings.usages
+
+import com.intellij.psi.PsiElement
+import com.intellij.psi.search.LocalSearchScope
+import com.intellij.psi.util.PsiTreeUtil
+import javax.swing.text.StyledDocument
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParser
+import org.jetbrains.kotlin.highlighter.occurrences.getKotlinElements
+import org.jetbrains.kotlin.highlighter.occurrences.getSearchingElements
+import org.jetbrains.kotlin.highlighter.occurrences.search
+import org.jetbrains.kotlin.navigation.references.resolveToSourceDeclaration
+import org.jetbrains.kotlin.psi.KtElement
+import org.jetbrains.kotlin.log.KotlinLogger
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.refactorings.rename.createPositionBoundsForFO
+import org.jetbrains.kotlin.refactorings.rename.getCandidateFiles
+import org.jetbrains.kotlin.refactorings.rename.getJavaUsages
+import org.jetbrains.kotlin.resolve.BindingContext
+import org.jetbrains.kotlin.resolve.KotlinAnalyzer
+import org.jetbrains.kotlin.utils.ProjectUtils
+import org.netbeans.api.project.Project
+import org.netbeans.modules.csl.api.OffsetRange
+import org.netbeans.modules.refactoring.api.AbstractRefactoring
+import org.netbeans.modules.refactoring.api.Problem
+import org.netbeans.modules.refactoring.api.WhereUsedQuery
+import org.netbeans.modules.refactoring.spi.ProgressProviderAdapter
+import org.netbeans.modules.refactoring.spi.RefactoringElementsBag
+import org.netbeans.modules.refactoring.spi.RefactoringPlugin
+import org.openide.cookies.EditorCookie
+import org.openide.filesystems.FileObject
+import org.openide.loaders.DataObject
+
+/**
+ * Finds usages of a Kotlin declaration in Kotlin and Java sources of its project. 
+ * Kotlin files are taken from the identifier index and each of them is added to 
+ * the results as soon as it is searched, so the first usages show up early.
+ * Candidate files are analyzed in batches past the analysis cache of the editor, 
+ * so a search doesn't evict results of the open files.
+ */
+class KotlinWhereUsedPlugin(val refactoring: WhereUsedQuery) : ProgressProviderAdapter(), RefactoringPlugin {
+
+    private companion object {
+        const val ANALYSIS_BATCH_SIZE = 16
+    }
+
+    @Volatile private var cancelled = false
+
+    override fun prepare(bag: RefactoringElementsBag): Problem? {
+        cancelled = false
+        val fo = ProjectUtils.getFileObjectForDocument(refactoring.refactoringSource.lookup(StyledDocument::class.java)) ?: return null
+        val psi = refactoring.refactoringSource.lookup(PsiElement::class.java) ?: return null
+        val project = ProjectUtils.getKotlinProjectForFileObject(fo) ?: return null
+
+        val searchingElement = findSearchingElement(psi) ?: return Problem(true, "Declaration is not found")
+        val candidates = if (searchingElement.useScope is LocalSearchScope) {
+            mapOf(Pair(fo, psi.containingFile as KtFile))
+        } else getCandidateFiles(searchingElement, fo, project)
+
+        fireProgressListenerStart(AbstractRefactoring.PREPARE, candidates.size + 1)
+        try {
+            // usages in the current file are shown first
+            val files = candidates.keys.sortedBy { it != fo }
+            var batchStart = 0
+            while (batchStart < files.size) {
+                if (cancelled) return null
+
+                // the current file is analyzed alone, so its usages don't wait for the others
+                val batchEnd = if (batchStart == 0 && files[0] == fo) 1 else minOf(files.size, batchStart + ANALYSIS_BATCH_SIZE)
+                val batch = files.subList(batchStart, batchEnd)
+                batchStart = batchEnd
+                
+                val bindingContext = analyze(batch.map { candidates[it]!! }, project) ?: continue
+                for (file in batch) {
+                    if (cancelled) return null
+
+                    val ktFile = candidates[file]!!
+                    val text = ktFile.text
+                    search(searchingElement, ktFile, bindingContext(ktFile), project).forEach { addUsage(bag, file, text, it) }
+                    fireProgressListenerStep()
+                }
+            }
+
+            if (cancelled || searchingElement.useScope is LocalSearchScope) return null
+            getJavaUsages(searchingElement, project) { cancelled }.forEach { (file, ranges) ->
+                if (cancelled) return null
+                val text = getJavaSourceText(file) ?: return@forEach
+                ranges.forEach { addUsage(bag, file, text, it) }
+            }
+            fireProgressListenerStep()
+        } finally {
+            fireProgressListenerStop()
+        }
+
+        return null
+    }
+
+    private fun findSearchingElement(psi: PsiElement): KtElement? {
+        val ktElement = PsiTreeUtil.getNonStrictParentOfType(psi, KtElement::class.java) ?: return null
+        val sourceElements = ktElement.resolveToSourceDeclaration()
+        if (sourceElements.isEmpty()) return null
+
+        return getKotlinElements(getSearchingElements(sourceElements)).firstOrNull()
+    }
+
+    /**
+     * Returns binding contexts of [ktFiles] by file. Results cached for the editor are reused, 
+     * the other files are analyzed together without being put into the cache.
+     */
+    private fun analyze(ktFiles: List<KtFile>, project: Project): ((KtFile) -> BindingContext)? {
+        val cache = KotlinParser.getCache(project)
+        val cached = ktFiles.mapNotNull { ktFile -> cache.get(ktFile)?.let { Pair(ktFile, it.result) } }.toMap()
+        val notCached = ktFiles.filter { it !in cached }
+        
+        val analysisResult = if (notCached.isEmpty()) null else try {
+            KotlinAnalyzer.analyzeFiles(project, notCached)
+        } catch (ex: Exception) {
+            KotlinLogger.INSTANCE.logException("Couldn't analyze ${notCached.map { it.name }}", ex)
+            return null
+        }
+        
+        return { ktFile -> (cached[ktFile] ?: analysisResult!!).analysisResult.bindingContext }
+    }
+
+    /**
+     * Javac reads the editor document of an open file, so its ranges are 
+     * matched against the same text rather than against the file on disk.
+     */
+    private fun getJavaSourceText(file: FileObject): String? {
+        val document = DataObject.find(file).lookup.lookup(EditorCookie::class.java)?.document
+                ?: return file.asText()
+
+        var text: String? = null
+        document.render { text = document.getText(0, document.length) }
+
+        return text
+    }
+
+    private fun addUsage(bag: RefactoringElementsBag, file: FileObject, text: String, range: OffsetRange) {
+        if (range.end > text.length) return
+        val bounds = createPositionBoundsForFO(file, mapOf(Pair(range, ""))).firstOrNull()?.first ?: return
+
+        val lineStart = text.lastIndexOf('\n', range.start - 1) + 1
+        val lineEnd = text.indexOf('\n', range.end).let { if (it < 0) text.length else it }
+
+        val before = text.substring(lineStart, range.start).trimStart()
+        val usage = text.substring(range.start, range.end)
+        val after = text.substring(range.end, lineEnd).trimEnd()
+
+        val displayText = "<html>${before.escapeHtml()}<b>${usage.escapeHtml()}</b>${after.escapeHtml()}</html>"
+        bag.add(refactoring, KotlinUsageElement(file, before + usage + after, displayText, bounds))
+    }
+
+    private fun String.escapeHtml() = replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+
+    override fun checkParameters() = null
+
+    override fun preCheck() = null
+
+    override fun fastCheckParameters() = null
+
+    override fun cancelRequest() {
+        cancelled = true
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * *****************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************
+ */
+package org.jetbrains.kotlin.refactorings.usages;
+
+import com.intellij.psi.PsiElement;
+import javax.swing.event.ChangeListener;
+import org.netbeans.modules.refactoring.api.AbstractRefactoring;
+import org.netbeans.modules.refactoring.api.Problem;
+import org.netbeans.modules.refactoring.api.WhereUsedQuery;
+import org.netbeans.modules.refactoring.spi.ui.CustomRefactoringPanel;
+import org.netbeans.modules.refactoring.spi.ui.RefactoringUI;
+import org.openide.util.HelpCtx;
+
+public class KotlinWhereUsedQueryUI implements RefactoringUI {
+
+    private final WhereUsedQuery query;
+    private final PsiElement psi;
+    
+    public KotlinWhereUsedQueryUI(PsiElement psi, WhereUsedQuery query) {
+        this.psi = psi;
+        this.query = query;
+    }
+    
+    @Override
+    public String getName() {
+        return "Usages of " + psi.getText();
+    }
+
+    @Override
+    public String getDescription() {
+        return getName();
+    }
+
+    @Override
+    public boolean isQuery() {
+        return true;
+    }
+
+    @Override
+    public CustomRefactoringPanel getPanel(ChangeListener parent) {
+        return null;
+    }
+
+    @Override
+    public Problem setParameters() {
+        return null;
+    }
+
+    @Override
+    public Problem checkParameters() {
+        return null;
+    }
+
+    @Override
+    public boolean hasParameters() {
+        return false;
+    }
+
+    @Override
+    public AbstractRefactoring getRefactoring() {
+        return query;
+    }
+
+    @Override
+    public HelpCtx getHelpCtx() {
+        return null;
+    }
+}
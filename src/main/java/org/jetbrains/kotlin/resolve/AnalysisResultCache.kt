@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.resolve
+
+import java.lang.ref.SoftReference
+import java.util.concurrent.atomic.AtomicLong
+import org.jetbrains.kotlin.psi.KtFile
+import org.netbeans.api.project.Project
+
+/**
+ * Bounded LRU cache of analysis results of one project. Entries are keyed by
+ * file path and a stamp of the file content and are valid while the modification
+ * stamp of the project is the one the analysis started with, since results depend
+ * on other files too. The stamp doesn't change with edits inside bodies, so results 
+ * of other files survive typing in one file. Entries are held through soft references, so the garbage
+ * collector may drop them under memory pressure.
+ */
+class AnalysisResultCache(private val project: Project, private val maxSize: Int = DEFAULT_MAX_SIZE) {
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 8
+        private const val LOW_MEMORY_RATIO = 0.1
+    }
+
+    class Entry(val ktFile: KtFile, val result: AnalysisResultWithProvider, val projectStamp: Long)
+
+    private data class Key(val path: String, val stamp: Int)
+
+    private val entries = object : LinkedHashMap<Key, SoftReference<Entry>>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, SoftReference<Entry>>) = size > maxSize
+    }
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    val hitCount: Long
+        get() = hits.get()
+
+    val missCount: Long
+        get() = misses.get()
+
+    @Synchronized fun get(ktFile: KtFile): Entry? {
+        val text = ktFile.text
+        val key = key(ktFile, text) ?: return null
+        val entry = entries[key]?.get()
+
+        if (entry == null || entry.ktFile.text != text || entry.projectStamp != ProjectModificationStamps.get(project)) {
+            entries.remove(key)
+            misses.incrementAndGet()
+            return null
+        }
+
+        hits.incrementAndGet()
+        return entry
+    }
+
+    @Synchronized fun put(entry: Entry) {
+        val key = key(entry.ktFile, entry.ktFile.text) ?: return
+
+        val projectStamp = ProjectModificationStamps.get(project)
+        if (entry.projectStamp != projectStamp) return
+
+        // entries of other stamps are dropped when they are looked up or fall out of the LRU
+        if (isLowOnMemory()) trim(entries.size / 2)
+
+        entries.put(key, SoftReference(entry))
+    }
+
+    @Synchronized fun clear() = entries.clear()
+
+    private fun trim(count: Int) {
+        val iterator = entries.keys.iterator()
+        repeat(count) {
+            if (!iterator.hasNext()) return
+            iterator.next()
+            iterator.remove()
+        }
+    }
+
+    private fun isLowOnMemory(): Boolean {
+        val runtime = Runtime.getRuntime()
+        val available = runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory()
+
+        return available < runtime.maxMemory() * LOW_MEMORY_RATIO
+    }
+
+    private fun key(ktFile: KtFile, text: String): Key? {
+        val path = ktFile.virtualFile?.path ?: return null
+        return Key(path, text.hashCode())
+    }
+
+}
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.resolve
+
+import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiFile
+import org.jetbrains.kotlin.analyzer.AnalysisResult
+import org.jetbrains.kotlin.container.ComponentProvider
+import org.jetbrains.kotlin.descriptors.ModuleDescriptor
+import org.jetbrains.kotlin.indexer.KotlinIndex
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtNamedDeclaration
+import org.jetbrains.kotlin.resolve.diagnostics.Diagnostics
+import org.jetbrains.kotlin.resolve.diagnostics.SimpleDiagnostics
+import org.jetbrains.kotlin.storage.StorageManager
+import org.jetbrains.kotlin.util.KotlinFrontEndException
+import org.jetbrains.kotlin.utils.ProjectUtils
+import org.netbeans.api.project.Project as NBProject
+
+class ModuleResolveState(val trace: BindingTrace,
+                         val module: ModuleDescriptor,
+                         val container: ComponentProvider)
+
+/**
+ * Keeps the resolve state of a project module between analyses. Files edited since the 
+ * state was built are resolved in an overlay module on top of a base module of all other 
+ * files, so an edit rebuilds only the overlay and declarations of the other files already 
+ * resolved lazily are reused. Bodies are analyzed only for the requested files not analyzed 
+ * yet in their state. The base can't see declarations of the overlay, so the whole state is 
+ * built again if a name declared in an edited file is used in the other files, or if files 
+ * were added or removed.
+ */
+class KotlinAnalysisSession private constructor(private val kotlinProject: NBProject) {
+
+    companion object {
+        private val sessions = hashMapOf<NBProject, KotlinAnalysisSession>()
+
+        @Synchronized fun getSession(kotlinProject: NBProject) =
+                sessions.getOrPut(kotlinProject) { KotlinAnalysisSession(kotlinProject) }
+
+        @Synchronized fun invalidate(kotlinProject: NBProject) {
+            sessions.remove(kotlinProject)
+        }
+    }
+
+    /**
+     * Resolve state of [files]. Bodies are analyzed under the lock of the storage manager 
+     * of the state, which also guards its lazy resolution, so analyses of different states 
+     * run in parallel and the overlay may resolve declarations of the base meanwhile.
+     */
+    private inner class SessionState(val files: Map<String, KtFile>,
+                                     val resolveState: ModuleResolveState) {
+        private val analyzedFiles = hashSetOf<KtFile>()
+
+        fun analyze(filesToAnalyze: Collection<KtFile>) {
+            resolveState.container.get<StorageManager>().compute {
+                val notAnalyzed = filesToAnalyze.filterNot { it in analyzedFiles }
+                try {
+                    if (notAnalyzed.isNotEmpty()) resolveState.container.get<LazyTopDownAnalyzer>()
+                            .analyzeDeclarations(TopDownAnalysisMode.TopLevelDeclarations, notAnalyzed)
+                } catch (e: KotlinFrontEndException) {}
+                analyzedFiles.addAll(notAnalyzed)
+            }
+        }
+    }
+
+    private var base: SessionState? = null
+    private var overlay: SessionState? = null
+
+    // identifiers used in the files of the base, by PSI instance
+    private val identifiers = hashMapOf<KtFile, Set<String>>()
+
+    fun analyze(project: Project, filesToAnalyze: Collection<KtFile>): AnalysisResultWithProvider {
+        val (baseState, overlayState) = getStates(project, collectModuleFiles(filesToAnalyze))
+
+        val overlayFiles = overlayState?.files?.values?.toSet() ?: emptySet<KtFile>()
+        val inOverlay = filesToAnalyze.filter { it in overlayFiles }
+        val inBase = filesToAnalyze - inOverlay
+        if (inBase.isNotEmpty()) baseState.analyze(inBase)
+        if (inOverlay.isNotEmpty()) overlayState!!.analyze(inOverlay)
+
+        // the overlay sees the base, but not the other way round
+        val resolveState = if (inOverlay.isEmpty()) baseState.resolveState else overlayState!!.resolveState
+        val bindingContext = if (inOverlay.isEmpty()) baseState.resolveState.trace.bindingContext 
+                else CompositeBindingContext.create(listOf(
+                        overlayState!!.resolveState.trace.bindingContext, 
+                        baseState.resolveState.trace.bindingContext))
+
+        return AnalysisResultWithProvider(
+                AnalysisResult.success(FileFilteredBindingContext(bindingContext, filesToAnalyze.toSet<PsiFile>()), 
+                        resolveState.module),
+                resolveState.container
+        )
+    }
+
+    @Synchronized private fun getStates(project: Project, moduleFiles: Map<String, KtFile>): Pair<SessionState, SessionState?> {
+        val currentBase = base
+        val currentOverlay = overlay
+        val overlayPaths = currentOverlay?.files?.keys ?: emptySet<String>()
+        if (currentBase == null || moduleFiles.size != currentBase.files.size + overlayPaths.size 
+                || moduleFiles.keys.any { it !in currentBase.files && it !in overlayPaths }) {
+            return createStates(project, moduleFiles, emptySet())
+        }
+
+        val editedInBase = currentBase.files.filter { (path, file) -> moduleFiles[path] !== file }.keys
+        if (editedInBase.isNotEmpty()) return createStates(project, moduleFiles, overlayPaths + editedInBase)
+
+        if (currentOverlay != null && overlayPaths.any { moduleFiles[it] !== currentOverlay.files[it] }) {
+            val overlayFiles = moduleFiles.filterKeys { it in overlayPaths }
+            if (!isIndependent(overlayFiles.values, currentBase.files.values)) {
+                return createStates(project, moduleFiles, emptySet())
+            }
+            overlay = SessionState(overlayFiles, createModuleState(project, overlayFiles, currentBase))
+        }
+
+        return Pair(currentBase, overlay)
+    }
+
+    private fun createStates(project: Project, 
+                             moduleFiles: Map<String, KtFile>, 
+                             overlayPaths: Set<String>): Pair<SessionState, SessionState?> {
+        val baseFiles = moduleFiles.filterKeys { it !in overlayPaths }
+        val overlayFiles = moduleFiles.filterKeys { it in overlayPaths }
+        if (overlayFiles.isNotEmpty() && !isIndependent(overlayFiles.values, baseFiles.values)) {
+            return createStates(project, moduleFiles, emptySet())
+        }
+
+        val newBase = SessionState(baseFiles, createModuleState(project, baseFiles, null))
+        base = newBase
+        overlay = if (overlayFiles.isEmpty()) null 
+                else SessionState(overlayFiles, createModuleState(project, overlayFiles, newBase))
+        identifiers.keys.retainAll(baseFiles.values)
+
+        return Pair(newBase, overlay)
+    }
+
+    private fun createModuleState(project: Project, files: Map<String, KtFile>, base: SessionState?) =
+            NetBeansAnalyzerFacadeForJVM.createModuleState(kotlinProject, project, files.values, base?.resolveState)
+
+    /**
+     * Checks that none of the top-level names declared in [overlayFiles] are used in [baseFiles], 
+     * so the base resolves the same without the overlay.
+     */
+    private fun isIndependent(overlayFiles: Collection<KtFile>, baseFiles: Collection<KtFile>): Boolean {
+        val declaredNames = overlayFiles.flatMap { it.declarations }.mapNotNull { (it as? KtNamedDeclaration)?.name }
+        if (declaredNames.isEmpty()) return true
+
+        return baseFiles.none { file ->
+            val used = identifiers.getOrPut(file) { KotlinIndex.collectIdentifiers(file) }
+            declaredNames.any { it in used }
+        }
+    }
+
+    private fun collectModuleFiles(filesToAnalyze: Collection<KtFile>): Map<String, KtFile> {
+        val files = linkedMapOf<String, KtFile>()
+        filesToAnalyze.forEach { file -> getPath(file)?.let { files.put(it, file) } }
+
+        ProjectUtils.getSourceFilesWithDependencies(kotlinProject).forEach { file ->
+            val path = getPath(file) ?: return@forEach
+            if (path !in files) files.put(path, file)
+        }
+
+        return files
+    }
+
+    private fun getPath(ktFile: KtFile): String? = ktFile.virtualFile?.path
+
+}
+
+/**
+ * Binding context of a shared resolve state which reports diagnostics only
+ * for the files that were requested to be analyzed.
+ */
+private class FileFilteredBindingContext(private val delegate: BindingContext,
+                                         private val files: Set<PsiFile>) : BindingContext by delegate {
+
+    override fun getDiagnostics(): Diagnostics =
+            SimpleDiagnostics(delegate.diagnostics.all().filter { it.psiFile in files })
+
+}
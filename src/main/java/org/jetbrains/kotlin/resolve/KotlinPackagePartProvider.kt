@@ -2,6 +2,7 @@ package org.jetbrains.kotlin.resolve
 
 import com.intellij.openapi.vfs.VirtualFile
 import java.io.EOFException
+import java.util.concurrent.ConcurrentHashMap
 import org.netbeans.api.project.Project
 import org.jetbrains.kotlin.model.KotlinEnvironment
 import org.jetbrains.kotlin.descriptors.PackagePartProvider
@@ -9,9 +10,28 @@ import org.jetbrains.kotlin.load.kotlin.ModuleMapping
 import org.jetbrains.kotlin.load.kotlin.PackageParts
 import org.jetbrains.kotlin.utils.SmartList
 
-class KotlinPackagePartProvider(val project: Project) : PackagePartProvider {
+/**
+ * Package parts of the Kotlin libraries of a project. One instance is shared by all analyses
+ * of the project until its classpath changes, so module mappings are read only once.
+ */
+class KotlinPackagePartProvider private constructor(val project: Project) : PackagePartProvider {
+    
+    companion object {
+        private val providers = ConcurrentHashMap<Project, KotlinPackagePartProvider>()
+        
+        fun getInstance(project: Project): KotlinPackagePartProvider =
+                providers.getOrPut(project) { KotlinPackagePartProvider(project) }
+        
+        fun invalidate(project: Project) {
+            providers.remove(project)
+        }
+    }
+    
     private data class ModuleMappingInfo(val root: VirtualFile, val mapping: ModuleMapping)
     
+    private val packageParts = ConcurrentHashMap<String, List<String>>()
+    private val metadataPackageParts = ConcurrentHashMap<String, List<String>>()
+    
     private val notLoadedRoots by lazy(LazyThreadSafetyMode.NONE) {
         KotlinEnvironment.getEnvironment(project).roots
                 .map { it.file }
@@ -21,7 +41,10 @@ class KotlinPackagePartProvider(val project: Project) : PackagePartProvider {
     
     private val loadedModules: MutableList<ModuleMappingInfo> = SmartList()
     
-    override fun findPackageParts(packageFqName: String): List<String> {
+    override fun findPackageParts(packageFqName: String): List<String> =
+            packageParts.getOrPut(packageFqName) { computePackageParts(packageFqName) }
+    
+    private fun computePackageParts(packageFqName: String): List<String> {
         val rootToPackageParts = getPackageParts(packageFqName)
         if (rootToPackageParts.isEmpty()) return emptyList()
         
@@ -40,9 +63,12 @@ class KotlinPackagePartProvider(val project: Project) : PackagePartProvider {
         return result.toList()
     }
     
-    override fun findMetadataPackageParts(packageFqName: String) = getPackageParts(packageFqName).values
-            .flatMap(PackageParts::metadataParts)
-            .distinct()
+    override fun findMetadataPackageParts(packageFqName: String): List<String> =
+            metadataPackageParts.getOrPut(packageFqName) {
+                getPackageParts(packageFqName).values
+                        .flatMap(PackageParts::metadataParts)
+                        .distinct()
+            }
     
     @Synchronized private fun getPackageParts(packageFqName: String): Map<VirtualFile, PackageParts> {
         processNotLoadedRelevantRoots(packageFqName)
@@ -17,7 +17,6 @@
 package org.jetbrains.kotlin.resolve
 
 import com.intellij.psi.search.GlobalSearchScope
-import org.jetbrains.kotlin.analyzer.AnalysisResult
 import org.jetbrains.kotlin.builtins.JvmBuiltInsPackageFragmentProvider
 import org.jetbrains.kotlin.cli.jvm.compiler.CliLightClassGenerationSupport
 import org.jetbrains.kotlin.config.CommonConfigurationKeys
@@ -25,43 +24,108 @@ import org.jetbrains.kotlin.config.CompilerConfiguration
 import org.jetbrains.kotlin.config.LanguageVersionSettingsImpl
 import org.jetbrains.kotlin.context.MutableModuleContext
 import org.jetbrains.kotlin.context.ProjectContext
-import org.jetbrains.kotlin.util.KotlinFrontEndException
 import org.jetbrains.kotlin.frontend.java.di.initJvmBuiltInsForTopDownAnalysis
 import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.context.ContextForNewModule
+import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.descriptors.PackageFragmentProvider
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.platform.JvmBuiltIns
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.resolve.jvm.JavaDescriptorResolver
 import org.jetbrains.kotlin.resolve.jvm.TopDownAnalyzerFacadeForJVM
-import org.jetbrains.kotlin.resolve.jvm.TopDownAnalyzerFacadeForJVM.SourceOrBinaryModuleClassResolver
 import org.jetbrains.kotlin.resolve.jvm.extensions.PackageFragmentProviderExtension
 import org.jetbrains.kotlin.resolve.lazy.declarations.FileBasedDeclarationProviderFactory
 import org.jetbrains.kotlin.resolve.lazy.KotlinCodeAnalyzer
+import org.jetbrains.kotlin.log.KotlinLogger
 import org.jetbrains.kotlin.model.KotlinEnvironment
+import org.jetbrains.kotlin.resolve.lang.java.JavaClassesScope
+import org.jetbrains.kotlin.resolve.lang.java.resolver.NetBeansModuleClassResolver
 import org.jetbrains.kotlin.descriptors.impl.CompositePackageFragmentProvider
 import org.jetbrains.kotlin.descriptors.impl.ModuleDependenciesImpl
-import java.util.LinkedHashSet
-import org.jetbrains.kotlin.utils.ProjectUtils
 import org.netbeans.api.project.Project as NBProject
 import com.intellij.openapi.project.Project
 
+/**
+ * Binary dependencies of a project module: the module itself, the optional built-ins 
+ * module and the resolver of compiled Java classes. They are shared by all 
+ * source analyses until the classpath of the project changes.
+ */
+class DependenciesState(val module: ModuleDescriptor,
+                        val builtInsModule: ModuleDescriptor?,
+                        val compiledCodeResolver: JavaDescriptorResolver)
+
 object NetBeansAnalyzerFacadeForJVM {
 
+    private val dependencies = hashMapOf<NBProject, DependenciesState>()
+    
     fun analyzeFilesWithJavaIntegration(
             kotlinProject: NBProject,
             project : Project,
-            filesToAnalyze: Collection<KtFile>): AnalysisResultWithProvider {
-        val filesSet = filesToAnalyze.toSet()
-        
-        val allFiles = LinkedHashSet<KtFile>(filesSet)
-        val addedFiles = filesSet.mapNotNullTo(hashSetOf()) { getPath(it) }
-        ProjectUtils.getSourceFilesWithDependencies(kotlinProject).filterNotTo(allFiles) {
-            getPath(it) in addedFiles
-        }
+            filesToAnalyze: Collection<KtFile>): AnalysisResultWithProvider = 
+            KotlinAnalysisSession.getSession(kotlinProject).analyze(project, filesToAnalyze)
+    
+    @Synchronized fun getDependencies(kotlinProject: NBProject, project: Project): DependenciesState = 
+            dependencies.getOrPut(kotlinProject) { createDependencies(kotlinProject, project) }
+    
+    @Synchronized fun invalidateDependencies(kotlinProject: NBProject) {
+        dependencies.remove(kotlinProject)
+    }
+    
+    private fun createDependencies(kotlinProject: NBProject, project: Project): DependenciesState {
+        val startTime = System.nanoTime()
+        val environment = KotlinEnvironment.getEnvironment(kotlinProject)
         
+        val projectContext = ProjectContext(project)
+        val storageManager = projectContext.storageManager
+        val builtIns = JvmBuiltIns(storageManager, false)
+        val dependenciesContext = ContextForNewModule(
+                projectContext, Name.special("<dependencies of ${environment.configuration.getNotNull<String>(CommonConfigurationKeys.MODULE_NAME)}>"),
+                builtIns, null
+        )
+        builtIns.builtInsModule = dependenciesContext.module
+        builtIns.initialize(dependenciesContext.module, true)
+        
+        val optionalBuiltInsModule = JvmBuiltIns(storageManager).apply { initialize(dependenciesContext.module, true) }.builtInsModule
+        
+        val moduleClassResolver = NetBeansModuleClassResolver(kotlinProject)
+        val dependencyScope = GlobalSearchScope.notScope(TopDownAnalyzerFacadeForJVM.newModuleSearchScope(project, emptyList()))
+        val dependenciesContainer = createContainerForTopDownAnalyzerForJvm(
+                dependenciesContext, 
+                BindingTraceContext(), 
+                FileBasedDeclarationProviderFactory(storageManager, emptyList()), 
+                dependencyScope, 
+                LookupTracker.DO_NOTHING,
+                KotlinPackagePartProvider.getInstance(kotlinProject), 
+                LanguageVersionSettingsImpl.DEFAULT,
+                moduleClassResolver,
+                kotlinProject,
+                JavaClassesScope.BINARIES)
+        
+        moduleClassResolver.compiledCodeResolver = dependenciesContainer.get()
+        
+        dependenciesContext.setDependencies(listOfNotNull(dependenciesContext.module, optionalBuiltInsModule))
+        dependenciesContext.initializeModuleContents(CompositePackageFragmentProvider(listOf(
+                moduleClassResolver.compiledCodeResolver.packageFragmentProvider,
+                dependenciesContainer.get<JvmBuiltInsPackageFragmentProvider>()
+        )))
+        
+        KotlinLogger.INSTANCE.logInfo("Dependencies module init: ${(System.nanoTime() - startTime)} ns")
+        
+        return DependenciesState(dependenciesContext.module, optionalBuiltInsModule, moduleClassResolver.compiledCodeResolver)
+    }
+    
+    /**
+     * Creates the resolve state of [allFiles]. A module created on top of a [base] state depends on it 
+     * and sees its internals, and resolves Java sources through it, so both share the Java descriptors.
+     */
+    fun createModuleState(
+            kotlinProject: NBProject,
+            project : Project,
+            allFiles: Collection<KtFile>,
+            base: ModuleResolveState? = null): ModuleResolveState {
         val environment = KotlinEnvironment.getEnvironment(kotlinProject)
+        val dependencies = getDependencies(kotlinProject, project)
         
         val moduleContext = createModuleContext(project, 
                 environment.configuration,
@@ -72,40 +136,11 @@ object NetBeansAnalyzerFacadeForJVM {
         val providerFactory = FileBasedDeclarationProviderFactory(storageManager, allFiles)
         val trace = CliLightClassGenerationSupport.CliBindingTrace()
         
-        val sourceScope = TopDownAnalyzerFacadeForJVM.newModuleSearchScope(project, filesToAnalyze)
-        val moduleClassResolver = SourceOrBinaryModuleClassResolver(sourceScope)
+        val sourceScope = TopDownAnalyzerFacadeForJVM.newModuleSearchScope(project, allFiles)
+        val moduleClassResolver = NetBeansModuleClassResolver(kotlinProject)
+        moduleClassResolver.compiledCodeResolver = dependencies.compiledCodeResolver
         
         val languageVersionSettings = LanguageVersionSettingsImpl.DEFAULT
-        val optionalBuiltInsModule = JvmBuiltIns(storageManager).apply { initialize(module, true) }.builtInsModule
-        
-        val dependencyModule = run { 
-            val dependenciesContext = ContextForNewModule(
-                    moduleContext,  Name.special("<dependencies of ${environment.configuration.getNotNull<String>(CommonConfigurationKeys.MODULE_NAME)}>"),
-                    module.builtIns, null
-            )
-            
-            val dependencyScope = GlobalSearchScope.notScope(sourceScope)
-            val dependenciesContainer = createContainerForTopDownAnalyzerForJvm(
-                    moduleContext, 
-                    trace, 
-                    providerFactory, 
-                    dependencyScope, 
-                    LookupTracker.DO_NOTHING,
-                    KotlinPackagePartProvider(kotlinProject), 
-                    languageVersionSettings,
-                    moduleClassResolver,
-                    kotlinProject)
-            
-            moduleClassResolver.compiledCodeResolver = dependenciesContainer.get()
-            
-            dependenciesContext.setDependencies(listOfNotNull(dependenciesContext.module, optionalBuiltInsModule))
-            dependenciesContext.initializeModuleContents(CompositePackageFragmentProvider(listOf(
-                    moduleClassResolver.compiledCodeResolver.packageFragmentProvider,
-                    dependenciesContainer.get<JvmBuiltInsPackageFragmentProvider>()
-            )))
-            
-            dependenciesContext.module
-        }
         
         val container = createContainerForTopDownAnalyzerForJvm(
                 moduleContext, 
@@ -113,42 +148,34 @@ object NetBeansAnalyzerFacadeForJVM {
                 providerFactory, 
                 sourceScope, 
                 LookupTracker.DO_NOTHING, 
-                KotlinPackagePartProvider(kotlinProject), 
+                KotlinPackagePartProvider.getInstance(kotlinProject), 
                 languageVersionSettings, 
                 moduleClassResolver, 
-                kotlinProject).apply {
+                kotlinProject,
+                JavaClassesScope.SOURCES).apply {
             initJvmBuiltInsForTopDownAnalysis(module, languageVersionSettings)
         }
         
-        moduleClassResolver.sourceCodeResolver = container.get()
+        moduleClassResolver.sourceCodeResolver = base?.container?.get() ?: container.get()
         
         val additionalProviders = arrayListOf<PackageFragmentProvider>()
-        additionalProviders.add(container.get<JavaDescriptorResolver>().packageFragmentProvider)
+        if (base == null) additionalProviders.add(container.get<JavaDescriptorResolver>().packageFragmentProvider)
         
         PackageFragmentProviderExtension.getInstances(project).mapNotNullTo(additionalProviders) { extension ->
             extension.getPackageFragmentProvider(project, module, storageManager, trace, null)
         }
         
         module.setDependencies(ModuleDependenciesImpl(
-                listOfNotNull(module, dependencyModule, optionalBuiltInsModule),
-                setOf(dependencyModule)
+                listOfNotNull(module, base?.module, dependencies.module, dependencies.builtInsModule),
+                listOfNotNull(dependencies.module, base?.module).toSet()
         ))
         module.initialize(CompositePackageFragmentProvider(
                 listOf(container.get<KotlinCodeAnalyzer>().packageFragmentProvider) + additionalProviders
         ))
         
-        try {
-            container.get<LazyTopDownAnalyzer>().analyzeDeclarations(TopDownAnalysisMode.TopLevelDeclarations, filesSet)
-        } catch (e: KotlinFrontEndException) {}
-        
-        return AnalysisResultWithProvider(
-                AnalysisResult.success(trace.bindingContext, module),
-                container
-        )
+        return ModuleResolveState(trace, module, container)
     }
     
-    private fun getPath(jetFile: KtFile): String? = jetFile.virtualFile?.path
-    
     private fun createModuleContext(project: Project,
                                     configuration: CompilerConfiguration,
                                     createBuiltInsFromModule: Boolean): MutableModuleContext {
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.resolve
+
+import org.jetbrains.kotlin.projectsextensions.KotlinProjectHelper.isMavenProject
+import org.jetbrains.kotlin.projectsextensions.maven.MavenHelper
+import org.netbeans.api.project.Project
+
+/**
+ * Modification stamps of projects. The stamp of a project advances whenever something
+ * analysis of other files depends on changes: the declaration signature of a Kotlin 
+ * source file, a Java type or the classpath of the project or of one of its dependency 
+ * projects. Edits inside bodies don't change it. Results computed under one stamp are 
+ * valid while the stamp stays the same.
+ *
+ * The external stamp advances only with changes which don't come from Kotlin sources:
+ * Java types, the classpath and removed files.
+ */
+object ProjectModificationStamps {
+
+    private val stamps = hashMapOf<Project, Long>()
+    private val externalStamps = hashMapOf<Project, Long>()
+    private var counter = 0L
+
+    @Synchronized fun get(project: Project) = getWithDependencies(stamps, project)
+
+    @Synchronized fun getExternal(project: Project) = getWithDependencies(externalStamps, project)
+
+    private fun getWithDependencies(stamps: Map<Project, Long>, project: Project): Long {
+        val stamp = stamps[project] ?: 0L
+        if (!project.isMavenProject()) return stamp
+
+        return MavenHelper.getDependencyProjects(project).fold(stamp) { max, it -> maxOf(max, stamps[it] ?: 0L) }
+    }
+
+    @Synchronized fun bump(project: Project) {
+        stamps.put(project, ++counter)
+    }
+
+    @Synchronized fun bumpExternal(project: Project) {
+        stamps.put(project, ++counter)
+        externalStamps.put(project, counter)
+    }
+
+}
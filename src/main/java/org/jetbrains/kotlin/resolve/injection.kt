@@ -42,6 +42,7 @@ import org.jetbrains.kotlin.resolve.jvm.platform.JvmPlatform
 import org.jetbrains.kotlin.resolve.lazy.FileScopeProviderImpl
 import org.jetbrains.kotlin.resolve.lazy.ResolveSession
 import org.jetbrains.kotlin.resolve.lazy.declarations.DeclarationProviderFactory
+import org.jetbrains.kotlin.resolve.lang.java.JavaClassesScope
 import org.jetbrains.kotlin.resolve.lang.java.NetBeansJavaClassFinder
 import org.jetbrains.kotlin.resolve.lang.java.resolver.NetBeansTraceBasedJavaResolverCache
 import org.jetbrains.kotlin.resolve.lang.java.resolver.NetBeansExternalAnnotationResolver
@@ -92,6 +93,7 @@ private fun createContainerForLazyResolveWithJava(
         packagePartProvider: PackagePartProvider,
         languageVersionSettings: LanguageVersionSettings,
         project: NBProject,
+        classesScope: JavaClassesScope,
         useBuiltInsProvider: Boolean,
         useLazyResolve: Boolean
 ): StorageComponentContainer = createContainer("LazyResolveWithJava", JvmPlatform) {
@@ -102,6 +104,7 @@ private fun createContainerForLazyResolveWithJava(
     useInstance(moduleClassResolver)
     useInstance(declarationProviderFactory)
     useInstance(project)
+    useInstance(classesScope)
     
     if (useBuiltInsProvider) {
         useInstance((moduleContext.module.builtIns as JvmBuiltIns).settings)
@@ -126,11 +129,12 @@ fun createContainerForTopDownAnalyzerForJvm(
         packagePartProvider: PackagePartProvider,
         languageVersionSettings: LanguageVersionSettings,
         moduleClassResolver: ModuleClassResolver,
-        project: NBProject
+        project: NBProject,
+        classesScope: JavaClassesScope = JavaClassesScope.ALL
 ) = createContainerForLazyResolveWithJava(
         moduleContext, bindingTrace, declarationProviderFactory, moduleContentScope, moduleClassResolver, 
         CompilerEnvironment, lookupTracker, packagePartProvider, languageVersionSettings, 
-        project, useBuiltInsProvider = true, useLazyResolve = false)
+        project, classesScope, useBuiltInsProvider = true, useLazyResolve = false)
 
 // Copy functions from Dsl.kt as they were shrinked by proguard
 inline fun <reified T : Any> StorageComponentContainer.useImpl() {
@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.resolve.lang.java
+
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.ZipFile
+import javax.lang.model.element.ElementKind
+import javax.lang.model.element.TypeElement
+import org.jetbrains.kotlin.log.KotlinLogger
+import org.netbeans.api.java.source.ClasspathInfo
+import org.netbeans.api.project.Project
+import org.openide.filesystems.FileChangeAdapter
+import org.openide.filesystems.FileEvent
+import org.openide.filesystems.FileRenameEvent
+import org.openide.filesystems.FileUtil
+import org.openide.modules.Places
+
+/**
+ * Classes of one jar: binary names and kinds read from its class files.
+ */
+class JarClasses(val jar: File, val timestamp: Long, private val kinds: Map<String, ElementKind>) {
+    
+    private val packages: Map<String, List<String>> by lazy {
+        kinds.keys
+                .filter { '$' !in it.substringAfterLast('.') }
+                .groupBy({ it.substringBeforeLast('.', "") }, { it.substringAfterLast('.') })
+    }
+    
+    val size: Int
+        get() = kinds.size
+    
+    fun getKind(binaryName: String) = kinds[binaryName]
+    
+    fun getClassNames(packageName: String) = packages[packageName] ?: emptyList()
+    
+    fun forEach(action: (String, ElementKind) -> Unit) = kinds.forEach(action)
+    
+}
+
+/**
+ * Persistent cache of the classes of jar dependencies. Class names and kinds are read 
+ * from a jar once and stored on disk, keyed by the jar path, its size and modification 
+ * time, so binary classes can be found without javac even in the first analysis after 
+ * restart. Element handles of members can't be restored from disk, so only the class 
+ * lookup is cached; the structure of a found class is still computed by javac on demand 
+ * and kept in memory by [JavaClassStructureCache] for the session.
+ * 
+ * Jars are watched while they are cached, a changed jar is read again on the next lookup.
+ */
+object BinaryClassesCache {
+    
+    private const val MAGIC = 0x4b4a4343
+    private const val FORMAT_VERSION = 1
+    
+    private class ProjectClasses(val jars: List<JarClasses>, val isComplete: Boolean)
+    
+    private val KINDS = listOf(ElementKind.CLASS, ElementKind.INTERFACE, ElementKind.ENUM, ElementKind.ANNOTATION_TYPE)
+    
+    private val jarClasses = ConcurrentHashMap<String, JarClasses>()
+    private val projectClasses = ConcurrentHashMap<Project, ProjectClasses>()
+    private val watchedJars = ConcurrentHashMap<String, JarListener>()
+    
+    private val cacheDirectory: File? by lazy {
+        try {
+            Places.getCacheSubdirectory("kotlin/binary-classes")
+        } catch (ex: Exception) {
+            KotlinLogger.INSTANCE.logException("Couldn't create binary classes cache directory", ex)
+            null
+        }
+    }
+    
+    /**
+     * Drops the classes of a jar when it is changed, so classes of a rebuilt jar 
+     * are not reported as missing.
+     */
+    private class JarListener(private val path: String) : FileChangeAdapter() {
+        override fun fileChanged(fe: FileEvent) = jarChanged(path)
+        override fun fileDeleted(fe: FileEvent) = jarChanged(path)
+        override fun fileDataCreated(fe: FileEvent) = jarChanged(path)
+        override fun fileRenamed(fe: FileRenameEvent) = jarChanged(path)
+    }
+    
+    private fun jarChanged(path: String) {
+        jarClasses.remove(path)
+        projectClasses.values.removeIf { classes -> classes.jars.any { it.jar.path == path } }
+    }
+    
+    /**
+     * Finds a class in jars on the boot or compile classpath of the [project]. Returns
+     * null if it is not found in them, [isComplete] tells if such a miss is final.
+     */
+    fun findClass(project: Project, binaryName: String): ElemHandle<TypeElement>? {
+        getProjectClasses(project).jars.forEach { jar ->
+            val kind = jar.getKind(binaryName) ?: return@forEach
+            return ElemHandle.createTypeElementHandle(kind, binaryName, project)
+        }
+        
+        return null
+    }
+    
+    /**
+     * True if the whole binary classpath of the [project] consists of cached jars
+     * which didn't change since they were read.
+     */
+    fun isComplete(project: Project) = getProjectClasses(project).isComplete
+    
+    fun getClassNames(project: Project, packageName: String): Set<String> =
+            getProjectClasses(project).jars.flatMapTo(hashSetOf()) { it.getClassNames(packageName) }
+    
+    fun invalidate(project: Project) {
+        projectClasses.remove(project)
+    }
+    
+    private fun getProjectClasses(project: Project): ProjectClasses {
+        projectClasses[project]?.let { classes -> 
+            // a jar may change while its classes are read for the project
+            if (classes.jars.all { it.isUpToDate() }) return classes
+        }
+        
+        return loadProjectClasses(project).also { projectClasses.put(project, it) }
+    }
+    
+    private fun JarClasses.isUpToDate() = jarClasses[jar.path] === this
+    
+    private fun loadProjectClasses(project: Project): ProjectClasses {
+        JavaEnvironment.checkJavaSource(project)
+        val classpathInfo = JavaEnvironment.JAVA_SOURCE[project]!!.classpathInfo
+        
+        var isComplete = true
+        val jars = arrayListOf<JarClasses>()
+        listOf(ClasspathInfo.PathKind.BOOT, ClasspathInfo.PathKind.COMPILE)
+                .flatMap { classpathInfo.getClassPath(it).entries() }
+                .forEach { entry ->
+                    val root = entry.root
+                    val archive = root?.let { FileUtil.getArchiveFile(it) }?.let { FileUtil.toFile(it) }
+                    val classes = archive?.let { getJarClasses(it) }
+                    
+                    if (classes != null) jars.add(classes) else if (root == null || root.children.isNotEmpty()) isComplete = false
+                }
+        
+        return ProjectClasses(jars, isComplete)
+    }
+    
+    private fun getJarClasses(jar: File): JarClasses? {
+        watch(jar)
+        
+        val cached = jarClasses[jar.path]
+        if (cached != null && cached.timestamp == jar.lastModified()) return cached
+        
+        val classes = readFromDisk(jar) ?: readJar(jar)?.also { writeToDisk(it) } ?: return null
+        jarClasses.put(jar.path, classes)
+        
+        return classes
+    }
+    
+    private fun watch(jar: File) {
+        if (watchedJars.containsKey(jar.path)) return
+        
+        val listener = JarListener(jar.path)
+        if (watchedJars.putIfAbsent(jar.path, listener) == null) FileUtil.addFileChangeListener(listener, jar)
+    }
+    
+    private fun getCacheFile(jar: File): File? {
+        val directory = cacheDirectory ?: return null
+        return File(directory, "${jar.name}-${Integer.toHexString(jar.path.hashCode())}.classes")
+    }
+    
+    /**
+     * Reads names and kinds of the classes of [jar] from its class files.
+     */
+    fun readJar(jar: File): JarClasses? = try {
+        val timestamp = jar.lastModified()
+        val kinds = hashMapOf<String, ElementKind>()
+        ZipFile(jar).use { zip ->
+            zip.entries().asSequence()
+                    .filter { !it.isDirectory && it.name.endsWith(".class") }
+                    .forEach { entry ->
+                        val binaryName = entry.name.removeSuffix(".class").replace('/', '.')
+                        if (!isNamedClass(binaryName)) return@forEach
+                        
+                        val kind = zip.getInputStream(entry).use { readKind(it) } ?: return@forEach
+                        kinds.put(binaryName, kind)
+                    }
+        }
+        JarClasses(jar, timestamp, kinds)
+    } catch (ex: IOException) {
+        KotlinLogger.INSTANCE.logException("Couldn't read classes of ${jar.path}", ex)
+        null
+    }
+    
+    private fun isNamedClass(binaryName: String): Boolean {
+        val simpleName = binaryName.substringAfterLast('.')
+        return simpleName != "package-info" && simpleName != "module-info" &&
+                simpleName.split('$').all { it.isNotEmpty() && !it[0].isDigit() }
+    }
+    
+    private fun readKind(input: InputStream): ElementKind? {
+        val data = DataInputStream(input.buffered())
+        if (data.readInt() != 0xCAFEBABE.toInt()) return null
+        data.skipBytes(4)
+        
+        val constantPoolSize = data.readUnsignedShort()
+        var index = 1
+        while (index < constantPoolSize) {
+            val tag = data.readUnsignedByte()
+            when (tag) {
+                1 -> data.skipBytes(data.readUnsignedShort())
+                3, 4, 9, 10, 11, 12, 17, 18 -> data.skipBytes(4)
+                5, 6 -> {
+                    data.skipBytes(8)
+                    index++
+                }
+                7, 8, 16, 19, 20 -> data.skipBytes(2)
+                15 -> data.skipBytes(3)
+                else -> return null
+            }
+            index++
+        }
+        
+        val access = data.readUnsignedShort()
+        return when {
+            access and 0x2000 != 0 -> ElementKind.ANNOTATION_TYPE
+            access and 0x0200 != 0 -> ElementKind.INTERFACE
+            access and 0x4000 != 0 -> ElementKind.ENUM
+            else -> ElementKind.CLASS
+        }
+    }
+    
+    private fun readFromDisk(jar: File): JarClasses? {
+        val cacheFile = getCacheFile(jar)?.takeIf { it.exists() } ?: return null
+        
+        // the file is read into memory rather than mapped, so a broken one can be deleted right away
+        return try {
+            readClasses(jar, ByteBuffer.wrap(cacheFile.readBytes()))
+        } catch (ex: Exception) {
+            KotlinLogger.INSTANCE.logWarning("Binary classes cache ${cacheFile.path} is broken: ${ex.message}")
+            cacheFile.delete()
+            null
+        }
+    }
+    
+    private fun writeToDisk(classes: JarClasses) {
+        val jar = classes.jar
+        val cacheFile = getCacheFile(jar) ?: return
+        val tempFile = File(cacheFile.path + ".tmp")
+        
+        try {
+            DataOutputStream(BufferedOutputStream(FileOutputStream(tempFile))).use { writeClasses(classes, it) }
+            if (!tempFile.renameTo(cacheFile)) {
+                cacheFile.delete()
+                tempFile.renameTo(cacheFile)
+            }
+        } catch (ex: IOException) {
+            KotlinLogger.INSTANCE.logException("Couldn't write binary classes cache of ${jar.path}", ex)
+            tempFile.delete()
+        }
+    }
+    
+    /**
+     * Writes [classes] in the format of cache files.
+     */
+    fun writeClasses(classes: JarClasses, output: DataOutputStream) {
+        val jar = classes.jar
+        output.writeInt(MAGIC)
+        output.writeInt(FORMAT_VERSION)
+        output.writeString(jar.path)
+        output.writeLong(classes.timestamp)
+        output.writeLong(jar.length())
+        
+        output.writeInt(classes.size)
+        classes.forEach { name, kind ->
+            output.writeByte(KINDS.indexOf(kind))
+            output.writeString(name)
+        }
+    }
+    
+    /**
+     * Reads classes of [jar] written by [writeClasses]. Returns null if they were written 
+     * in another format or for another version of the jar.
+     */
+    fun readClasses(jar: File, buffer: ByteBuffer): JarClasses? {
+        if (buffer.int != MAGIC || buffer.int != FORMAT_VERSION) return null
+        val timestamp = jar.lastModified()
+        if (buffer.readString() != jar.path || buffer.long != timestamp || buffer.long != jar.length()) return null
+        
+        val count = buffer.int
+        val classes = HashMap<String, ElementKind>(count * 4 / 3 + 1)
+        repeat(count) {
+            val kind = KINDS[buffer.get().toInt()]
+            classes.put(buffer.readString(), kind)
+        }
+        
+        return JarClasses(jar, timestamp, classes)
+    }
+    
+    private fun DataOutputStream.writeString(value: String) {
+        val bytes = value.toByteArray(Charsets.UTF_8)
+        writeShort(bytes.size)
+        write(bytes)
+    }
+    
+    private fun ByteBuffer.readString(): String {
+        val bytes = ByteArray(short.toInt() and 0xFFFF)
+        get(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+    
+}
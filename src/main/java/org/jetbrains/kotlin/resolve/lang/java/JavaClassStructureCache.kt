@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.resolve.lang.java
+
+import java.lang.ref.SoftReference
+import java.util.WeakHashMap
+import java.util.concurrent.ConcurrentHashMap
+import javax.swing.event.DocumentEvent
+import javax.swing.event.DocumentListener
+import javax.swing.text.Document
+import javax.lang.model.element.TypeElement
+import org.jetbrains.kotlin.descriptors.Visibility
+import org.jetbrains.kotlin.load.java.structure.JavaClass
+import org.jetbrains.kotlin.load.java.structure.JavaClassifierType
+import org.jetbrains.kotlin.load.java.structure.JavaConstructor
+import org.jetbrains.kotlin.load.java.structure.JavaField
+import org.jetbrains.kotlin.load.java.structure.JavaMethod
+import org.jetbrains.kotlin.load.java.structure.JavaTypeParameter
+import org.jetbrains.kotlin.name.Name
+import org.netbeans.api.java.source.ElementHandle
+import org.netbeans.api.java.source.SourceUtils
+import org.netbeans.api.project.Project
+import org.openide.cookies.EditorCookie
+import org.openide.filesystems.FileObject
+import org.openide.loaders.DataObject
+import org.openide.loaders.DataObjectNotFoundException
+
+class JavaClassStructure(val name: Name,
+                         val supertypes: List<JavaClassifierType>,
+                         val innerClasses: List<JavaClass>,
+                         val outerClass: JavaClass?,
+                         val methods: List<JavaMethod>,
+                         val constructors: List<JavaConstructor>,
+                         val fields: List<JavaField>,
+                         val typeParameters: List<JavaTypeParameter>,
+                         val visibility: Visibility,
+                         val isAbstract: Boolean,
+                         val isStatic: Boolean,
+                         val isFinal: Boolean)
+
+/**
+ * Structure of Java classes of a project, computed once per class and kept until
+ * the classpath of the project changes. Structures are held through soft references, 
+ * so the garbage collector may drop them under memory pressure. Classes compiled from 
+ * project sources are computed again when their source file is modified on disk, when 
+ * the class index reports the types as changed, or when the open document of the source 
+ * is edited.
+ */
+object JavaClassStructureCache {
+    
+    private class Entry(structure: JavaClassStructure,
+                        val sourceFile: FileObject?,
+                        val timestamp: Long) {
+        private val reference = SoftReference(structure)
+        
+        val structure: JavaClassStructure?
+            get() = reference.get()
+        
+        val isUpToDate: Boolean
+            get() = sourceFile == null || (sourceFile.isValid && sourceFile.lastModified().time == timestamp 
+                    && isListened(sourceFile))
+    }
+    
+    private val structures = ConcurrentHashMap<Project, ConcurrentHashMap<ElemHandle<TypeElement>, Entry>>()
+    
+    // documents of sources with cached classes, whose edits invalidate the classes
+    private val documents = WeakHashMap<Document, DocumentListener>()
+    
+    fun getStructure(handle: ElemHandle<TypeElement>, project: Project, javaClass: JavaClass): JavaClassStructure? {
+        val projectStructures = structures.getOrPut(project) { ConcurrentHashMap() }
+        projectStructures[handle]?.let { entry -> 
+            val structure = entry.structure
+            if (structure != null && entry.isUpToDate) return structure
+        }
+        
+        // lookups of one class share a javac session
+        return JavaTaskExecutor.runInSession(project) {
+            val structure = ClassStructureSearcher(handle, project, javaClass).execute(project).structure 
+                    ?: return@runInSession null
+            val sourceFile = if (handle.isBinary(project)) null else handle.getSourceFile(project)
+            sourceFile?.let { listenToDocument(it, project) }
+            projectStructures.put(handle, Entry(structure, sourceFile, sourceFile?.lastModified()?.time ?: 0))
+            
+            structure
+        }
+    }
+    
+    fun invalidate(project: Project) {
+        structures.remove(project)
+    }
+    
+    /**
+     * Drops structures of the [types] and of their nested classes.
+     */
+    fun invalidate(project: Project, types: Iterable<ElementHandle<TypeElement>>) {
+        val projectStructures = structures[project] ?: return
+        val names = types.map { it.binaryName }
+        projectStructures.keys.removeAll { handle -> 
+            val name = handle.binaryName
+            name != null && names.any { name == it || name.startsWith("$it\$") }
+        }
+    }
+    
+    private fun invalidate(project: Project, sourceFile: FileObject) {
+        structures[project]?.values?.removeAll { it.sourceFile == sourceFile }
+    }
+    
+    private fun getLoadedDocument(file: FileObject): Document? = try {
+        DataObject.find(file).lookup.lookup(EditorCookie::class.java)?.document
+    } catch (ex: DataObjectNotFoundException) {
+        null
+    }
+    
+    private fun isListened(sourceFile: FileObject): Boolean {
+        val document = getLoadedDocument(sourceFile) ?: return true
+        return synchronized(documents) { document in documents }
+    }
+    
+    private fun listenToDocument(sourceFile: FileObject, project: Project) {
+        val document = getLoadedDocument(sourceFile) ?: return
+        synchronized(documents) {
+            if (document in documents) return
+            
+            // the listener is removed with the first edit and added again with the next cached class of the file
+            val listener = object : DocumentListener {
+                override fun insertUpdate(event: DocumentEvent) = edited()
+                override fun removeUpdate(event: DocumentEvent) = edited()
+                override fun changedUpdate(event: DocumentEvent) {}
+                
+                private fun edited() {
+                    synchronized(documents) { documents.remove(document) }
+                    document.removeDocumentListener(this)
+                    invalidate(project, sourceFile)
+                }
+            }
+            documents.put(document, listener)
+            document.addDocumentListener(listener)
+        }
+    }
+    
+    private fun ElemHandle<TypeElement>.getSourceFile(project: Project): FileObject? {
+        val elementHandle = elementHandle ?: return null
+        return SourceUtils.getFile(elementHandle, JavaEnvironment.JAVA_SOURCE[project]!!.classpathInfo)
+    }
+    
+}
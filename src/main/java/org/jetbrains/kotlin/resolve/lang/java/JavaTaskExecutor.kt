@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.resolve.lang.java
+
+import java.io.IOException
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicReference
+import org.jetbrains.kotlin.log.KotlinLogger
+import org.netbeans.api.java.source.CompilationController
+import org.netbeans.api.java.source.Task
+import org.netbeans.api.project.Project
+
+/**
+ * Runs javac tasks of a project in short CompilationController sessions instead of a 
+ * separate user action task per lookup. Tasks submitted while another thread has a 
+ * session of the project open are queued and run in that session, so concurrent lookups 
+ * are batched. A thread waits at most [MAX_WAIT_MILLIS] for its queued task before it 
+ * takes the task back and opens a session itself, so callers which already hold the 
+ * parser lock can't deadlock with the session owner. Lookups made inside [runInSession] 
+ * on the same thread reuse its controller; callers keep such bursts short, as the 
+ * session holds the javac lock. Failures of tasks and sessions are logged and leave 
+ * the results of the tasks unset.
+ */
+object JavaTaskExecutor {
+    
+    const val MAX_WAIT_MILLIS = 200L
+    
+    private class PendingTask<T : Task<CompilationController>>(private val task: T) : FutureTask<T>(Callable { task }) {
+        
+        fun runWith(controller: CompilationController) {
+            try {
+                task.run(controller)
+            } catch (ex: Exception) {
+                KotlinLogger.INSTANCE.logException("Java task failed", ex)
+            }
+            set(task)
+        }
+        
+        fun skip() = set(task)
+        
+    }
+    
+    private class Session(val project: Project, val controller: CompilationController)
+    
+    private class TaskQueue {
+        val tasks = ConcurrentLinkedQueue<PendingTask<*>>()
+        // thread which has a session of the project open and runs the queued tasks
+        val owner = AtomicReference<Thread?>()
+    }
+    
+    private val queues = ConcurrentHashMap<Project, TaskQueue>()
+    private val currentSession = ThreadLocal<Session?>()
+    
+    /**
+     * Number of tasks of the [project] waiting for a session.
+     */
+    fun pendingTasks(project: Project): Int = queues[project]?.tasks?.size ?: 0
+    
+    fun <T : Task<CompilationController>> submit(project: Project, task: T): Future<T> {
+        val pendingTask = PendingTask(task)
+        
+        val session = currentSession.get()
+        if (session != null && session.project == project) {
+            pendingTask.runWith(session.controller)
+            runQueuedTasks(getQueue(project), session.controller)
+            return pendingTask
+        }
+        
+        val queue = getQueue(project)
+        queue.tasks.add(pendingTask)
+        if (queue.owner.get() != null) {
+            try {
+                pendingTask.get(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS)
+                return pendingTask
+            } catch (ex: TimeoutException) {}
+        }
+        
+        // the task is either still queued and runs in a new session of this thread,
+        // or it was taken by the thread which has a session open
+        if (queue.tasks.remove(pendingTask)) {
+            runInSession(project) {
+                val controller = currentSession.get()?.takeIf { it.project == project }?.controller
+                if (controller != null) pendingTask.runWith(controller) else pendingTask.skip()
+            }
+        }
+        
+        return pendingTask
+    }
+    
+    fun <T : Task<CompilationController>> execute(project: Project, task: T): T = submit(project, task).get()
+    
+    /**
+     * Runs [action] with a CompilationController session of the [project] open, so that
+     * all javac lookups made by it on this thread share one session. The [action] runs 
+     * without a session if none can be opened.
+     */
+    fun <R> runInSession(project: Project, action: () -> R): R {
+        val session = currentSession.get()
+        if (session != null && session.project == project) return action()
+        
+        val queue = getQueue(project)
+        var result: R? = null
+        var started = false
+        try {
+            JavaEnvironment.checkJavaSource(project)
+            JavaEnvironment.JAVA_SOURCE[project]!!.runUserActionTask({ controller ->
+                started = true
+                currentSession.set(Session(project, controller))
+                queue.owner.set(Thread.currentThread())
+                try {
+                    result = action()
+                    runQueuedTasks(queue, controller)
+                } finally {
+                    queue.owner.set(null)
+                    currentSession.set(session)
+                }
+            }, true)
+        } catch (ex: IOException) {
+            KotlinLogger.INSTANCE.logException("Can't open a Java session of ${project.projectDirectory.path}", ex)
+            skipQueuedTasks(queue)
+            if (!started) result = action()
+        }
+        
+        @Suppress("UNCHECKED_CAST")
+        return result as R
+    }
+    
+    private fun getQueue(project: Project) = queues.getOrPut(project) { TaskQueue() }
+    
+    private fun runQueuedTasks(queue: TaskQueue, controller: CompilationController) {
+        while (true) {
+            val task = queue.tasks.poll() ?: break
+            task.runWith(controller)
+        }
+    }
+    
+    private fun skipQueuedTasks(queue: TaskQueue) {
+        while (true) {
+            val task = queue.tasks.poll() ?: break
+            task.skip()
+        }
+    }
+    
+}
@@ -31,14 +31,23 @@ import org.jetbrains.kotlin.resolve.CodeAnalyzerInitializer
 import org.jetbrains.kotlin.model.KotlinEnvironment
 import org.netbeans.api.project.Project
 
+enum class JavaClassesScope {
+    ALL, SOURCES, BINARIES
+}
+
 class NetBeansJavaClassFinder : JavaClassFinder {
     
     private lateinit var project: Project
+    private var classesScope = JavaClassesScope.ALL
     
     @Inject fun setProjectScope(project: Project) {
         this.project = project
     }
     
+    @Inject fun setClassesScope(classesScope: JavaClassesScope) {
+        this.classesScope = classesScope
+    }
+    
     @PostConstruct fun initialize(trace: BindingTrace, codeAnalyzer: KotlinCodeAnalyzer) {
         val ideaProject = KotlinEnvironment.getEnvironment(project).project
         CodeAnalyzerInitializer.Companion.getInstance(ideaProject).initialize(trace, codeAnalyzer.moduleDescriptor, codeAnalyzer)
@@ -46,7 +55,17 @@ class NetBeansJavaClassFinder : JavaClassFinder {
     
     
     override fun findClass(classId: ClassId): JavaClass? {
+        if (classesScope == JavaClassesScope.BINARIES) {
+            BinaryClassesCache.findClass(project, classId.binaryName)?.let { return NetBeansJavaClass(it, project) }
+            if (BinaryClassesCache.isComplete(project)) return null
+        }
+        
         val element = project.findType(classId.asSingleFqName().asString()) ?: return null
+        when (classesScope) {
+            JavaClassesScope.SOURCES -> if (element.isBinary(project)) return null
+            JavaClassesScope.BINARIES -> if (!element.isBinary(project)) return null
+            JavaClassesScope.ALL -> {}
+        }
         
         return NetBeansJavaClass(element, project)
     }
@@ -57,5 +76,17 @@ class NetBeansJavaClassFinder : JavaClassFinder {
         return NetBeansJavaPackage(pack, project)
     }
 
-    override fun knownClassNamesInPackage(packageFqName: FqName) = knownClassNamesInPackage(packageFqName.asString(), project)
+    override fun knownClassNamesInPackage(packageFqName: FqName): Set<String> {
+        if (classesScope == JavaClassesScope.BINARIES && BinaryClassesCache.isComplete(project)) {
+            return BinaryClassesCache.getClassNames(project, packageFqName.asString())
+        }
+        
+        return knownClassNamesInPackage(packageFqName.asString(), project)
+    }
+    
+    private val ClassId.binaryName: String
+        get() {
+            val relativeName = relativeClassName.asString().replace('.', '$')
+            return if (packageFqName.isRoot) relativeName else "${packageFqName.asString()}.$relativeName"
+        }
 }
\ No newline at end of file
@@ -18,17 +18,13 @@ package org.jetbrains.kotlin.resolve.lang.java
 
 import javax.lang.model.element.ElementKind
 import javax.lang.model.element.ExecutableElement
+import javax.lang.model.element.Modifier
 import javax.lang.model.element.TypeElement
 import javax.lang.model.element.VariableElement
 import javax.lang.model.type.NoType
 import javax.lang.model.type.TypeKind
 import javax.lang.model.type.TypeMirror
 import org.jetbrains.kotlin.load.java.structure.JavaClass
-import org.jetbrains.kotlin.load.java.structure.JavaClassifierType
-import org.jetbrains.kotlin.load.java.structure.JavaConstructor
-import org.jetbrains.kotlin.load.java.structure.JavaField
-import org.jetbrains.kotlin.load.java.structure.JavaMethod
-import org.jetbrains.kotlin.load.java.structure.JavaTypeParameter
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.name.SpecialNames
 import org.jetbrains.kotlin.resolve.lang.java.structure.NetBeansJavaClass
@@ -44,19 +40,12 @@ import org.netbeans.api.java.source.TypeMirrorHandle
 import org.netbeans.api.project.Project
 import com.intellij.psi.CommonClassNames
 
-class NameSearcher(val handle: ElemHandle<TypeElement>) : Task<CompilationController> {
-    var name: Name = SpecialNames.safeIdentifier(handle.qualifiedName) 
-    
-    override fun run(info: CompilationController) {
-        info.toResolvedPhase()
-        val element = handle.resolve(info) ?: return
-        
-        name = SpecialNames.safeIdentifier(element.simpleName.toString())
-    }
-}
-
-class SuperTypesSearcher(val handle: ElemHandle<TypeElement>, val project: Project) : Task<CompilationController> {
-    val superTypes = arrayListOf<JavaClassifierType>()
+/**
+ * Materializes everything [NetBeansJavaClass] needs to know about a class in one javac task.
+ */
+class ClassStructureSearcher(val handle: ElemHandle<TypeElement>,
+                             val project: Project, val javaClass: JavaClass) : Task<CompilationController> {
+    var structure: JavaClassStructure? = null
     
     private fun getSuperTypesMirrors(typeBinding: TypeElement): List<TypeMirror> {
         val superTypesList = typeBinding.interfaces.toMutableList()
@@ -67,7 +56,7 @@ class SuperTypesSearcher(val handle: ElemHandle<TypeElement>, val project: Proje
         return superTypesList
     }
     
-    private fun getSuperTypesWithObject(typeBinding: TypeElement, info: CompilationController): Array<TypeMirror> {
+    private fun getSuperTypesWithObject(typeBinding: TypeElement, info: CompilationController): List<TypeMirror> {
         val allSuperTypes = getSuperTypesMirrors(typeBinding).toMutableList()
         val hasObject = !allSuperTypes.none{ it.toString() == CommonClassNames.JAVA_LANG_OBJECT }
         
@@ -75,61 +64,46 @@ class SuperTypesSearcher(val handle: ElemHandle<TypeElement>, val project: Proje
             allSuperTypes.add(info.elements.getTypeElement(CommonClassNames.JAVA_LANG_OBJECT).asType())
         }
         
-        return allSuperTypes.toTypedArray()
+        return allSuperTypes
     }
     
-    override fun run(info: CompilationController) {
-        info.toResolvedPhase()
-        val element = handle.resolve(info) ?: return
+    private fun getOuterClass(element: TypeElement): JavaClass? {
+        val outer = element.enclosingElement ?: return null
+        if (outer.asType().kind != TypeKind.DECLARED) return null
         
-        getSuperTypesWithObject(element as TypeElement, info)
-                .forEach{ superTypes.add(
-                        NetBeansJavaClassifierType(TypeMirrorHandle.create(it), project)) }
+        return NetBeansJavaClass(ElemHandle.create(outer as TypeElement, project), project)
     }
-}
- 
-class InnerClassesSearcher(val handle: ElemHandle<TypeElement>, 
-                           val project: Project) : Task<CompilationController> {
-    val innerClasses = arrayListOf<JavaClass>()
-    
-    override fun run(info: CompilationController) {
-        info.toResolvedPhase()
-        val element = handle.resolve(info) ?: return
-        
-        val filteredMembers = element.enclosedElements
-                .filterIsInstance(TypeElement::class.java)
-                .map{ NetBeansJavaClass(ElemHandle.create(it, project), project) }
-        innerClasses.addAll(filteredMembers)
-    }
-}
-
-class OuterClassSearcher(val handle: ElemHandle<TypeElement>,
-                         val project: Project) : Task<CompilationController> {
-    var outerClass: JavaClass? = null
-    
-    override fun run(info: CompilationController) {
-        info.toResolvedPhase()
-        val element = handle.resolve(info) ?: return
-        
-        val outer = element.enclosingElement ?: return
-        if (outer.asType().kind != TypeKind.DECLARED) return
-        
-        outerClass = NetBeansJavaClass(ElemHandle.create(outer as TypeElement, project), project)
-    }
-}
-
-class MethodsSearcher(val handle: ElemHandle<TypeElement>,
-                      val project: Project, val containingClass: JavaClass) : Task<CompilationController> {
-    val methods = arrayListOf<JavaMethod>()
     
     override fun run(info: CompilationController) {
         info.toResolvedPhase()
-        val element = handle.resolve(info) ?: return
+        val element = handle.resolve(info) as? TypeElement ?: return
+        val members = element.enclosedElements
+        val modifiers = element.modifiers
         
-        val filteredMembers = element.enclosedElements
-                .filter { it.kind == ElementKind.METHOD }
-                .map { NetBeansJavaMethod(ElemHandle.create(it as ExecutableElement, project), containingClass, project) }
-        methods.addAll(filteredMembers)
+        structure = JavaClassStructure(
+                name = SpecialNames.safeIdentifier(element.simpleName.toString()),
+                supertypes = getSuperTypesWithObject(element, info)
+                        .map { NetBeansJavaClassifierType(TypeMirrorHandle.create(it), project) },
+                innerClasses = members
+                        .filterIsInstance(TypeElement::class.java)
+                        .map { NetBeansJavaClass(ElemHandle.create(it, project), project) },
+                outerClass = getOuterClass(element),
+                methods = members
+                        .filter { it.kind == ElementKind.METHOD }
+                        .map { NetBeansJavaMethod(ElemHandle.create(it as ExecutableElement, project), javaClass, project) },
+                constructors = members
+                        .filter { it.kind == ElementKind.CONSTRUCTOR }
+                        .map { NetBeansJavaConstructor(ElemHandle.create(it as ExecutableElement, project), javaClass, project) },
+                fields = members
+                        .filter { it.kind.isField && Name.isValidIdentifier(it.simpleName.toString()) }
+                        .map { NetBeansJavaField(ElemHandle.create(it as VariableElement, project), javaClass, project) },
+                typeParameters = element.typeParameters
+                        .map { NetBeansJavaTypeParameter(ElemHandle.create(it, project), project) },
+                visibility = getVisibility(modifiers),
+                isAbstract = modifiers.contains(Modifier.ABSTRACT),
+                isStatic = modifiers.contains(Modifier.STATIC),
+                isFinal = modifiers.contains(Modifier.FINAL)
+        )
     }
 }
 
@@ -147,46 +121,3 @@ class MethodHandlesSearcher(val handle: ElementHandle<TypeElement>) : Task<Compi
         methods.addAll(filteredMembers)
     }
 }
-
-class ConstructorsSearcher(val handle: ElemHandle<TypeElement>,
-                      val project: Project, val containingClass: JavaClass) : Task<CompilationController> {
-    val constructors = arrayListOf<JavaConstructor>()
-    
-    override fun run(info: CompilationController) {
-        info.toResolvedPhase()
-        val element = handle.resolve(info) ?: return
-        
-        val filteredMembers = element.enclosedElements
-                .filter { it.kind == ElementKind.CONSTRUCTOR }
-                .map { NetBeansJavaConstructor(ElemHandle.create(it as ExecutableElement, project), containingClass, project) }
-        constructors.addAll(filteredMembers)
-    }
-}
-
-class FieldsSearcher(val handle: ElemHandle<TypeElement>,
-                     val project: Project, val containingClass: JavaClass) : Task<CompilationController> {
-    val fields = arrayListOf<JavaField>()
-    
-    override fun run(info: CompilationController) {
-        info.toResolvedPhase()
-        val element = handle.resolve(info) ?: return
-        
-        val filteredMembers = element.enclosedElements
-                .filter { it.kind.isField && Name.isValidIdentifier(it.simpleName.toString()) }
-                .map { NetBeansJavaField(ElemHandle.create(it as VariableElement, project), containingClass, project) }
-        fields.addAll(filteredMembers)
-    }
-}
-
-class TypeParametersSearcher(val handle: ElemHandle<TypeElement>,
-                             val project: Project) : Task<CompilationController> {
-    val typeParameters = arrayListOf<JavaTypeParameter>()
-    
-    override fun run(info: CompilationController) {
-        info.toResolvedPhase()
-        val element = handle.resolve(info) ?: return
-        
-        (element as TypeElement).typeParameters
-                .forEach{ typeParameters.add(NetBeansJavaTypeParameter(ElemHandle.create(it, project), project)) }
-    }
-}
\ No newline at end of file
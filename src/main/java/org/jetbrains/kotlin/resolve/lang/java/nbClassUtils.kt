@@ -18,35 +18,25 @@ package org.jetbrains.kotlin.resolve.lang.java
 
 import org.jetbrains.kotlin.load.java.structure.JavaClass
 import org.jetbrains.kotlin.name.FqName
+import org.netbeans.api.java.source.ClasspathInfo
 import org.netbeans.api.java.source.ElementHandle
 import org.netbeans.api.project.Project
 import javax.lang.model.element.TypeElement
 
 
-fun ElemHandle<TypeElement>.getName(project: Project) = NameSearcher(this).execute(project).name
-
-fun ElemHandle<TypeElement>.getSuperTypes(project: Project) =
-        SuperTypesSearcher(this, project).execute(project).superTypes
-
-fun ElemHandle<TypeElement>.getInnerClasses(project: Project) =
-        InnerClassesSearcher(this, project).execute(project).innerClasses
-
-fun ElemHandle<TypeElement>.getOuterClass(project: Project) = 
-        OuterClassSearcher(this, project).execute(project).outerClass
-
-fun ElemHandle<TypeElement>.getMethods(project: Project, javaClass: JavaClass) = 
-        MethodsSearcher(this, project, javaClass).execute(project).methods
-
-fun ElemHandle<TypeElement>.getConstructors(project: Project, javaClass: JavaClass) =
-        ConstructorsSearcher(this, project, javaClass).execute(project).constructors
-
-fun ElemHandle<TypeElement>.getFields(project: Project, javaClass: JavaClass) =
-        FieldsSearcher(this, project, javaClass).execute(project).fields
-
-fun ElemHandle<TypeElement>.getTypeParameters(project: Project) = 
-        TypeParametersSearcher(this, project).execute(project).typeParameters
+fun ElemHandle<TypeElement>.getStructure(project: Project, javaClass: JavaClass) =
+        JavaClassStructureCache.getStructure(this, project, javaClass)
 
 fun ElemHandle<TypeElement>.getFqName() = FqName(this.qualifiedName)
+
+fun ElemHandle<TypeElement>.isBinary(project: Project): Boolean {
+    val classFilePath = "${binaryName?.replace('.', '/') ?: return false}.class"
+    JavaEnvironment.checkJavaSource(project)
+    val classpathInfo = JavaEnvironment.JAVA_SOURCE[project]!!.classpathInfo
+    
+    return listOf(ClasspathInfo.PathKind.BOOT, ClasspathInfo.PathKind.COMPILE)
+            .any { classpathInfo.getClassPath(it).findResource(classFilePath) != null }
+}
  
 fun ElementHandle<TypeElement>.getMethodsHandles(project: Project) =
         MethodHandlesSearcher(this).execute(project).methods
\ No newline at end of file
@@ -16,18 +16,23 @@
  *******************************************************************************/
 package org.jetbrains.kotlin.resolve.lang.java
 
+import java.util.concurrent.Future
 import javax.lang.model.element.TypeElement
 import org.jetbrains.kotlin.projectsextensions.KotlinProjectHelper.getExtendedClassPath
+import org.jetbrains.kotlin.resolve.ProjectModificationStamps
 import org.jetbrains.kotlin.resolve.lang.java.structure.NetBeansJavaClass
 import org.netbeans.api.java.classpath.ClassPath
 import org.netbeans.api.java.source.ClassIndex
+import org.netbeans.api.java.source.ClassIndexListener
 import org.netbeans.api.java.source.ClasspathInfo
 import org.netbeans.api.java.source.CompilationController
 import org.netbeans.api.java.source.ElementHandle
+import org.netbeans.api.java.source.RootsEvent
 import org.netbeans.api.java.source.JavaSource
 import org.netbeans.api.java.source.SourceUtils
 import org.netbeans.api.java.source.Task
 import org.netbeans.api.java.source.TypeMirrorHandle
+import org.netbeans.api.java.source.TypesEvent
 import org.netbeans.api.java.source.ui.ElementOpen
 import org.netbeans.api.project.Project
 import org.openide.filesystems.FileObject
@@ -39,6 +44,7 @@ import javax.lang.model.element.ExecutableElement
 
 object JavaEnvironment {
     val JAVA_SOURCE = hashMapOf<Project, JavaSource>()
+    private val CLASS_INDEX_LISTENERS = hashMapOf<Project, Pair<ClassIndex, ClassIndexListener>>()
 
     private fun getClasspathInfo(project: Project): ClasspathInfo {
         val extendedProvider = project.getExtendedClassPath() ?: 
@@ -51,13 +57,41 @@ object JavaEnvironment {
         return ClasspathInfo.create(boot, compile, src)
     }
 
+    private fun createJavaSource(project: Project): JavaSource {
+        val classpathInfo = getClasspathInfo(project)
+        // analysis results of Kotlin files may depend on the changed Java types
+        val listener = object : ClassIndexListener {
+            override fun typesAdded(event: TypesEvent) = typesModified(project, classpathInfo, event)
+            override fun typesRemoved(event: TypesEvent) = typesModified(project, classpathInfo, event)
+            override fun typesChanged(event: TypesEvent) = typesModified(project, classpathInfo, event)
+            override fun rootsAdded(event: RootsEvent) = ProjectModificationStamps.bumpExternal(project)
+            override fun rootsRemoved(event: RootsEvent) = ProjectModificationStamps.bumpExternal(project)
+        }
+        classpathInfo.classIndex.addClassIndexListener(listener)
+        CLASS_INDEX_LISTENERS.put(project, Pair(classpathInfo.classIndex, listener))?.let { 
+            (classIndex, oldListener) -> classIndex.removeClassIndexListener(oldListener)
+        }
+        
+        return JavaSource.create(classpathInfo)
+    }
+    
+    private fun typesModified(project: Project, classpathInfo: ClasspathInfo, event: TypesEvent) {
+        JavaClassStructureCache.invalidate(project, event.types)
+        // stubs of Kotlin files are regenerated after their signatures changed, which is tracked already
+        if (event.types.all { SourceUtils.getFile(it, classpathInfo)?.hasExt("kt") ?: false }) return
+        
+        ProjectModificationStamps.bumpExternal(project)
+    }
+
+    @Synchronized
     fun updateClasspathInfo(project: Project) {
-        JAVA_SOURCE.put(project, JavaSource.create(getClasspathInfo(project)))
+        JAVA_SOURCE.put(project, createJavaSource(project))
     }
 
+    @Synchronized
     fun checkJavaSource(project: Project) {
         if (!JAVA_SOURCE.containsKey(project)) {
-            JAVA_SOURCE.put(project, JavaSource.create(getClasspathInfo(project)))
+            JAVA_SOURCE.put(project, createJavaSource(project))
         }
     }
 
@@ -65,17 +99,14 @@ object JavaEnvironment {
 
 fun knownClassNamesInPackage(packageFqName: String, project: Project): Set<String> {
     val classes = hashSetOf<String>()
-    JavaEnvironment.checkJavaSource(project)
-    JavaEnvironment.JAVA_SOURCE[project]?.let {
-        it.runUserActionTask({
-            it.toResolvedPhase()
-            it.elements.getPackageElement(packageFqName)
-                    ?.enclosedElements
-                    ?.filterIsInstance(TypeElement::class.java)
-                    ?.map { it.simpleName.toString() }
-                    ?.let { classes.addAll(it) }
-        }, true)
-    } 
+    Task<CompilationController> {
+        it.toResolvedPhase()
+        it.elements.getPackageElement(packageFqName)
+                ?.enclosedElements
+                ?.filterIsInstance(TypeElement::class.java)
+                ?.map { it.simpleName.toString() }
+                ?.let { classes.addAll(it) }
+    }.execute(project)
     
     return classes
 } 
@@ -93,12 +124,9 @@ fun Project.findType(fqName: String) = TypeElementSearcher(fqName, this).execute
 
 fun Project.findTypeElementHandle(fqName: String) = TypeElementHandleSearcher(fqName, this).execute(this).element
 
-fun <T : Task<CompilationController>> T.execute(project: Project): T {
-    JavaEnvironment.checkJavaSource(project)
-    JavaEnvironment.JAVA_SOURCE[project]!!.runUserActionTask(this, true)
-    
-    return this
-}
+fun <T : Task<CompilationController>> T.execute(project: Project): T = JavaTaskExecutor.execute(project, this)
+
+fun <T : Task<CompilationController>> T.submit(project: Project): Future<T> = JavaTaskExecutor.submit(project, this)
 
 fun CompilationController.toResolvedPhase(): JavaSource.Phase = this.toPhase(JavaSource.Phase.ELEMENTS_RESOLVED)
 
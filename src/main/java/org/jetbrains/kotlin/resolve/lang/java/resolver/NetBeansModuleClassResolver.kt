@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.resolve.lang.java.resolver
+
+import org.jetbrains.kotlin.descriptors.ClassDescriptor
+import org.jetbrains.kotlin.load.java.lazy.ModuleClassResolver
+import org.jetbrains.kotlin.load.java.structure.JavaClass
+import org.jetbrains.kotlin.resolve.jvm.JavaDescriptorResolver
+import org.jetbrains.kotlin.resolve.lang.java.isBinary
+import org.jetbrains.kotlin.resolve.lang.java.structure.NetBeansJavaClass
+import org.netbeans.api.project.Project
+
+/**
+ * Resolves classes from binary roots with the shared dependencies resolver 
+ * and classes from project sources with the resolver of the source module.
+ */
+class NetBeansModuleClassResolver(private val project: Project) : ModuleClassResolver {
+
+    lateinit var compiledCodeResolver: JavaDescriptorResolver
+    var sourceCodeResolver: JavaDescriptorResolver? = null
+
+    override fun resolveClass(javaClass: JavaClass): ClassDescriptor? {
+        val sourceResolver = sourceCodeResolver
+        if (sourceResolver != null && javaClass is NetBeansJavaClass && !javaClass.elementHandle.isBinary(project)) {
+            return sourceResolver.resolveClass(javaClass)
+        }
+        
+        return compiledCodeResolver.resolveClass(javaClass)
+    }
+
+}
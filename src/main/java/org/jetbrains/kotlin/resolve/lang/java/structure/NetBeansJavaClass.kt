@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.resolve.lang.java.structure
 
 import javax.lang.model.element.ElementKind
 import org.jetbrains.kotlin.descriptors.Visibility
+import org.jetbrains.kotlin.load.java.JavaVisibilities
 import org.jetbrains.kotlin.load.java.structure.JavaClass
 import org.jetbrains.kotlin.load.java.structure.JavaClassifierType
 import org.jetbrains.kotlin.load.java.structure.JavaConstructor
@@ -25,6 +26,8 @@ import org.jetbrains.kotlin.load.java.structure.JavaField
 import org.jetbrains.kotlin.load.java.structure.JavaMethod
 import org.jetbrains.kotlin.load.java.structure.JavaTypeParameter
 import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.name.SpecialNames
 import org.netbeans.api.project.Project
 import org.jetbrains.kotlin.resolve.lang.java.*
 import javax.lang.model.element.TypeElement
@@ -38,35 +41,38 @@ import javax.lang.model.element.TypeElement
 class NetBeansJavaClass(elementHandle: ElemHandle<TypeElement>, project: Project) :
         NetBeansJavaClassifier<TypeElement>(elementHandle, project), JavaClass {
 
-    override val name 
-        get() = elementHandle.getName(project)
+    private val structure
+        get() = elementHandle.getStructure(project, this)
+
+    override val name: Name
+        get() = structure?.name ?: SpecialNames.safeIdentifier(elementHandle.qualifiedName)
 
     override val fqName: FqName?
         get() = elementHandle.getFqName()
 
     override val supertypes: Collection<JavaClassifierType>
-        get() = elementHandle.getSuperTypes(project)
+        get() = structure?.supertypes ?: emptyList()
 
     override val innerClasses: Collection<JavaClass>
-        get() = elementHandle.getInnerClasses(project)
+        get() = structure?.innerClasses ?: emptyList()
 
     override val outerClass: JavaClass?
-        get() = elementHandle.getOuterClass(project)
+        get() = structure?.outerClass
 
     override val methods: Collection<JavaMethod>
-        get() = elementHandle.getMethods(project, this)
+        get() = structure?.methods ?: emptyList()
 
     override val constructors: Collection<JavaConstructor>
-        get() = elementHandle.getConstructors(project, this)
+        get() = structure?.constructors ?: emptyList()
 
     override val fields: Collection<JavaField>
-        get() = elementHandle.getFields(project, this)
+        get() = structure?.fields ?: emptyList()
 
     override val visibility: Visibility
-        get() = elementHandle.getVisibility(project)
+        get() = structure?.visibility ?: JavaVisibilities.PACKAGE_VISIBILITY
 
     override val typeParameters: List<JavaTypeParameter>
-        get() = elementHandle.getTypeParameters(project)
+        get() = structure?.typeParameters ?: emptyList()
 
     override val isInterface 
         get() = elementHandle.kind == ElementKind.INTERFACE
@@ -75,11 +81,11 @@ class NetBeansJavaClass(elementHandle: ElemHandle<TypeElement>, project: Project
     override val isEnum 
         get() = elementHandle.kind == ElementKind.ENUM
     override val isAbstract 
-        get() = elementHandle.isAbstract(project)
+        get() = structure?.isAbstract ?: false
     override val isStatic 
-        get() = elementHandle.isStatic(project)
+        get() = structure?.isStatic ?: false
     override val isFinal 
-        get() = elementHandle.isFinal(project)
+        get() = structure?.isFinal ?: false
 
     override val lightClassOriginKind = null
 
@@ -16,32 +16,29 @@
  *******************************************************************************/
 package org.jetbrains.kotlin.search
 
-import java.io.File
 import org.jetbrains.kotlin.navigation.netbeans.openFileAtOffset
 import org.jetbrains.kotlin.utils.ProjectUtils
 import org.netbeans.api.project.ui.OpenProjects
 import org.netbeans.spi.quicksearch.SearchProvider
 import org.netbeans.spi.quicksearch.SearchRequest
 import org.netbeans.spi.quicksearch.SearchResponse
-import org.openide.filesystems.FileUtil
 
 class GoToKotlinTypeProvider : SearchProvider {
 
     override fun evaluate(request: SearchRequest, response: SearchResponse) {
-        OpenProjects.getDefault().openProjects
-                .flatMap { KotlinTypeSearcher.searchDeclaration(it, request.text) }
-                .forEach {
-                    val file = it.first
-                    it.second.forEach {
-                        val html = "${it.name} (${file.packageFqName.asString()})"
-                        response.addResult(action@{
-                            val f = File(file.virtualFile.path)
-                            val fo = FileUtil.toFileObject(f) ?: return@action
-
-                            val doc = ProjectUtils.getDocumentFromFileObject(fo) ?: return@action
-                            openFileAtOffset(doc, it.textRange.startOffset)
-                        }, html)
-                    }
-                }
+        val text = request.text?.trim() ?: return
+        
+        for (project in OpenProjects.getDefault().openProjects) {
+            val proceed = KotlinTypeSearcher.searchDeclarations(project, text) {
+                val html = "${it.name} (${it.fqName.substringBeforeLast('.', "")})"
+                response.addResult(action@{
+                    val fo = it.file ?: return@action
+                    
+                    val doc = ProjectUtils.getDocumentFromFileObject(fo) ?: return@action
+                    openFileAtOffset(doc, it.offset)
+                }, html)
+            }
+            if (!proceed) return
+        }
     }
-}
\ No newline at end of file
+}
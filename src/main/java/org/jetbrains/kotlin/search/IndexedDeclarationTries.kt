@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.search
+
+import org.jetbrains.kotlin.indexer.IndexedDeclaration
+import org.jetbrains.kotlin.indexer.IndexedDeclarationKind
+import org.jetbrains.kotlin.indexer.KotlinIndex
+import org.jetbrains.kotlin.utils.ProjectUtils
+import org.netbeans.api.project.Project
+
+/**
+ * Prefix trees of indexed declarations of [kinds], one per project. A tree is built from
+ * the Kotlin index once and then updated file by file when a file is indexed again.
+ *
+ * Files are passed to the index listener when their documents are added, before the
+ * indexing transaction is committed, so a tree built in between would read the previous
+ * declarations of the file from the index. Declarations passed to the listener are
+ * therefore kept until the index returns the same ones and they replace what the index
+ * returns for their file. Both happen under the lock of this object.
+ */
+class IndexedDeclarationTries(private val kinds: Set<IndexedDeclarationKind>) {
+
+    private class ProjectDeclarations(val trie: NameTrie<IndexedDeclaration>,
+                                      val files: HashMap<String, List<IndexedDeclaration>>) {
+        
+        fun setFile(key: String, declarations: List<IndexedDeclaration>) {
+            files.remove(key)?.forEach { trie.remove(it.name, it) }
+            if (declarations.isEmpty()) return
+            
+            files.put(key, declarations)
+            declarations.forEach { trie.add(it.name, it) }
+        }
+    }
+    
+    private class IndexedFile(val project: Project?, val declarations: List<IndexedDeclaration>)
+
+    private val projects = hashMapOf<Project, ProjectDeclarations>()
+    private val indexedFiles = hashMapOf<String, IndexedFile>()
+
+    init {
+        KotlinIndex.addListener { key, declarations -> fileIndexed(key, declarations) }
+    }
+
+    private fun fileIndexed(key: String, declarations: List<IndexedDeclaration>?) {
+        val filtered = declarations?.filter { it.kind in kinds } ?: emptyList()
+        val project = filtered.firstOrNull()?.file?.let { ProjectUtils.getKotlinProjectForFileObject(it) }
+
+        updateFile(key, IndexedFile(project, filtered))
+    }
+
+    @Synchronized private fun updateFile(key: String, file: IndexedFile) {
+        indexedFiles.put(key, file)
+        projects.forEach { (project, projectDeclarations) -> projectDeclarations.setFile(key, file.declarationsOf(project)) }
+    }
+    
+    private fun IndexedFile.declarationsOf(project: Project) = 
+            if (this.project == project) declarations else emptyList()
+
+    private fun getDeclarations(project: Project) = projects.getOrPut(project) {
+        val projectDeclarations = ProjectDeclarations(NameTrie(), hashMapOf())
+        val indexed = KotlinIndex.findAllDeclarationsByFile(project, kinds)
+        
+        indexed.forEach { (key, declarations) -> projectDeclarations.setFile(key, declarations) }
+        indexedFiles.entries.removeAll { (key, file) ->
+            val declarations = file.declarationsOf(project)
+            projectDeclarations.setFile(key, declarations)
+            
+            // the index stores the file already
+            (file.project == project || file.project == null) && declarations.toSet() == indexed[key].orEmpty().toSet()
+        }
+
+        projectDeclarations
+    }
+
+    /**
+     * Runs [action] on the prefix tree of [project] declarations. The tree is not updated
+     * while [action] runs.
+     */
+    @Synchronized fun <R> withTrie(project: Project, action: (NameTrie<IndexedDeclaration>) -> R): R =
+            action(getDeclarations(project).trie)
+
+    @Synchronized fun invalidate(project: Project) {
+        projects.remove(project)
+    }
+
+}
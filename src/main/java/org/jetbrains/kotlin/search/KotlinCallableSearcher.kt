@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.search
+
+import com.intellij.openapi.vfs.VirtualFile
+import java.io.IOException
+import org.jetbrains.kotlin.indexer.IndexedDeclaration
+import org.jetbrains.kotlin.indexer.IndexedDeclarationKind
+import org.jetbrains.kotlin.load.kotlin.ModuleMapping
+import org.jetbrains.kotlin.log.KotlinLogger
+import org.jetbrains.kotlin.model.KotlinEnvironment
+import org.jetbrains.kotlin.serialization.Flags
+import org.jetbrains.kotlin.serialization.ProtoBuf
+import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil
+import org.jetbrains.org.objectweb.asm.AnnotationVisitor
+import org.jetbrains.org.objectweb.asm.ClassReader
+import org.jetbrains.org.objectweb.asm.ClassVisitor
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.netbeans.api.project.Project
+
+/**
+ * Prefix index of top level functions and properties which can be imported. Callables of 
+ * project sources come from the Kotlin index through [IndexedDeclarationTries], callables 
+ * of libraries are read once from the Kotlin metadata of the file facades listed in their 
+ * .kotlin_module files.
+ */
+object KotlinCallableSearcher {
+    
+    private val sourceCallables = IndexedDeclarationTries(setOf(IndexedDeclarationKind.FUNCTION, IndexedDeclarationKind.PROPERTY))
+    private val libraryCallables = hashMapOf<Project, Lazy<NameTrie<IndexedDeclaration>>>()
+    
+    private fun searchSources(project: Project, prefix: String, consumer: (IndexedDeclaration) -> Boolean) =
+            sourceCallables.withTrie(project) { it.forEachWithPrefix(prefix, consumer) }
+    
+    @Synchronized private fun getLibraryCallables(project: Project) = 
+            libraryCallables.getOrPut(project) { lazy { collectLibraryCallables(project) } }
+    
+    @Synchronized fun invalidate(project: Project) {
+        sourceCallables.invalidate(project)
+        libraryCallables.remove(project)
+    }
+    
+    /**
+     * Passes top level functions and properties of the [project] sources and libraries whose 
+     * names start with [prefix] to [consumer] until it returns false. Returns false if the search 
+     * was stopped by [consumer].
+     */
+    fun searchCallables(project: Project, prefix: String, consumer: (IndexedDeclaration) -> Boolean): Boolean {
+        if (!searchSources(project, prefix, consumer)) return false
+        
+        // library callables don't change after they are read, so they are traversed without locking
+        return getLibraryCallables(project).value.forEachWithPrefix(prefix, consumer)
+    }
+    
+    fun findCallables(project: Project, name: String): List<IndexedDeclaration> {
+        val callables = arrayListOf<IndexedDeclaration>()
+        searchCallables(project, name) { 
+            if (it.name == name) callables.add(it)
+            true
+        }
+        
+        return callables
+    }
+    
+    private fun collectLibraryCallables(project: Project): NameTrie<IndexedDeclaration> {
+        val startTime = System.nanoTime()
+        val trie = NameTrie<IndexedDeclaration>()
+        val added = hashSetOf<String>()
+        
+        KotlinEnvironment.getEnvironment(project).roots
+                .map { it.file }
+                .forEach { root ->
+                    val metaInf = root.findChild("META-INF") ?: return@forEach
+                    metaInf.children
+                            .filter { it.name.endsWith(ModuleMapping.MAPPING_FILE_EXT) && it.isValid }
+                            .forEach { moduleFile -> 
+                                readModuleCallables(root, moduleFile).forEach { 
+                                    if (added.add("${it.kind.field} ${it.fqName}")) trie.add(it.name, it) 
+                                }
+                            }
+                }
+        KotlinLogger.INSTANCE.logInfo("Library callables reading: ${(System.nanoTime() - startTime)} ns")
+        
+        return trie
+    }
+    
+    private fun readModuleCallables(root: VirtualFile, moduleFile: VirtualFile): List<IndexedDeclaration> {
+        val callables = arrayListOf<IndexedDeclaration>()
+        try {
+            val mapping = ModuleMapping.create(moduleFile.contentsToByteArray(), moduleFile.toString())
+            mapping.packageFqName2Parts.forEach { (packageFqName, packageParts) ->
+                packageParts.parts.forEach { part ->
+                    val classFile = root.findFileByRelativePath("$part.class") ?: return@forEach
+                    readFacadeCallables(classFile.contentsToByteArray(), packageFqName, callables)
+                }
+            }
+        } catch (ex: IOException) {
+            KotlinLogger.INSTANCE.logException("Couldn't read Kotlin module $moduleFile", ex)
+        }
+        
+        return callables
+    }
+    
+    private fun readFacadeCallables(classBytes: ByteArray, 
+                                    packageFqName: String, 
+                                    callables: MutableList<IndexedDeclaration>) {
+        val metadata = KotlinMetadataVisitor()
+        ClassReader(classBytes).accept(metadata, ClassReader.SKIP_CODE or ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES)
+        
+        if (metadata.kind != FILE_FACADE_KIND && metadata.kind != MULTIFILE_CLASS_PART_KIND) return
+        val data = metadata.data ?: return
+        val strings = metadata.strings ?: return
+        
+        val (nameResolver, packageProto) = JvmProtoBufUtil.readPackageDataFrom(data, strings)
+        
+        fun addCallable(kind: IndexedDeclarationKind, flags: Int, nameIndex: Int) {
+            if (Flags.VISIBILITY.get(flags) != ProtoBuf.Visibility.PUBLIC) return
+            
+            val name = nameResolver.getName(nameIndex).asString()
+            val fqName = if (packageFqName.isEmpty()) name else "$packageFqName.$name"
+            callables.add(IndexedDeclaration(kind, name, fqName, null, 0, null))
+        }
+        
+        packageProto.functionList.forEach { addCallable(IndexedDeclarationKind.FUNCTION, it.flags, it.name) }
+        packageProto.propertyList.forEach { addCallable(IndexedDeclarationKind.PROPERTY, it.flags, it.name) }
+    }
+    
+    private const val METADATA_DESC = "Lkotlin/Metadata;"
+    private const val FILE_FACADE_KIND = 2
+    private const val MULTIFILE_CLASS_PART_KIND = 5
+    
+    /**
+     * Reads kind and serialized data of the kotlin.Metadata annotation of a class.
+     */
+    private class KotlinMetadataVisitor : ClassVisitor(Opcodes.ASM5) {
+        
+        var kind: Int? = null
+        var data: Array<String>? = null
+        var strings: Array<String>? = null
+        
+        override fun visitAnnotation(desc: String, visible: Boolean): AnnotationVisitor? {
+            if (desc != METADATA_DESC) return null
+            
+            return object : AnnotationVisitor(Opcodes.ASM5) {
+                override fun visit(name: String?, value: Any?) {
+                    if (name == "k") kind = value as? Int
+                }
+                
+                override fun visitArray(name: String?): AnnotationVisitor = object : AnnotationVisitor(Opcodes.ASM5) {
+                    val values = arrayListOf<String>()
+                    
+                    override fun visit(elementName: String?, value: Any?) {
+                        if (value is String) values.add(value)
+                    }
+                    
+                    override fun visitEnd() {
+                        when (name) {
+                            "d1" -> data = values.toTypedArray()
+                            "d2" -> strings = values.toTypedArray()
+                        }
+                    }
+                }
+            }
+        }
+        
+    }
+    
+}
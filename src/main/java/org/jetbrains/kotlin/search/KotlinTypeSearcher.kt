@@ -16,23 +16,34 @@
  *******************************************************************************/
 package org.jetbrains.kotlin.search
 
-import org.jetbrains.kotlin.psi.KtFile
-import org.jetbrains.kotlin.utils.ProjectUtils
+import org.jetbrains.kotlin.indexer.IndexedDeclaration
+import org.jetbrains.kotlin.indexer.IndexedDeclarationKind
 import org.netbeans.api.project.Project
 
 object KotlinTypeSearcher {
     
-    private fun findDeclarationsInFile(ktFile: KtFile, 
-                                       fqName: String) = ktFile.declarations
-            .filter { it.name?.contains(fqName) == true }
+    private val typeNames = IndexedDeclarationTries(setOf(IndexedDeclarationKind.CLASS, IndexedDeclarationKind.TYPEALIAS))
     
-    fun searchDeclaration(project: Project, fqName: String) = ProjectUtils.getSourceFilesWithDependencies(project)
-            .mapNotNull {
-                val declarationsInFile = findDeclarationsInFile(it, fqName)
-                if (declarationsInFile.isNotEmpty()) {
-                    it to findDeclarationsInFile(it, fqName)
-                }
-                else null
+    fun invalidate(project: Project) = typeNames.invalidate(project)
+    
+    /**
+     * Passes classes, objects and type aliases of the [project] matching [pattern] to [consumer]
+     * until it returns false. Names starting with [pattern] come first, then camel hump matches.
+     * Returns false if the search was stopped by [consumer].
+     */
+    fun searchDeclarations(project: Project, pattern: String, consumer: (IndexedDeclaration) -> Boolean): Boolean {
+        if (pattern.isEmpty()) return true
+        
+        return typeNames.withTrie(project) { trie ->
+            if (!trie.forEachWithPrefix(pattern, consumer)) return@withTrie false
+            if (!CamelHumpMatcher.isCamelHumpPattern(pattern)) return@withTrie true
+            
+            trie.forEachWithPrefix(pattern.substring(0, 1)) {
+                if (!it.name.startsWith(pattern, ignoreCase = true) && CamelHumpMatcher.matches(it.name, pattern)) {
+                    consumer(it)
+                } else true
             }
+        }
+    }
     
-}
\ No newline at end of file
+}
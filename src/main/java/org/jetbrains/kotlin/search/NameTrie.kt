@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.search
+
+import java.util.ArrayDeque
+
+/**
+ * Case insensitive prefix tree of declaration names.
+ */
+class NameTrie<T> {
+
+    private class Node<T> {
+        val children = hashMapOf<Char, Node<T>>()
+        val values = arrayListOf<T>()
+    }
+
+    private val root = Node<T>()
+
+    var size = 0
+        private set
+
+    fun add(name: String, value: T) {
+        var node = root
+        name.forEach { node = node.children.getOrPut(it.toLowerCase()) { Node() } }
+        node.values.add(value)
+        size++
+    }
+
+    fun remove(name: String, value: T): Boolean {
+        var node = root
+        name.forEach { node = node.children[it.toLowerCase()] ?: return false }
+        if (!node.values.remove(value)) return false
+        
+        size--
+        return true
+    }
+
+    /**
+     * Passes values whose names start with [prefix] to [consumer], shorter names first,
+     * until [consumer] returns false. Returns false if the traversal was stopped.
+     */
+    fun forEachWithPrefix(prefix: String, consumer: (T) -> Boolean): Boolean {
+        var node = root
+        prefix.forEach { node = node.children[it.toLowerCase()] ?: return true }
+
+        val queue = ArrayDeque<Node<T>>()
+        queue.add(node)
+        while (queue.isNotEmpty()) {
+            val current = queue.poll()
+            current.values.forEach { if (!consumer(it)) return false }
+            queue.addAll(current.children.values)
+        }
+
+        return true
+    }
+
+}
+
+object CamelHumpMatcher {
+
+    /**
+     * Checks that each hump of [pattern] (a part starting with an upper case letter)
+     * is a prefix of a hump of [name], in the same order. The first hump has to match
+     * the beginning of the name, e.g. "NPE" and "NuPoEx" match "NullPointerException".
+     */
+    fun matches(name: String, pattern: String): Boolean {
+        if (pattern.isEmpty()) return true
+        return matches(name, 0, splitHumps(pattern), 0)
+    }
+
+    fun isCamelHumpPattern(pattern: String) = pattern.drop(1).any { it.isUpperCase() }
+
+    private fun matches(name: String, nameStart: Int, humps: List<String>, humpIndex: Int): Boolean {
+        if (humpIndex == humps.size) return true
+
+        val hump = humps[humpIndex]
+        if (humpIndex == 0) {
+            return name.startsWith(hump, ignoreCase = true) && matches(name, hump.length, humps, 1)
+        }
+
+        for (start in nameStart..name.length - hump.length) {
+            if (!name[start].isUpperCase() && !name[start].isDigit()) continue
+            if (name.regionMatches(start, hump, 0, hump.length) && matches(name, start + hump.length, humps, humpIndex + 1)) {
+                return true
+            }
+        }
+
+        return false
+    }
+
+    private fun splitHumps(pattern: String): List<String> {
+        val humps = arrayListOf<String>()
+        var start = 0
+        for (i in 1 until pattern.length) {
+            if (pattern[i].isUpperCase()) {
+                humps.add(pattern.substring(start, i))
+                start = i
+            }
+        }
+        humps.add(pattern.substring(start))
+
+        return humps
+    }
+
+}
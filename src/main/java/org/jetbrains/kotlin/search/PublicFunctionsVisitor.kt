@@ -1,34 +0,0 @@
-/*******************************************************************************
- * Copyright 2000-2016 JetBrains s.r.o.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- *
- *******************************************************************************/
-package org.jetbrains.kotlin.search
-
-import org.jetbrains.kotlin.psi.*
-
-class PublicFunctionsVisitor(private val predicate: (String) -> Boolean) : KtVisitorVoid() {
-
-    val publicFunctions = hashSetOf<String>()
-
-    override fun visitNamedFunction(function: KtNamedFunction) {
-        val functionName = function.name ?: return
-        val fqName = function.fqName?.asString() ?: return
-        
-        if (predicate(functionName) && function.modifierList == null) {
-            publicFunctions.add(fqName)
-        }
-    }
-
-}
\ No newline at end of file
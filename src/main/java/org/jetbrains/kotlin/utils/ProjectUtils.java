@@ -227,6 +227,18 @@ public class ProjectUtils {
         return dataObject;
     }
     
+    /**
+     * Returns true if the document of the file is loaded, which is the case while it is open in an editor.
+     */
+    public static boolean isDocumentLoaded(FileObject file) {
+        try {
+            EditorCookie editorCookie = DataObject.find(file).getLookup().lookup(EditorCookie.class);
+            return editorCookie != null && editorCookie.getDocument() != null;
+        } catch (DataObjectNotFoundException ex) {
+            return false;
+        }
+    }
+    
     public static StyledDocument getDocumentFromFileObject(FileObject file) throws IOException{
         DataObject dataObject = null;
         try {
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package org.jetbrains.kotlin.utils
+
+import org.jetbrains.kotlin.psi.KtDeclaration
+
+/**
+ * Returns the text of the declaration with the text of each of its [members] replaced by 
+ * its length, so edits inside the members keep the skeleton of the declaration as long 
+ * as offsets in the rest of its text stay the same.
+ */
+fun KtDeclaration.skeletonText(members: Collection<KtDeclaration>): String {
+    if (members.isEmpty()) return text
+    
+    val text = text
+    val start = textRange.startOffset
+    val skeleton = StringBuilder()
+    var offset = 0
+    for (member in members.sortedBy { it.textRange.startOffset }) {
+        val memberStart = member.textRange.startOffset - start
+        skeleton.append(text, offset, memberStart).append('\u0000').append(member.textLength).append('\u0000')
+        offset = memberStart + member.textLength
+    }
+    skeleton.append(text, offset, text.length)
+    
+    return skeleton.toString()
+}
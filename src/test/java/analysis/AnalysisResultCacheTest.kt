@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package analysis
+
+import org.jetbrains.kotlin.builder.KotlinPsiManager
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParser
+import org.jetbrains.kotlin.diagnostics.Errors
+import utils.*
+
+class AnalysisResultCacheTest : KotlinTestCase("Analysis result cache test", "analysisCache") {
+
+    private val provider by lazy { dir.getFileObject("provider.kt") }
+    private val user by lazy { KotlinPsiManager.getParsedFile(dir.getFileObject("user.kt"))!! }
+
+    fun testResultIsReusedWhileSourcesAreUnchanged() {
+        val result = KotlinParser.getAnalysisResult(user, project)
+        
+        assertSame(result, KotlinParser.getAnalysisResult(user, project))
+    }
+    
+    fun testBodyEditOfOtherFileKeepsResult() {
+        val result = KotlinParser.getAnalysisResult(user, project)
+        
+        val text = provider.asText()
+        KotlinPsiManager.parseTextForDiagnostic(text.replace("return 1", "return 2"), provider)
+        try {
+            assertSame(result, KotlinParser.getAnalysisResult(user, project))
+        } finally {
+            KotlinPsiManager.parseTextForDiagnostic(text, provider)
+        }
+    }
+    
+    fun testResultsOfSeveralFilesAreKept() {
+        val providerFile = KotlinPsiManager.getParsedFile(provider)!!
+        KotlinParser.getAnalysisResult(user, project)
+        KotlinParser.getAnalysisResult(providerFile, project)
+        
+        assertNotNull(KotlinParser.getCache(project).get(user))
+        assertNotNull(KotlinParser.getCache(project).get(providerFile))
+    }
+    
+    fun testEditOfOtherFileInvalidatesResult() {
+        KotlinParser.getAnalysisResult(user, project)
+        assertNotNull(KotlinParser.getCache(project).get(user))
+        
+        val text = provider.asText()
+        KotlinPsiManager.parseTextForDiagnostic(text.replace("provide()", "provided()"), provider)
+        try {
+            assertNull(KotlinParser.getCache(project).get(user))
+            
+            val diagnostics = KotlinParser.getAnalysisResult(user, project)!!.analysisResult.bindingContext.diagnostics
+            assertTrue(diagnostics.all().any { it.factory == Errors.UNRESOLVED_REFERENCE })
+        } finally {
+            KotlinPsiManager.parseTextForDiagnostic(text, provider)
+        }
+    }
+    
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package analysis
+
+import com.intellij.psi.util.PsiTreeUtil
+import org.jetbrains.kotlin.builder.KotlinPsiManager
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor
+import org.jetbrains.kotlin.diagnostics.Errors
+import org.jetbrains.kotlin.psi.KtClass
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtNameReferenceExpression
+import org.jetbrains.kotlin.resolve.BindingContext
+import org.jetbrains.kotlin.resolve.KotlinAnalyzer
+import utils.*
+
+class AnalysisSessionTest : KotlinTestCase("Analysis session test", "analysisSession") {
+
+    private val service by lazy { dir.getFileObject("service.kt") }
+    private val client by lazy { dir.getFileObject("client.kt") }
+    
+    private fun serviceDescriptor(): DeclarationDescriptor {
+        val ktFile = KotlinPsiManager.getParsedFile(service)!!
+        val ktClass = PsiTreeUtil.findChildOfType(ktFile, KtClass::class.java)!!
+        
+        return KotlinAnalyzer.analyzeFile(project, ktFile).analysisResult.bindingContext[BindingContext.CLASS, ktClass]!!
+    }
+    
+    private fun referencedService(ktFile: KtFile): DeclarationDescriptor {
+        val reference = PsiTreeUtil.findChildrenOfType(ktFile, KtNameReferenceExpression::class.java)
+                .first { it.getReferencedName() == "SessionService" }
+        val bindingContext = KotlinAnalyzer.analyzeFile(project, ktFile).analysisResult.bindingContext
+        
+        return bindingContext[BindingContext.REFERENCE_TARGET, reference]!!.containingDeclaration!!
+    }
+    
+    fun testDescriptorsOfOtherFilesAreReusedAfterEdit() {
+        val text = client.asText()
+        val edited = KotlinPsiManager.parseTextForDiagnostic(text.replace("+ 1", "+ 2"), client)!!
+        try {
+            val descriptor = serviceDescriptor()
+            assertSame(descriptor, referencedService(edited))
+            
+            val editedAgain = KotlinPsiManager.parseTextForDiagnostic(text.replace("+ 1", "+ 3"), client)!!
+            assertSame(descriptor, referencedService(editedAgain))
+            assertSame(descriptor, serviceDescriptor())
+        } finally {
+            KotlinPsiManager.parseTextForDiagnostic(text, client)
+        }
+    }
+    
+    fun testEditOfUsedDeclarationIsSeenByOtherFiles() {
+        val text = service.asText()
+        KotlinPsiManager.parseTextForDiagnostic(text.replace("fun run()", "fun runs()"), service)
+        try {
+            val ktFile = KotlinPsiManager.getParsedFile(client)!!
+            val diagnostics = KotlinAnalyzer.analyzeFile(project, ktFile).analysisResult.bindingContext.diagnostics
+            
+            assertTrue(diagnostics.all().any { it.factory == Errors.UNRESOLVED_REFERENCE })
+        } finally {
+            KotlinPsiManager.parseTextForDiagnostic(text, service)
+        }
+    }
+    
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package analysis
+
+import org.jetbrains.kotlin.resolve.KotlinPackagePartProvider
+import utils.KotlinTestCase
+
+class PackagePartProviderTest : KotlinTestCase("Package part provider test", "main") {
+    
+    fun testProviderIsSharedPerProject() {
+        assertSame(KotlinPackagePartProvider.getInstance(project), KotlinPackagePartProvider.getInstance(project))
+    }
+    
+    fun testInvalidatedProviderIsRecreated() {
+        val provider = KotlinPackagePartProvider.getInstance(project)
+        KotlinPackagePartProvider.invalidate(project)
+        
+        val newProvider = KotlinPackagePartProvider.getInstance(project)
+        assertNotSame(provider, newProvider)
+        assertEquals(provider.findPackageParts("kotlin.collections"), newProvider.findPackageParts("kotlin.collections"))
+    }
+    
+    fun testPackagePartsAreMemoized() {
+        val provider = KotlinPackagePartProvider.getInstance(project)
+        val parts = provider.findPackageParts("kotlin.collections")
+        
+        assertFalse(parts.isEmpty())
+        assertSame(parts, provider.findPackageParts("kotlin.collections"))
+    }
+    
+    fun testMetadataPartsAreMemoized() {
+        val provider = KotlinPackagePartProvider.getInstance(project)
+        
+        assertSame(provider.findMetadataPackageParts("kotlin.collections"), 
+                provider.findMetadataPackageParts("kotlin.collections"))
+    }
+    
+    fun testMissingPackageHasNoParts() {
+        assertTrue(KotlinPackagePartProvider.getInstance(project).findPackageParts("no.such.pack").isEmpty())
+    }
+    
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package binaryclasses
+
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+import java.util.jar.JarOutputStream
+import java.util.zip.ZipEntry
+import javax.lang.model.element.ElementKind
+import org.jetbrains.kotlin.resolve.lang.java.BinaryClassesCache
+import org.jetbrains.kotlin.resolve.lang.java.JarClasses
+import org.netbeans.junit.NbTestCase
+
+class BinaryClassesCacheTest : NbTestCase("Binary classes cache test") {
+    
+    private val jar by lazy { createJar(java.lang.Runnable::class.java, java.lang.Thread.State::class.java,
+            java.lang.Deprecated::class.java, java.util.ArrayList::class.java) }
+    
+    private fun createJar(vararg classes: Class<*>): File {
+        val jar = File.createTempFile("classes", ".jar")
+        jar.deleteOnExit()
+        
+        JarOutputStream(FileOutputStream(jar)).use { output ->
+            classes.forEach { javaClass ->
+                val name = javaClass.name.replace('.', '/') + ".class"
+                output.putNextEntry(ZipEntry(name))
+                javaClass.getResourceAsStream("/$name").use { it.copyTo(output) }
+                output.closeEntry()
+            }
+        }
+        
+        return jar
+    }
+    
+    private fun write(classes: JarClasses): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { BinaryClassesCache.writeClasses(classes, it) }
+        
+        return bytes.toByteArray()
+    }
+    
+    fun testReadJar() {
+        val classes = BinaryClassesCache.readJar(jar)!!
+        
+        assertEquals(4, classes.size)
+        assertEquals(ElementKind.INTERFACE, classes.getKind("java.lang.Runnable"))
+        assertEquals(ElementKind.ENUM, classes.getKind("java.lang.Thread\$State"))
+        assertEquals(ElementKind.ANNOTATION_TYPE, classes.getKind("java.lang.Deprecated"))
+        assertEquals(ElementKind.CLASS, classes.getKind("java.util.ArrayList"))
+        assertEquals(setOf("Runnable", "Deprecated"), classes.getClassNames("java.lang").toSet())
+    }
+    
+    fun testRoundTrip() {
+        val classes = BinaryClassesCache.readJar(jar)!!
+        val read = BinaryClassesCache.readClasses(jar, ByteBuffer.wrap(write(classes)))!!
+        
+        assertEquals(classes.timestamp, read.timestamp)
+        assertEquals(classes.size, read.size)
+        classes.forEach { name, kind -> assertEquals(kind, read.getKind(name)) }
+        assertEquals(classes.getClassNames("java.util"), read.getClassNames("java.util"))
+    }
+    
+    fun testChangedJarIsNotRead() {
+        val changedJar = createJar(java.lang.Runnable::class.java)
+        val bytes = write(BinaryClassesCache.readJar(changedJar)!!)
+        
+        changedJar.setLastModified(changedJar.lastModified() - 10000)
+        assertNull(BinaryClassesCache.readClasses(changedJar, ByteBuffer.wrap(bytes)))
+    }
+    
+    fun testOtherFormatVersionIsNotRead() {
+        val bytes = write(BinaryClassesCache.readJar(jar)!!)
+        bytes[7]++
+        
+        assertNull(BinaryClassesCache.readClasses(jar, ByteBuffer.wrap(bytes)))
+    }
+    
+}
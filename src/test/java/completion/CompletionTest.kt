@@ -3,6 +3,7 @@ package completion
 import utils.*
 import org.jetbrains.kotlin.completion.*
 import org.jetbrains.kotlin.builder.KotlinPsiManager
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParser
 import org.jetbrains.kotlin.resolve.KotlinAnalyzer
 import org.jetbrains.kotlin.utils.ProjectUtils
 
@@ -68,5 +69,18 @@ class CompletionTest : KotlinTestCase("Completion test", "completion") {
     fun testNonImported() = doTest("checkUnimported.kt", listOf("completion.pack.function1", "completion.pack.function2"))
 
     fun testNonImportedPrivate() = doTest("checkNonImportedPrivate.kt")
+    
+    fun testInBlockBodyWithEditorAnalysis() {
+        val doc = getDocumentForFileObject(dir, "checkInBlockBody.kt")
+        val ktFile = KotlinPsiManager.getParsedFile(ProjectUtils.getFileObjectForDocument(doc))!!
+        
+        // completion resolves a copy of the body on top of the analysis of the editor
+        val result = KotlinParser.getAnalysisResult(ktFile, project)!!
+        val completions = createProposals(doc, getCaret(doc), result, "").map { it.sortText }
+        
+        assertTrue(completions.containsAll(listOf("local", "parameter", "checkInBlockBody()")))
+        assertFalse("later" in completions)
+        assertSame(ktFile, KotlinParser.file)
+    }
         
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package diagnostics
+
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.SortedErrors
+import org.netbeans.junit.NbTestCase
+import org.netbeans.modules.csl.api.Error
+import org.netbeans.modules.csl.api.Severity
+import org.netbeans.modules.csl.spi.DefaultError
+
+class SortedErrorsTest : NbTestCase("Sorted errors test") {
+    
+    private fun error(start: Int, end: Int): Error = DefaultError("$start-$end", "", "", null, start, end, Severity.ERROR)
+    
+    private fun List<Error>.keys() = map { it.key }
+    
+    // a long error overlapping short ones after it, and errors with the same start
+    private val errors = SortedErrors(listOf(
+            error(20, 25), error(0, 100), error(10, 15), error(10, 12), error(40, 40), error(30, 35)))
+    
+    fun testErrorsAreSortedByStart() {
+        assertEquals(listOf(0, 10, 10, 20, 30, 40), errors.asList().map { it.startPosition })
+        assertEquals(6, errors.size)
+    }
+    
+    fun testOverlappingRanges() {
+        assertEquals(listOf("0-100", "20-25"), errors.errorsAt(22).keys())
+        assertEquals(listOf("0-100"), errors.errorsAt(50).keys())
+        assertEquals(listOf("0-100", "20-25", "30-35"), errors.errorsInRange(24, 31).keys())
+    }
+    
+    fun testSameStartRanges() {
+        assertEquals(setOf("0-100", "10-15", "10-12"), errors.errorsAt(10).keys().toSet())
+        assertEquals(setOf("0-100", "10-15"), errors.errorsAt(13).keys().toSet())
+    }
+    
+    fun testBoundsAreInclusive() {
+        assertEquals(listOf("0-100", "20-25"), errors.errorsAt(25).keys())
+        assertEquals(listOf("0-100", "20-25"), errors.errorsAt(20).keys())
+        assertEquals(listOf("0-100"), errors.errorsAt(100).keys())
+        assertEquals(emptyList<String>(), errors.errorsAt(101).keys())
+        assertEquals(emptyList<String>(), errors.errorsAt(-1).keys())
+    }
+    
+    fun testEmptyRangeIsFoundAtItsOffset() {
+        assertEquals(listOf("0-100", "40-40"), errors.errorsAt(40).keys())
+        assertEquals(listOf("0-100"), errors.errorsAt(41).keys())
+    }
+    
+    fun testNoErrors() {
+        val empty = SortedErrors(emptyList())
+        
+        assertEquals(0, empty.size)
+        assertTrue(empty.errorsAt(0).isEmpty())
+        assertTrue(empty.errorsInRange(0, Int.MAX_VALUE).isEmpty())
+    }
+    
+}
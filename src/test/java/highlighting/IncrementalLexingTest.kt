@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package highlighting
+
+import javax.swing.text.PlainDocument
+import org.jetbrains.kotlin.highlighter.TokenType
+import org.jetbrains.kotlin.highlighter.netbeans.KotlinTokenId
+import org.netbeans.api.lexer.Language
+import org.netbeans.api.lexer.TokenHierarchy
+import org.netbeans.junit.NbTestCase
+
+/**
+ * Checks that tokens relexed after a modification are the same as tokens of the whole
+ * modified text lexed from the start.
+ */
+class IncrementalLexingTest : NbTestCase("Incremental lexing test") {
+    
+    private val language = KotlinTokenId.getLanguage()
+    
+    private fun TokenHierarchy<*>.tokens(): List<Pair<String, String>> {
+        val sequence = tokenSequence(language)
+        val tokens = arrayListOf<Pair<String, String>>()
+        while (sequence.moveNext()) {
+            val token = sequence.token()
+            tokens.add(token.id().name() to token.text().toString())
+        }
+        
+        return tokens
+    }
+    
+    private fun doTest(text: String, replaced: String, replacement: String, occurrence: Int = 0) {
+        val document = PlainDocument()
+        document.putProperty(Language::class.java, language)
+        document.insertString(0, text, null)
+        
+        val hierarchy = TokenHierarchy.get(document)
+        // the whole text is lexed before the modification
+        hierarchy.tokens()
+        
+        var offset = text.indexOf(replaced)
+        repeat(occurrence) { offset = text.indexOf(replaced, offset + 1) }
+        assertTrue(offset >= 0)
+        
+        document.remove(offset, replaced.length)
+        document.insertString(offset, replacement, null)
+        
+        val expected = TokenHierarchy.create(document.getText(0, document.length), language).tokens()
+        assertEquals(expected, hierarchy.tokens())
+    }
+    
+    private fun String.keywords(): Int {
+        val tokens = TokenHierarchy.create(this, language).tokens()
+        return tokens.count { it.first == TokenType.KEYWORD.name }
+    }
+    
+    fun testAccessorBecomesKeyword() = doTest("val x = 1\n    get  x\n", "x\n", "= 2\n")
+    
+    fun testAccessorBecomesIdentifier() = doTest("val x = 1\n    get  = 2\n", "= 2", "x")
+    
+    fun testModifierBeforeDeclaration() = doTest("private\n\n    foo()\n", "foo()", "fun foo() {}")
+    
+    fun testModifierChain() = doTest("public open\n  inline\n   bar\n", "bar", "fun bar() {}")
+    
+    fun testConstructorBecomesKeyword() = doTest("class A constructor  x", "x", "(x: Int)")
+    
+    fun testEditInsideTemplateEntry() = doTest("val s = \"a \${b + c} d\"\nval t = 1\n", "b", "b.size")
+    
+    fun testEditAfterTemplate() = doTest("val s = \"a \$b \${c} d\"\nval t = 1\n", "val", "var", 1)
+    
+    fun testNestedBracesInTemplate() = doTest("val s = \"\${ { x } }\"\nfun f() {}\n", "x", "y")
+    
+    fun testEditInsideRawString() = doTest("val s = \"\"\"\n\$x\n  \${y}\n\"\"\"\nfun f() {}\n", "y", "y + 1")
+    
+    fun testRemovedClosingQuote() = doTest("val s = \"abc\"\nval t = 1\n", "\"\n", "\n")
+    
+    fun testAddedOpeningQuote() = doTest("val s = abc\nval t = \"x\"\n", "abc", "\"abc")
+    
+    fun testEditInsideKDoc() = doTest("/**\n * Text\n * @param x the value\n */\nfun f(x: Int) {}\n", "the value", "a [x]")
+    
+    fun testEditOfKDocTag() = doTest("/**\n * @param x the value\n */\nfun f(x: Int) {}\n", "param", "return")
+    
+    fun testRemovedKDocEnd() = doTest("/**\n * @param x\n */\nfun f(x: Int) {}\n", "*/", "")
+    
+    fun testKDocTagName() {
+        val tokens = TokenHierarchy.create("/**\n * @param x the value\n */\nfun f(x: Int) {}", language).tokens()
+        
+        assertTrue(tokens.contains(TokenType.KDOC_TAG_NAME.name to "@param"))
+        assertTrue(tokens.none { it.first == TokenType.MULTI_LINE_COMMENT.name && "@param" in it.second })
+    }
+    
+    fun testSoftKeywordsOfWholeText() {
+        assertEquals(2, "val x = 1\n    get() = 2\n".keywords())
+        assertEquals(2, "private fun foo() {}".keywords())
+    }
+    
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package hints
+
+import org.jetbrains.kotlin.builder.KotlinPsiManager
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParser
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
+import org.jetbrains.kotlin.hints.ElementHints
+import org.jetbrains.kotlin.hints.KotlinHintsCache
+import org.jetbrains.kotlin.hints.KotlinHintsComputer
+import org.jetbrains.kotlin.psi.KtDeclaration
+import org.jetbrains.kotlin.psi.KtElement
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtNamedDeclaration
+import org.jetbrains.kotlin.resolve.ProjectModificationStamps
+import org.netbeans.modules.parsing.api.Source
+import utils.*
+
+class HintsCacheTest : KotlinTestCase("Hints cache test", "hintsCache") {
+    
+    private class CountingComputer(parserResult: KotlinParserResult) : KotlinHintsComputer(parserResult) {
+        val computed = arrayListOf<String>()
+        
+        override fun computeHints(element: KtElement, skipped: Set<KtDeclaration>): ElementHints {
+            if (element is KtNamedDeclaration) computed.add(element.name!!)
+            return super.computeHints(element, skipped)
+        }
+    }
+    
+    private val file by lazy { dir.getFileObject("declarations.kt") }
+    
+    private fun computeHints(ktFile: KtFile): Set<String> {
+        // hints of files without loaded documents are dropped from the cache
+        getDocumentForFileObject(file)
+        
+        val parserResult = KotlinParserResult(Source.create(file).createSnapshot(), 
+                KotlinParser.getAnalysisResult(ktFile, project), ktFile, file, project)
+        val computer = CountingComputer(parserResult)
+        KotlinHintsCache.computeHints(parserResult, computer)
+        
+        return computer.computed.toSet()
+    }
+    
+    private fun doEditTest(oldText: String, newText: String, vararg recomputed: String) {
+        KotlinHintsCache.invalidate(project)
+        val text = file.asText()
+        computeHints(KotlinPsiManager.getParsedFile(file)!!)
+        
+        try {
+            val edited = KotlinPsiManager.parseTextForDiagnostic(text.replace(oldText, newText), file)!!
+            assertEquals(recomputed.toSet(), computeHints(edited))
+        } finally {
+            KotlinPsiManager.parseTextForDiagnostic(text, file)
+        }
+    }
+    
+    fun testUnchangedDeclarationsAreReused() {
+        KotlinHintsCache.invalidate(project)
+        val ktFile = KotlinPsiManager.getParsedFile(file)!!
+        
+        assertEquals(setOf("first", "second", "Holder", "member", "otherMember"), computeHints(ktFile))
+        assertEquals(emptySet<String>(), computeHints(ktFile))
+    }
+    
+    fun testChangedDeclarationIsRecomputed() = doEditTest("val unused = 1", "val unused = 2", "second")
+    
+    fun testChangedMemberIsRecomputedWithoutItsClass() = 
+            doEditTest("println(\"a\")", "println(\"b\")", "otherMember")
+    
+    fun testResizedMemberIsRecomputedWithItsClass() = 
+            doEditTest("println(\"a\")", "println(\"ab\")", "Holder", "otherMember")
+    
+    fun testChangedSignatureRecomputesAllDeclarations() = 
+            doEditTest("fun member() = 1", "fun member() = \"1\"", 
+                    "first", "second", "Holder", "member", "otherMember")
+    
+    fun testExternalChangeRecomputesAllDeclarations() {
+        KotlinHintsCache.invalidate(project)
+        val ktFile = KotlinPsiManager.getParsedFile(file)!!
+        computeHints(ktFile)
+        
+        ProjectModificationStamps.bumpExternal(project)
+        assertEquals(setOf("first", "second", "Holder", "member", "otherMember"), computeHints(ktFile))
+    }
+    
+}
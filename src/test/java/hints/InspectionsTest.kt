@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package hints
+
+import com.intellij.psi.util.PsiTreeUtil
+import org.jetbrains.kotlin.builder.KotlinPsiManager
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParser
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
+import org.jetbrains.kotlin.hints.KotlinHintsComputer
+import org.jetbrains.kotlin.hints.intentions.RemoveEmptyClassBodyInspection
+import org.jetbrains.kotlin.psi.KtClass
+import org.jetbrains.kotlin.psi.KtClassBody
+import org.jetbrains.kotlin.psi.KtDeclaration
+import org.jetbrains.kotlin.psi.KtFile
+import org.netbeans.modules.csl.api.Hint
+import org.netbeans.modules.parsing.api.Source
+import utils.*
+
+class InspectionsTest : KotlinTestCase("Inspections test", "inspections") {
+    
+    private val file by lazy { dir.getFileObject("inspections.kt") }
+    private val ktFile by lazy { KotlinPsiManager.getParsedFile(file)!! }
+    
+    private fun parserResult(ktFile: KtFile) = KotlinParserResult(Source.create(file).createSnapshot(), 
+            KotlinParser.getAnalysisResult(ktFile, project), ktFile, file, project)
+    
+    private fun computeHints(skipped: Set<KtDeclaration> = emptySet()): List<Hint> = 
+            KotlinHintsComputer(parserResult(ktFile)).computeHints(ktFile, skipped).hints
+    
+    private fun Hint.rangeText() = ktFile.text.substring(range.start, range.end)
+    
+    private fun ktClass(name: String) = PsiTreeUtil.findChildrenOfType(ktFile, KtClass::class.java).first { it.name == name }
+    
+    fun testEachElementGetsHintsOfItsClass() {
+        val hints = computeHints().associate { Pair(it.description, it.rangeText()) }
+        
+        assertEquals(mapOf(
+                "Empty class body" to "{}",
+                "Empty primary constructor" to "()",
+                "Concatenation can be replaced by template" to "\"Hello, \" + name",
+                "Use 'isNotEmpty' instead of size check" to "list.size > 0"), hints)
+    }
+    
+    fun testSkippedDeclarationsHaveNoHints() {
+        val descriptions = computeHints(setOf(ktClass("EmptyConstructor"))).map { it.description }.toSet()
+        
+        assertEquals(setOf("Empty class body", "Use 'isNotEmpty' instead of size check"), descriptions)
+    }
+    
+    fun testInspectionsKeepNoStateBetweenFiles() {
+        val hints = computeHints().map { Pair(it.description, it.range) }
+        
+        val other = KotlinPsiManager.parseText("class Other {}", file)!!
+        KotlinHintsComputer(parserResult(other)).computeHints(other)
+        
+        assertEquals(hints, computeHints().map { Pair(it.description, it.range) })
+    }
+    
+    fun testInspectionOfElement() {
+        val parserResult = parserResult(ktFile)
+        val emptyBody = ktClass("EmptyBody").body!!
+        val nonEmptyBody = PsiTreeUtil.findChildOfType(ktClass("WithoutHints"), KtClassBody::class.java)!!
+        
+        assertEquals("Empty class body", RemoveEmptyClassBodyInspection.inspect(emptyBody, parserResult, file)?.description)
+        assertNull(RemoveEmptyClassBodyInspection.inspect(nonEmptyBody, parserResult, file))
+    }
+    
+}
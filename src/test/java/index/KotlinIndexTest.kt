@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package index
+
+import org.jetbrains.kotlin.builder.KotlinPsiManager
+import org.jetbrains.kotlin.indexer.IndexedDeclaration
+import org.jetbrains.kotlin.indexer.IndexedDeclarationKind
+import org.jetbrains.kotlin.indexer.KotlinIndex
+import utils.KotlinTestCase
+
+class KotlinIndexTest : KotlinTestCase("Kotlin index test", "index") {
+
+    private val declarations by lazy {
+        KotlinIndex.collectDeclarations(KotlinPsiManager.getParsedFile(dir.getFileObject("declarations.kt"))!!)
+    }
+    
+    private fun fqNames(kind: IndexedDeclarationKind) = declarations.filter { it.kind == kind }.map { it.fqName }.toSet()
+    
+    fun testClassesWithNestedOnes() = assertEquals(
+            setOf("index.declarations.IndexedClass", "index.declarations.IndexedClass.NestedClass"),
+            fqNames(IndexedDeclarationKind.CLASS))
+    
+    fun testTopLevelFunctionsWithoutPrivateOnes() = assertEquals(
+            setOf("index.declarations.indexedFunction", "index.declarations.indexedFunctionWithSuffix",
+                    "index.declarations.indexedExtension"),
+            fqNames(IndexedDeclarationKind.FUNCTION))
+    
+    fun testProperties() = assertEquals(setOf("index.declarations.indexedProperty"), 
+            fqNames(IndexedDeclarationKind.PROPERTY))
+    
+    fun testTypeAliases() = assertEquals(setOf("index.declarations.IndexedAlias"), 
+            fqNames(IndexedDeclarationKind.TYPEALIAS))
+    
+    fun testFileFacade() = assertEquals(setOf("index.declarations.DeclarationsKt"), 
+            fqNames(IndexedDeclarationKind.FILE_FACADE))
+    
+    fun testExtensionReceiver() {
+        val extension = declarations.first { it.name == "indexedExtension" }
+        
+        assertEquals("String", extension.receiver)
+        assertNull(declarations.first { it.name == "indexedFunction" }.receiver)
+    }
+    
+    fun testEncodedDeclarationIsDecoded() {
+        declarations.forEach {
+            assertEquals(it, IndexedDeclaration.decode(it.kind, it.encode(), null))
+        }
+    }
+    
+    fun testMalformedValueIsNotDecoded() {
+        assertNull(IndexedDeclaration.decode(IndexedDeclarationKind.CLASS, "Name;fq.Name", null))
+        assertNull(IndexedDeclaration.decode(IndexedDeclarationKind.CLASS, "Name;fq.Name;;offset", null))
+    }
+    
+    fun testExactNameDoesNotMatchLongerNames() {
+        val matched = declarations.filter { 
+            it.encode().startsWith(IndexedDeclaration.namePrefix("indexedFunction", true)) 
+        }
+        
+        assertEquals(listOf("indexedFunction"), matched.map { it.name })
+    }
+    
+    fun testPrefixMatchesLongerNames() {
+        val matched = declarations.filter { 
+            it.encode().startsWith(IndexedDeclaration.namePrefix("indexedFunction", false)) 
+        }
+        
+        assertEquals(setOf("indexedFunction", "indexedFunctionWithSuffix"), matched.map { it.name }.toSet())
+    }
+    
+    fun testIdentifiers() {
+        val identifiers = KotlinIndex.collectIdentifiers(KotlinPsiManager.getParsedFile(dir.getFileObject("declarations.kt"))!!)
+        
+        assertTrue(identifiers.containsAll(listOf("IndexedClass", "LocalClass", "privateFunction", "length")))
+    }
+
+}
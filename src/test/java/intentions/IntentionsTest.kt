@@ -22,6 +22,11 @@ import org.jetbrains.kotlin.builder.KotlinPsiManager
 import org.jetbrains.kotlin.hints.intentions.*
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParser
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
+import org.jetbrains.kotlin.hints.KotlinIntentions
+import org.jetbrains.kotlin.psi.psiUtil.elementsInRange
+import com.intellij.openapi.util.TextRange
+import org.netbeans.modules.parsing.api.Source
 
 class IntentionsTest : KotlinTestCase("Intentions test", "intentions") {
 
@@ -45,6 +50,31 @@ class IntentionsTest : KotlinTestCase("Intentions test", "intentions") {
         assertTrue(doc.getText(0, doc.length) equalsWithoutSpaces dir.getFileObject("$fileName.after").asText())
     }
 
+    private fun doLineTest(fileName: String, line: String, intention: Class<out ApplicableIntention>) {
+        val doc = getDocumentForFileObject(dir, "$fileName.kt")
+        val file = dir.getFileObject("$fileName.kt")
+        val ktFile = KotlinPsiManager.getParsedFile(file)!!
+        
+        val parserResult = KotlinParserResult(Source.create(doc).createSnapshot(), 
+                KotlinParser.getAnalysisResult(ktFile, project), ktFile, file, project)
+        
+        // elements of the line as KotlinHintsProvider collects them, with the caret at the line start
+        val lineStart = ktFile.text.indexOf(line)
+        val psiElements = ktFile.elementsInRange(TextRange(lineStart, lineStart + line.length)).toMutableList()
+        ktFile.findElementAt(lineStart)?.let { psiElements.add(it) }
+        
+        val intentions = KotlinIntentions.findIntentions(parserResult, psiElements)
+        assertTrue(intentions.any { intention.isInstance(it) })
+        
+        // checks are reused for the same parser result
+        KotlinIntentions.findIntentions(parserResult, psiElements).forEachIndexed { i, it -> assertSame(intentions[i], it) }
+    }
+    
+    fun testToInfixIsOfferedForTheLine() = doLineTest("toInfix", "val res = 42.inf(42)", ToInfixIntention::class.java)
+    
+    fun testSplitIfIsOfferedForTheLine() = 
+            doLineTest("splitIf", "if (integer > 3 && integer != 5) {}", SplitIfIntention::class.java)
+    
     fun testRemoveEmptyClassBody() = doTest("removeEmptyClassBody", RemoveEmptyClassBodyIntention::class.java)
 
     fun testToInfix() = doTest("toInfix", ToInfixIntention::class.java)
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package javastructure
+
+import javax.lang.model.element.TypeElement
+import org.jetbrains.kotlin.resolve.lang.java.ElemHandle
+import org.jetbrains.kotlin.resolve.lang.java.JavaClassStructure
+import org.jetbrains.kotlin.resolve.lang.java.JavaClassStructureCache
+import org.jetbrains.kotlin.resolve.lang.java.findTypeElementHandle
+import org.jetbrains.kotlin.resolve.lang.java.structure.NetBeansJavaClass
+import utils.*
+
+class JavaClassStructureCacheTest : KotlinTestCase("Java class structure cache test", "javaStructure") {
+    
+    private fun handle(fqName: String): ElemHandle<TypeElement> = 
+            ElemHandle.create(project.findTypeElementHandle(fqName)!!, project)
+    
+    private fun structure(handle: ElemHandle<TypeElement>): JavaClassStructure = 
+            JavaClassStructureCache.getStructure(handle, project, NetBeansJavaClass(handle, project))!!
+    
+    fun testStructureIsReused() {
+        JavaClassStructureCache.invalidate(project)
+        val handle = handle("javaStructure.StructureSource")
+        
+        assertSame(structure(handle), structure(handle))
+    }
+    
+    fun testChangedTypesAreComputedAgain() {
+        JavaClassStructureCache.invalidate(project)
+        val outer = handle("javaStructure.StructureSource")
+        val nested = handle("javaStructure.StructureSource.Nested")
+        val outerStructure = structure(outer)
+        val nestedStructure = structure(nested)
+        
+        JavaClassStructureCache.invalidate(project, listOf(outer.elementHandle))
+        assertNotSame(outerStructure, structure(outer))
+        assertNotSame(nestedStructure, structure(nested))
+    }
+    
+    fun testDocumentEditComputesStructureAgain() {
+        JavaClassStructureCache.invalidate(project)
+        val document = getDocumentForFileObject(dir, "StructureSource.java")
+        val handle = handle("javaStructure.StructureSource")
+        val structure = structure(handle)
+        
+        val offset = document.getText(0, document.length).indexOf("public void first")
+        document.insertString(offset, "public void second() {}\n    ", null)
+        try {
+            val edited = structure(handle)
+            assertNotSame(structure, edited)
+            assertSame(edited, structure(handle))
+        } finally {
+            document.remove(offset, "public void second() {}\n    ".length)
+        }
+    }
+    
+}
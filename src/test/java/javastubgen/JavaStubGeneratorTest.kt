@@ -76,5 +76,15 @@ class JavaStubGeneratorTest : KotlinTestCase("Stub generator test", "stubGen") {
     fun testClassImplementsInterface() = doTest("implementsInterface", "implementsInterface2", "implementsInterface1")
 
     fun testFunWithSeveralArguments() = doTest("severalArguments")
+    
+    fun testOutputIsSameAsReferenceGenerator() {
+        getAllKtFilesInFolder(dir).forEach { kotlinFile ->
+            val byteCode = getByteCode(kotlinFile)
+            val expected = ReferenceStubGenerator.gen(byteCode).map { Pair(it.first.name, it.second) }
+            val actual = JavaStubGenerator.gen(byteCode).map { Pair(it.first.name, it.second) }
+            
+            assertEquals(kotlinFile.nameExt, expected, actual)
+        }
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package javatasks
+
+import java.io.IOException
+import org.jetbrains.kotlin.resolve.lang.java.JavaTaskExecutor
+import org.netbeans.api.java.source.CompilationController
+import org.netbeans.api.java.source.Task
+import utils.KotlinTestCase
+
+class JavaTaskExecutorTest : KotlinTestCase("Java task executor test", "main") {
+    
+    private class RecordingTask : Task<CompilationController> {
+        @Volatile var controller: CompilationController? = null
+        
+        override fun run(controller: CompilationController) {
+            this.controller = controller
+        }
+    }
+    
+    fun testTaskRunsInOwnSession() {
+        val task = JavaTaskExecutor.execute(project, RecordingTask())
+        
+        assertNotNull(task.controller)
+        assertEquals(0, JavaTaskExecutor.pendingTasks(project))
+    }
+    
+    fun testTasksOfSessionShareController() {
+        val first = RecordingTask()
+        val second = RecordingTask()
+        JavaTaskExecutor.runInSession(project) {
+            JavaTaskExecutor.execute(project, first)
+            JavaTaskExecutor.execute(project, second)
+        }
+        
+        assertNotNull(first.controller)
+        assertSame(first.controller, second.controller)
+    }
+    
+    fun testTaskOfOtherThreadRunsInOpenSession() {
+        val own = RecordingTask()
+        val other = RecordingTask()
+        val thread = Thread { JavaTaskExecutor.execute(project, other) }
+        
+        JavaTaskExecutor.runInSession(project) {
+            JavaTaskExecutor.execute(project, own)
+            thread.start()
+            
+            val deadline = System.currentTimeMillis() + 10000
+            while (JavaTaskExecutor.pendingTasks(project) == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1)
+            }
+        }
+        thread.join()
+        
+        assertNotNull(own.controller)
+        assertSame(own.controller, other.controller)
+    }
+    
+    fun testFailedTaskDoesNotStopSession() {
+        val failing = Task<CompilationController> { throw IOException("Lookup failed") }
+        val recording = RecordingTask()
+        JavaTaskExecutor.runInSession(project) {
+            assertSame(failing, JavaTaskExecutor.execute(project, failing))
+            JavaTaskExecutor.execute(project, recording)
+        }
+        
+        assertNotNull(recording.controller)
+    }
+    
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package occurrences
+
+import org.jetbrains.kotlin.builder.KotlinPsiManager
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParser
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
+import org.jetbrains.kotlin.highlighter.occurrences.IdentifierOccurrences
+import org.jetbrains.kotlin.highlighter.occurrences.KotlinOccurrencesFinder
+import org.jetbrains.kotlin.psi.KtElement
+import org.jetbrains.kotlin.psi.psiUtil.getNonStrictParentOfType
+import org.netbeans.modules.csl.api.OffsetRange
+import utils.*
+
+class OccurrencesTest : KotlinTestCase("Occurrences test", "occurrences") {
+    
+    private fun getParserResult(fileName: String): KotlinParserResult {
+        val file = dir.getFileObject("$fileName.kt")
+        val ktFile = KotlinPsiManager.getParsedFile(file)!!
+        
+        return KotlinParserResult(null, KotlinParser.getAnalysisResult(ktFile, project), ktFile, file, project)
+    }
+    
+    private fun doTest(fileName: String) {
+        val carets = getDocumentForFileObject(dir, "$fileName.caret").carets()
+        val expected = (0 until carets.size / 2).map { OffsetRange(carets[it * 2], carets[it * 2 + 1]) }.toSet()
+        
+        val finder = KotlinOccurrencesFinder()
+        finder.setCaretPosition(carets.first())
+        finder.run(getParserResult(fileName), null)
+        
+        assertEquals(expected, finder.occurrences.keys)
+    }
+    
+    fun testLocalVariable() = doTest("localVariable")
+    
+    fun testFunctionAndParameter() = doTest("functionAndParameter")
+    
+    fun testBackquotedFunction() = doTest("backquotedFunction")
+    
+    fun testBackquotedReference() = doTest("backquotedReference")
+    
+    fun testResolvedDeclarationsAreReused() {
+        val result = getParserResult("localVariable")
+        val offset = result.ktFile.text.lastIndexOf("value")
+        val element = result.ktFile.findElementAt(offset)!!.getNonStrictParentOfType(KtElement::class.java)!!
+        
+        val declarations = result.resolveToSourceDeclaration(element)
+        assertFalse(declarations.isEmpty())
+        assertSame(declarations, result.resolveToSourceDeclaration(element))
+    }
+    
+    fun testIdentifierOccurrences() {
+        val occurrences = IdentifierOccurrences("val `a b` = a + `a` // a\nval s = \"a\"")
+        
+        assertEquals(listOf(12, 16), occurrences["a"].toList())
+        assertEquals(listOf(4), occurrences["a b"].toList())
+        assertTrue(occurrences["s"].isNotEmpty())
+        assertTrue(occurrences["b"].isEmpty())
+    }
+    
+}
@@ -21,12 +21,17 @@ import javaproject.JavaProject
 import javax.swing.text.Document
 import org.jetbrains.kotlin.builder.KotlinPsiManager
 import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.refactorings.rename.TypeUsagesSearcher
 import org.jetbrains.kotlin.refactorings.rename.transaction
 import org.jetbrains.kotlin.refactorings.rename.getRenameRefactoringMap
+import org.jetbrains.kotlin.resolve.lang.java.findTypeElementHandle
+import org.netbeans.api.java.source.JavaSource
 import org.netbeans.api.project.Project
 import org.netbeans.modules.csl.api.OffsetRange
 import org.netbeans.modules.refactoring.spi.Transaction
+import org.openide.cookies.EditorCookie
 import org.openide.filesystems.FileObject
+import org.openide.loaders.DataObject
 import utils.*
 
 class RenameTest : KotlinTestCase("Rename Test", "rename") {
@@ -94,4 +99,28 @@ class RenameTest : KotlinTestCase("Rename Test", "rename") {
     
     fun testRenameKotlinClassByConstructorRef() = doTest("classbyconstructor", "file", "KotlinRules")
     
+    private fun findJavaTypeUsages(file: FileObject): Set<OffsetRange> {
+        val searcher = TypeUsagesSearcher(project.findTypeElementHandle("rename.javausages.UsedType")!!)
+        JavaSource.forFileObject(file).runUserActionTask(searcher, true)
+        
+        return searcher.usages
+    }
+    
+    fun testJavaTypeUsages() {
+        val file = dir.getFileObject("javausages").getFileObject("TypeUsages.java")
+        val text = file.asText()
+        val usages = findJavaTypeUsages(file)
+        
+        assertEquals(setOf("UsedType"), usages.map { text.substring(it.start, it.end) }.toSet())
+        assertTrue(OffsetRange(text.indexOf("UsedType field"), text.indexOf(" field")) in usages)
+        assertTrue(OffsetRange(text.indexOf("UsedType()"), text.indexOf("()")) in usages)
+    }
+    
+    fun testJavaTypeUsagesDontOpenDocuments() {
+        val file = dir.getFileObject("javausages").getFileObject("TypeUsages.java")
+        findJavaTypeUsages(file)
+        
+        assertNull(DataObject.find(file).lookup.lookup(EditorCookie::class.java).document)
+    }
+    
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package search
+
+import org.jetbrains.kotlin.indexer.IndexedDeclaration
+import org.jetbrains.kotlin.indexer.IndexedDeclarationKind
+import org.jetbrains.kotlin.search.KotlinCallableSearcher
+import utils.KotlinTestCase
+
+class CallableSearcherTest : KotlinTestCase("Callable searcher test", "completion") {
+    
+    private fun withPrefix(prefix: String): List<IndexedDeclaration> {
+        val callables = arrayListOf<IndexedDeclaration>()
+        KotlinCallableSearcher.searchCallables(project, prefix) { callables.add(it) }
+        
+        return callables
+    }
+    
+    fun testLibraryFunction() {
+        val callable = KotlinCallableSearcher.findCallables(project, "listOf").first { it.fqName == "kotlin.collections.listOf" }
+        
+        assertEquals(IndexedDeclarationKind.FUNCTION, callable.kind)
+    }
+    
+    fun testLibraryProperty() {
+        val callable = KotlinCallableSearcher.findCallables(project, "lastIndex").first { it.fqName == "kotlin.collections.lastIndex" }
+        
+        assertEquals(IndexedDeclarationKind.PROPERTY, callable.kind)
+    }
+    
+    fun testOverloadsAreFoundOnce() = assertEquals(1, 
+            KotlinCallableSearcher.findCallables(project, "listOf").count { it.fqName == "kotlin.collections.listOf" })
+    
+    fun testExactNameDoesNotMatchLongerNames() = 
+            assertTrue(KotlinCallableSearcher.findCallables(project, "listOf").all { it.name == "listOf" })
+    
+    fun testPrefix() {
+        val names = withPrefix("listOf").map { it.name }.toSet()
+        
+        assertTrue(names.containsAll(listOf("listOf", "listOfNotNull")))
+        assertTrue(names.all { it.startsWith("listOf", ignoreCase = true) })
+    }
+    
+    fun testConsumerStopsSearch() {
+        var found = 0
+        
+        assertFalse(KotlinCallableSearcher.searchCallables(project, "listOf") { found++; false })
+        assertEquals(1, found)
+    }
+    
+    fun testCallablesAreReadAgainAfterInvalidation() {
+        KotlinCallableSearcher.invalidate(project)
+        
+        assertTrue(KotlinCallableSearcher.findCallables(project, "listOf").any { it.fqName == "kotlin.collections.listOf" })
+    }
+    
+}
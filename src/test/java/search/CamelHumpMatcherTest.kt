@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package search
+
+import org.jetbrains.kotlin.search.CamelHumpMatcher
+import org.netbeans.junit.NbTestCase
+
+class CamelHumpMatcherTest : NbTestCase("Camel hump matcher test") {
+    
+    fun testUpperCaseHumps() = assertTrue(CamelHumpMatcher.matches("NullPointerException", "NPE"))
+    
+    fun testHumpPrefixes() = assertTrue(CamelHumpMatcher.matches("NullPointerException", "NuPoEx"))
+    
+    fun testSkippedHumps() = assertTrue(CamelHumpMatcher.matches("NullPointerException", "NE"))
+    
+    fun testFirstHumpMatchesBeginning() = assertFalse(CamelHumpMatcher.matches("NullPointerException", "PE"))
+    
+    fun testFirstHumpIsCaseInsensitive() = assertTrue(CamelHumpMatcher.matches("NullPointerException", "nPE"))
+    
+    fun testHumpsInOrder() = assertFalse(CamelHumpMatcher.matches("NullPointerException", "NEP"))
+    
+    fun testHumpsStartAtUpperCaseLetters() = assertFalse(CamelHumpMatcher.matches("Nullpointer", "NP"))
+    
+    fun testHumpsAreCaseSensitive() = assertFalse(CamelHumpMatcher.matches("NullPointerException", "NPOinter"))
+    
+    fun testHumpMatchesLaterHump() = assertTrue(CamelHumpMatcher.matches("AbAbcAbd", "AAbd"))
+    
+    fun testEmptyPattern() = assertTrue(CamelHumpMatcher.matches("Name", ""))
+    
+    fun testCamelHumpPattern() {
+        assertTrue(CamelHumpMatcher.isCamelHumpPattern("NPE"))
+        assertFalse(CamelHumpMatcher.isCamelHumpPattern("Name"))
+        assertFalse(CamelHumpMatcher.isCamelHumpPattern("N"))
+    }
+    
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package search
+
+import org.jetbrains.kotlin.search.NameTrie
+import org.netbeans.junit.NbTestCase
+
+class NameTrieTest : NbTestCase("Name trie test") {
+    
+    private fun NameTrie<String>.withPrefix(prefix: String): List<String> {
+        val values = arrayListOf<String>()
+        forEachWithPrefix(prefix) { values.add(it) }
+        
+        return values
+    }
+    
+    private fun trie(vararg names: String) = NameTrie<String>().apply { names.forEach { add(it, it) } }
+    
+    fun testPrefixIsCaseInsensitive() {
+        val trie = trie("KotlinClass", "kotlinFunction", "JavaClass")
+        
+        assertEquals(setOf("KotlinClass", "kotlinFunction"), trie.withPrefix("KOTLIN").toSet())
+    }
+    
+    fun testShorterNamesComeFirst() = assertEquals(listOf("Ab", "Abc", "Abcd"), trie("Abcd", "Ab", "Abc").withPrefix("a"))
+    
+    fun testEmptyPrefixMatchesAll() = assertEquals(3, trie("A", "B", "C").withPrefix("").size)
+    
+    fun testMissingPrefix() = assertTrue(trie("Abc").withPrefix("Abd").isEmpty())
+    
+    fun testSameNameKeepsAllValues() {
+        val trie = NameTrie<String>().apply { 
+            add("Name", "first") 
+            add("Name", "second")
+        }
+        
+        assertEquals(listOf("first", "second"), trie.withPrefix("Name"))
+        assertEquals(2, trie.size)
+    }
+    
+    fun testRemove() {
+        val trie = trie("Abc", "Abd")
+        
+        assertTrue(trie.remove("Abc", "Abc"))
+        assertFalse(trie.remove("Abc", "Abc"))
+        assertFalse(trie.remove("Xyz", "Xyz"))
+        assertEquals(listOf("Abd"), trie.withPrefix("Ab"))
+        assertEquals(1, trie.size)
+    }
+    
+    fun testConsumerStopsTraversal() {
+        val visited = arrayListOf<String>()
+        
+        assertFalse(trie("A", "Ab", "Abc").forEachWithPrefix("A") { visited.add(it); it != "Ab" })
+        assertEquals(listOf("A", "Ab"), visited)
+    }
+    
+}
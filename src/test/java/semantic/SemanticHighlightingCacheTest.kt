@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package semantic
+
+import org.jetbrains.kotlin.builder.KotlinPsiManager
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParser
+import org.jetbrains.kotlin.diagnostics.netbeans.parser.KotlinParserResult
+import org.jetbrains.kotlin.highlighter.semanticanalyzer.KotlinSemanticAnalyzer
+import org.jetbrains.kotlin.highlighter.semanticanalyzer.invalidateSemanticHighlighting
+import org.jetbrains.kotlin.psi.KtFile
+import org.netbeans.modules.csl.api.ColoringAttributes
+import org.netbeans.modules.csl.api.OffsetRange
+import org.netbeans.modules.parsing.api.Source
+import utils.*
+
+class SemanticHighlightingCacheTest : KotlinTestCase("Semantic highlighting cache test", "semanticCache") {
+    
+    private val file by lazy { dir.getFileObject("members.kt") }
+    
+    private fun runAnalyzer(ktFile: KtFile): Map<OffsetRange, Set<ColoringAttributes>> {
+        // highlighting of files without loaded documents is dropped from the cache
+        getDocumentForFileObject(file)
+        
+        val parserResult = KotlinParserResult(Source.create(file).createSnapshot(), 
+                KotlinParser.getAnalysisResult(ktFile, project), ktFile, file, project)
+        
+        return KotlinSemanticAnalyzer().let { 
+            it.run(parserResult, null)
+            HashMap(it.highlights)
+        }
+    }
+    
+    private fun walkFile(ktFile: KtFile): Map<OffsetRange, Set<ColoringAttributes>> = KotlinSemanticAnalyzer().let {
+        it.highlight(KotlinParser.getAnalysisResult(ktFile, project)!!.analysisResult, ktFile)
+        HashMap(it.highlights)
+    }
+    
+    private fun doEditTest(oldText: String, newText: String) {
+        invalidateSemanticHighlighting(project)
+        val text = file.asText()
+        
+        val ktFile = KotlinPsiManager.getParsedFile(file)!!
+        val highlights = runAnalyzer(ktFile)
+        assertFalse(highlights.isEmpty())
+        assertEquals(walkFile(ktFile), highlights)
+        
+        try {
+            assertTrue(text.contains(oldText))
+            val edited = KotlinPsiManager.parseTextForDiagnostic(text.replace(oldText, newText), file)!!
+            
+            assertEquals(walkFile(edited), runAnalyzer(edited))
+        } finally {
+            KotlinPsiManager.parseTextForDiagnostic(text, file)
+        }
+    }
+    
+    fun testUnchangedFileIsHighlightedFromCache() {
+        invalidateSemanticHighlighting(project)
+        val ktFile = KotlinPsiManager.getParsedFile(file)!!
+        
+        val highlights = runAnalyzer(ktFile)
+        assertEquals(highlights, runAnalyzer(ktFile))
+        assertEquals(walkFile(ktFile), highlights)
+    }
+    
+    fun testEditOfLastMember() = doEditTest("counter += text.length", "counter += text.length + value")
+    
+    fun testEditKeepingMemberLength() = doEditTest("val local = value", "var local = value")
+    
+    fun testEditShiftingFollowingDeclarations() = 
+            doEditTest("val local = value", "val local = value\n        var other = local\n        other++")
+    
+    fun testEditOfTopLevelFunction() = doEditTest("holder.first() else 0", "holder.second(\"\") else 0")
+    
+}
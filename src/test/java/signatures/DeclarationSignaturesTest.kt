@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package signatures
+
+import org.jetbrains.kotlin.builder.KotlinPsiManager
+import org.jetbrains.kotlin.filesystem.lightclasses.DeclarationSignatures
+import org.jetbrains.kotlin.filesystem.lightclasses.SignatureCache
+import org.jetbrains.kotlin.filesystem.lightclasses.declarationSignatureHash
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.resolve.ProjectModificationStamps
+import utils.KotlinTestCase
+
+class DeclarationSignaturesTest : KotlinTestCase("Declaration signatures test", "signatures") {
+    
+    private val file by lazy { dir.getFileObject("stubs.kt") }
+    private val text by lazy { file.asText() }
+    
+    private fun parse(text: String): KtFile = KotlinPsiManager.parseText(text, file)!!
+    
+    private fun assertSameSignature(edited: String) = 
+            assertEquals(parse(text).declarationSignatureHash(), parse(edited).declarationSignatureHash())
+    
+    private fun assertChangedSignature(edited: String) = 
+            assertFalse(parse(text).declarationSignatureHash() == parse(edited).declarationSignatureHash())
+    
+    fun testCommentsAndWhitespacesAreIgnored() = assertSameSignature(
+            text.replace("// comment", "// another comment").replace("class StubSource {", "class StubSource  {\n"))
+    
+    fun testBlockBodyIsIgnored() = assertSameSignature(text.replace("return 1", "return 2"))
+    
+    fun testInitializerOfTypedPropertyIsIgnored() = assertSameSignature(text.replace("typed: Int = 1", "typed: Int = 2"))
+    
+    fun testInferredBodyIsPartOfSignature() = assertChangedSignature(text.replace("inferred() = 1", "inferred() = \"\""))
+    
+    fun testInitializerOfUntypedPropertyIsPartOfSignature() = 
+            assertChangedSignature(text.replace("untyped = 1", "untyped = \"\""))
+    
+    fun testDeclaredTypeIsPartOfSignature() = assertChangedSignature(text.replace("declared(): Int", "declared(): Any"))
+    
+    fun testStampIsKeptForSameSignature() {
+        val stamp = DeclarationSignatures.update(project, mapOf(file to parse(text)))[file]
+        val projectStamp = ProjectModificationStamps.get(project)
+        
+        assertEquals(stamp, DeclarationSignatures.update(project, mapOf(file to parse(text.replace("return 1", "return 2"))))[file])
+        assertEquals(projectStamp, ProjectModificationStamps.get(project))
+    }
+    
+    fun testStampAdvancesForChangedSignature() {
+        try {
+            val stamp = DeclarationSignatures.update(project, mapOf(file to parse(text)))[file]!!
+            val projectStamp = ProjectModificationStamps.get(project)
+            
+            val newStamp = DeclarationSignatures.update(project, mapOf(file to parse(text.replace("fun inferred", "fun renamed"))))[file]!!
+            assertFalse(stamp.signature == newStamp.signature)
+            assertTrue(newStamp.projectStamp > stamp.projectStamp)
+            assertTrue(ProjectModificationStamps.get(project) > projectStamp)
+        } finally {
+            DeclarationSignatures.update(project, mapOf(file to parse(text)))
+        }
+    }
+    
+    fun testCachedValueIsReusedWhileStampIsSame() {
+        val cache = SignatureCache<String>()
+        val stamp = DeclarationSignatures.update(project, mapOf(file to parse(text)))[file]!!
+        cache.put(project, file, stamp, "stub")
+        
+        assertEquals("stub", cache.get(project, file, DeclarationSignatures.update(project, mapOf(file to parse(text)))[file]!!))
+        assertEquals("stub", cache.get(project, file, stamp))
+    }
+    
+    fun testCachedValueIsDroppedForChangedStamp() {
+        val cache = SignatureCache<String>()
+        val stamp = DeclarationSignatures.update(project, mapOf(file to parse(text)))[file]!!
+        cache.put(project, file, stamp, "stub")
+        
+        assertNull(cache.get(project, file, stamp.copy(projectStamp = stamp.projectStamp + 1)))
+        assertNull(cache.get(project, file, stamp))
+    }
+    
+    fun testInvalidatedProjectHasNoCachedValues() {
+        val cache = SignatureCache<String>()
+        val stamp = DeclarationSignatures.update(project, mapOf(file to parse(text)))[file]!!
+        cache.put(project, file, stamp, "stub")
+        cache.invalidate(project)
+        
+        assertNull(cache.get(project, file, stamp))
+    }
+    
+}
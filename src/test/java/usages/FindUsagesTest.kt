@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *******************************************************************************/
+package usages
+
+import com.intellij.psi.util.PsiTreeUtil
+import org.jetbrains.kotlin.builder.KotlinPsiManager
+import org.jetbrains.kotlin.psi.KtClass
+import org.jetbrains.kotlin.refactorings.rename.getCandidateFiles
+import org.netbeans.modules.refactoring.api.RefactoringSession
+import org.netbeans.modules.refactoring.api.WhereUsedQuery
+import org.openide.util.lookup.Lookups
+import utils.*
+
+class FindUsagesTest : KotlinTestCase("Find Usages test", "usages") {
+    
+    private fun findUsages(pack: String): List<Triple<String, String, String>> {
+        val packFile = dir.getFileObject(pack)
+        val file = packFile.getFileObject("file.kt")
+        val caretOffset = getCaret(getDocumentForFileObject(packFile.getFileObject("file.caret")))
+        
+        val psi = KotlinPsiManager.getParsedFile(file)!!.findElementAt(caretOffset)
+        assertNotNull(psi)
+        
+        val session = RefactoringSession.create("Find Usages")
+        val query = WhereUsedQuery(Lookups.fixed(psi!!, getDocumentForFileObject(file)))
+        assertNull(query.prepare(session))
+        
+        return session.refactoringElements.map { Triple(it.parentFile.nameExt, it.text, it.displayText) }
+    }
+    
+    private fun doTest(pack: String, vararg expected: Pair<String, String>) {
+        val usages = findUsages(pack)
+        
+        assertEquals(expected.toSet(), usages.map { Pair(it.first, it.second) }.toSet())
+    }
+    
+    fun testClassUsages() = doTest("classusages",
+            Pair("file.kt", "class SearchedClass"),
+            Pair("file.kt", "println(SearchedClass().hashCode())"),
+            Pair("file2.kt", "fun someFunc() = SearchedClass().hashCode() < 0 && true"))
+    
+    fun testFunctionUsages() = doTest("functionusages",
+            Pair("file.kt", "fun coolFun() = println()"),
+            Pair("file2.kt", "fun someFunc() = ClassWithMethod().coolFun()"))
+    
+    fun testUsagesOfCurrentFileComeFirst() {
+        assertEquals("file.kt", findUsages("functionusages").first().first)
+    }
+    
+    fun testFilesWithoutNameAreNotSearched() {
+        val file = dir.getFileObject("classusages").getFileObject("file.kt")
+        val searchedClass = PsiTreeUtil.findChildOfType(KotlinPsiManager.getParsedFile(file)!!, KtClass::class.java)!!
+        val candidates = getCandidateFiles(searchedClass, file, project).keys
+        
+        assertTrue(dir.getFileObject("classusages").getFileObject("file2.kt") in candidates)
+        assertFalse(dir.getFileObject("functionusages").getFileObject("file.kt") in candidates)
+    }
+    
+    fun testDisplayTextHighlightsUsage() {
+        val displayText = findUsages("classusages").first { it.first == "file2.kt" }.third
+        
+        assertEquals("<html>fun someFunc() = <b>SearchedClass</b>().hashCode() &lt; 0 &amp;&amp; true</html>", displayText)
+    }
+    
+}
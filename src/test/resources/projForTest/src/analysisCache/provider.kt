@@ -0,0 +1,7 @@
+package analysisCache
+
+fun provide() = 42
+
+fun compute(): Int {
+    return 1
+}
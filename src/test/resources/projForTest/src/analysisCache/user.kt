@@ -0,0 +1,3 @@
+package analysisCache
+
+fun use() = provide() + 1
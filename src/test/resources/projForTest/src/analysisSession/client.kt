@@ -0,0 +1,3 @@
+package analysisSession
+
+fun sessionClient() = SessionService().run() + 1
@@ -0,0 +1,5 @@
+package analysisSession
+
+class SessionService {
+    fun run() = 1
+}
@@ -0,0 +1,7 @@
+package completion
+
+fun checkInBlockBody(parameter: Int) {
+    val local = parameter + 1
+    <caret>
+    val later = local
+}
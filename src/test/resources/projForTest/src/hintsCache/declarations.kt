@@ -0,0 +1,15 @@
+package hintsCache
+
+fun first() = listOf(1).size
+
+fun second() {
+    val unused = 1
+}
+
+class Holder {
+    fun member() = 1
+    
+    fun otherMember() {
+        println("a")
+    }
+}
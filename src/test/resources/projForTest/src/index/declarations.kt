@@ -0,0 +1,21 @@
+package index.declarations
+
+class IndexedClass {
+    class NestedClass
+
+    fun member() {
+        class LocalClass
+    }
+}
+
+typealias IndexedAlias = IndexedClass
+
+fun indexedFunction() = 1
+
+fun indexedFunctionWithSuffix() = 2
+
+fun String.indexedExtension() = length
+
+val indexedProperty = 1
+
+private fun privateFunction() = 3
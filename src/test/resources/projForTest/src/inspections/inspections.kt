@@ -0,0 +1,13 @@
+package inspections
+
+class EmptyBody {}
+
+class EmptyConstructor() {
+    fun concatenation(name: String) = "Hello, " + name
+}
+
+fun sizeCheck(list: List<Int>) = list.size > 0
+
+class WithoutHints {
+    val value = 1
+}
@@ -0,0 +1,9 @@
+package javaStructure;
+
+public class StructureSource {
+    
+    public void first() {}
+    
+    public static class Nested {}
+    
+}
@@ -0,0 +1,7 @@
+package occurrences
+
+fun `function name`() {}
+
+fun callBackquoted() {
+    `function name`()
+}
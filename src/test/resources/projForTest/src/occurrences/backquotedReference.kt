@@ -0,0 +1,3 @@
+package occurrences
+
+fun backquotedReference(text: String) = `text`.length + text.length
@@ -0,0 +1,5 @@
+package occurrences
+
+fun foo(foo: Int) = foo + 1
+
+fun callFoo() = foo(2)
@@ -0,0 +1,6 @@
+package occurrences
+
+fun localVariable() {
+    val value = 1
+    println(value + value)
+}
@@ -0,0 +1,11 @@
+package rename.javausages;
+
+public class TypeUsages {
+    
+    private UsedType field = new UsedType();
+    
+    public UsedType getField() {
+        return field;
+    }
+    
+}
@@ -0,0 +1,4 @@
+package rename.javausages;
+
+public class UsedType {
+}
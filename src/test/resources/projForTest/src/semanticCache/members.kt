@@ -0,0 +1,16 @@
+package semanticCache
+
+class Holder(val value: Int) {
+    fun first(): Int {
+        val local = value
+        return local
+    }
+    
+    fun second(text: String): Int {
+        var counter = 0
+        counter += text.length
+        return counter
+    }
+}
+
+fun topLevel(holder: Holder?) = if (holder != null) holder.first() else 0
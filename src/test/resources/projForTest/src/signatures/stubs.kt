@@ -0,0 +1,14 @@
+package signatures
+
+class StubSource {
+    // comment
+    fun declared(): Int {
+        return 1
+    }
+
+    fun inferred() = 1
+
+    val typed: Int = 1
+
+    val untyped = 1
+}
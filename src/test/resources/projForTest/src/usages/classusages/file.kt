@@ -0,0 +1,6 @@
+package usages.classusages
+class SearchedClass
+
+fun main(args : Array<String>) {
+     println(SearchedClass().hashCode())
+}
@@ -0,0 +1,3 @@
+package usages.classusages
+
+fun someFunc() = SearchedClass().hashCode() < 0 && true
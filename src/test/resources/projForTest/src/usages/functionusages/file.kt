@@ -0,0 +1,5 @@
+package usages.functionusages
+
+class ClassWithMethod {
+    fun coolFun() = println()
+}
@@ -0,0 +1,3 @@
+package usages.functionusages
+
+fun someFunc() = ClassWithMethod().coolFun()